@@ -1,52 +1,231 @@
 package de.nrq.cli;
 
-import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.archive.ArchiveConverter;
 import de.nrq.core.color.ColorConverter;
+import de.nrq.core.distance.DistanceMatrix;
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.patch.VhPatcher;
+import de.nrq.core.reader.PaletteFiles;
 import de.nrq.core.reader.PaletteReader;
 import de.nrq.core.reader.PaletteReaderFactory;
-import de.nrq.image.BmpBuilder;
+import de.nrq.core.stats.PaletteStatistics;
+import de.nrq.core.store.PaletteArchive;
+import de.nrq.core.store.PaletteStore;
+import de.nrq.core.transform.TransformPipeline;
+import de.nrq.core.verify.PaletteVerifier;
+import de.nrq.core.writer.BmpWriter;
+import de.nrq.core.writer.PalWriter;
+import de.nrq.core.writer.PaletteWriter;
+import de.nrq.core.writer.PaletteWriterFactory;
+import de.nrq.core.writer.RomFormat;
+import de.nrq.core.writer.RomWriter;
+import de.nrq.core.writer.VhWriter;
+import de.nrq.image.AtlasRenderer;
+import de.nrq.image.BmpConfig;
+import de.nrq.image.BmpEncoder;
+import de.nrq.image.PaletteDitherer;
+import de.nrq.image.PaletteExtractor;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * Main tool for converting between different palette formats and creating visualizations.
  */
 public class PaletteTool {
-    private static final BmpBuilder bmpBuilder = new BmpBuilder();
-
     public static void main(String[] args) {
-        if (args.length < 2) {
+        // Options are given as --name=value and may appear anywhere
+        Map<String, String> options = new HashMap<>();
+        List<String> arguments = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int separator = arg.indexOf('=');
+                options.put(separator < 0 ? arg.substring(2) : arg.substring(2, separator),
+                        separator < 0 ? "" : arg.substring(separator + 1));
+            } else {
+                arguments.add(arg);
+            }
+        }
+
+        if (arguments.size() < 2) {
             printUsage();
             System.exit(1);
         }
 
         try {
-            String command = args[0].toLowerCase();
-            String inputFile = args[1];
-            String outputFile = args.length > 2 ? args[2] : null;
+            String command = arguments.get(0).toLowerCase();
+            String inputFile = arguments.get(1);
+            String outputFile = arguments.size() > 2 ? arguments.get(2) : null;
 
             switch (command) {
                 case "tobmp" -> {
+                    BmpEncoder encoder = new BmpEncoder(new BmpConfig(
+                            Integer.parseInt(options.getOrDefault("square", "50")),
+                            BmpConfig.Layout.fromName(options.getOrDefault("layout", "16x4")),
+                            Integer.parseInt(options.getOrDefault("bits", "24"))));
+                    if (ArchiveConverter.isArchive(inputFile)) {
+                        convertArchive(inputFile, outputFile, PaletteFormat.BMP, new BmpWriter(encoder));
+                        return;
+                    }
                     if (outputFile == null) {
-                        outputFile = inputFile.replaceFirst("(?i)\\.(pal|vh)$", ".bmp");
+                        outputFile = inputFile.replaceFirst("(?i)\\.(pal|vh|act|gpl)$", ".bmp");
                     }
-                    convertToBmp(inputFile, outputFile);
+                    convertToBmp(inputFile, outputFile, encoder, options.containsKey("update"));
                 }
                 case "topal" -> {
+                    if (ArchiveConverter.isArchive(inputFile)) {
+                        convertArchive(inputFile, outputFile, PaletteFormat.PAL, new PalWriter());
+                        return;
+                    }
                     if (outputFile == null) {
-                        outputFile = inputFile.replaceFirst("(?i)\\.vh$", ".pal");
+                        outputFile = inputFile.replaceFirst("(?i)\\.(vh|act|gpl)$", ".pal");
+                    }
+                    convertToPal(inputFile, outputFile);
+                }
+                case "frombmp" -> {
+                    if (outputFile == null) {
+                        outputFile = inputFile.replaceFirst("(?i)\\.bmp$", ".pal");
                     }
                     convertToPal(inputFile, outputFile);
                 }
                 case "tovh" -> {
+                    if (ArchiveConverter.isArchive(inputFile)) {
+                        convertArchive(inputFile, outputFile, PaletteFormat.VH, new VhWriter());
+                        return;
+                    }
                     if (outputFile == null) {
-                        outputFile = inputFile.replaceFirst("(?i)\\.pal$", ".vh");
+                        outputFile = inputFile.replaceFirst("(?i)\\.(pal|act|gpl)$", ".vh");
                     }
                     convertToVh(inputFile, outputFile);
                 }
+                case "convert" -> {
+                    String format = options.get("format");
+                    if (format == null && (outputFile == null || ArchiveConverter.isArchive(outputFile))) {
+                        throw new IllegalArgumentException("convert needs an output palette file or --format");
+                    }
+                    PaletteFormat target = format != null
+                            ? PaletteFormat.fromName(format)
+                            : PaletteFormat.fromFileName(outputFile);
+                    PaletteWriter writer = PaletteWriterFactory.createWriter(target);
+                    if (ArchiveConverter.isArchive(inputFile)) {
+                        convertArchive(inputFile, outputFile, target, writer);
+                        return;
+                    }
+                    if (outputFile == null) {
+                        outputFile = deriveOutputName(inputFile, target);
+                    }
+                    convertPalette(inputFile, outputFile, target, writer);
+                }
+                case "extract" -> {
+                    if (outputFile == null) {
+                        outputFile = inputFile.replaceFirst("(?i)\\.bmp$", ".pal");
+                    }
+                    int bits = Integer.parseInt(options.getOrDefault("bits", "18"));
+                    extractPalette(inputFile, outputFile, bits);
+                }
+                case "matrix" -> {
+                    if (options.containsKey("top")) {
+                        if (outputFile == null) {
+                            outputFile = Paths.get(inputFile) + ".neighbors.csv";
+                        }
+                        writeNearestNeighbors(inputFile, outputFile, Integer.parseInt(options.get("top")));
+                    } else {
+                        if (outputFile == null) {
+                            outputFile = Paths.get(inputFile) + ".pdm";
+                        }
+                        String threshold = options.get("cluster");
+                        writeDistanceMatrix(inputFile, outputFile, threshold != null ? Float.parseFloat(threshold) : -1);
+                    }
+                }
+                case "transform" -> {
+                    String operations = options.get("ops");
+                    if (operations == null) {
+                        throw new IllegalArgumentException("transform needs --ops, e.g. --ops=gamma=1.1,limited");
+                    }
+                    if (outputFile == null) {
+                        Path input = Paths.get(inputFile);
+                        outputFile = Files.isDirectory(input)
+                                ? input + "-transformed"
+                                : inputFile.replaceFirst("(\\.[^./\\\\]*)?$", "-transformed$1");
+                    }
+                    transformPalettes(inputFile, outputFile, TransformPipeline.parse(operations));
+                }
+                case "pack" -> {
+                    if (outputFile == null) {
+                        outputFile = Paths.get(inputFile) + ".pst";
+                    }
+                    if (outputFile.toLowerCase().endsWith(".ppk")) {
+                        compressLibrary(inputFile, outputFile);
+                    } else {
+                        packLibrary(inputFile, outputFile,
+                                options.containsKey("planar") ? PaletteStore.Layout.PLANAR : PaletteStore.Layout.PACKED);
+                    }
+                }
+                case "rom" -> {
+                    String format = options.get("format");
+                    RomFormat target = format != null
+                            ? RomFormat.fromName(format)
+                            : outputFile != null ? RomFormat.fromFileName(outputFile) : RomFormat.MIF;
+                    if (outputFile == null) {
+                        outputFile = Paths.get(inputFile).toString()
+                                .replaceFirst("(?i)\\.(pal|vh|act|gpl|pst|ppk)$", "") + target.getExtension();
+                    }
+                    writeRom(inputFile, outputFile, new RomWriter(target));
+                }
+                case "stats" -> {
+                    if (outputFile == null) {
+                        outputFile = Paths.get(inputFile) + ".stats.json";
+                    }
+                    writeStatistics(inputFile, outputFile, Integer.parseInt(options.getOrDefault("top", "16")),
+                            options.containsKey("histogram"));
+                }
+                case "dither" -> {
+                    String palette = options.get("palette");
+                    if (palette == null) {
+                        throw new IllegalArgumentException("dither needs a palette: --palette=<file>");
+                    }
+                    if (outputFile == null) {
+                        outputFile = Paths.get(inputFile).toString().replaceFirst("(?i)\\.bmp$", "") + "-dithered.bmp";
+                    }
+                    ditherImage(inputFile, outputFile, palette,
+                            PaletteDitherer.Method.fromName(options.getOrDefault("method", "floyd")),
+                            Integer.parseInt(options.getOrDefault("threads",
+                                    String.valueOf(Runtime.getRuntime().availableProcessors()))));
+                }
+                case "atlas" -> {
+                    if (outputFile == null) {
+                        outputFile = Paths.get(inputFile) + ".bmp";
+                    }
+                    AtlasRenderer renderer = new AtlasRenderer(
+                            Integer.parseInt(options.getOrDefault("square", "8")),
+                            Integer.parseInt(options.getOrDefault("columns", "0")),
+                            Integer.parseInt(options.getOrDefault("gap", "2")));
+                    renderAtlas(inputFile, outputFile, renderer);
+                }
+                case "patch" -> {
+                    if (outputFile == null) {
+                        throw new IllegalArgumentException("patch needs a source directory or file to patch");
+                    }
+                    patchSources(inputFile, outputFile, options.containsKey("dry-run"));
+                }
+                case "verify" -> {
+                    if (!verify(inputFile, outputFile)) {
+                        System.exit(1);
+                    }
+                }
                 default -> {
                     System.err.println("Error: Unknown command: " + command);
                     printUsage();
@@ -61,37 +240,70 @@ public class PaletteTool {
 
     /**
      * Converts an input file to BMP format and saves it.
+     * In update mode, an existing preview is patched in place where colors changed;
+     * if it can't be updated, e.g. because its size differs, it is rewritten.
      *
      * @param inputFile  Path to the input file (.pal or .vh)
      * @param outputFile Path where the BMP file will be saved
+     * @param encoder    Encoder with the preview settings
+     * @param update     Whether to update an existing preview in place
      * @throws IOException If there are errors reading the input or writing the output
      */
-    private static void convertToBmp(String inputFile, String outputFile) throws IOException {
+    private static void convertToBmp(String inputFile, String outputFile, BmpEncoder encoder, boolean update)
+            throws IOException {
         // Read colors using appropriate reader
         PaletteReader reader = PaletteReaderFactory.createReader(inputFile);
         int[] colors = reader.readColors(inputFile);
 
+        Path outputPath = Paths.get(outputFile);
+        if (update && Files.isRegularFile(outputPath)) {
+            try {
+                int changed = encoder.update(colors, outputPath);
+                System.out.println("Successfully updated " + changed + " colors of palette visualization: " + outputFile);
+                return;
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage() + ", rewriting it");
+            }
+        }
+
         // Generate and save BMP
-        bmpBuilder.createBmpFile(colors, outputFile);
+        encoder.encode(colors, outputPath);
         System.out.println("Successfully created palette visualization: " + outputFile);
     }
 
     /**
-     * Converts a VH file to PAL format.
+     * Maps an image to the colors of a palette with dithering.
+     *
+     * @param inputFile   Path to the input BMP image
+     * @param outputFile  Path where the dithered BMP will be saved
+     * @param paletteFile Palette file in any readable format
+     * @param method      The dithering method
+     * @param threads     Number of worker threads
+     * @throws IOException If there are errors reading the inputs or writing the output
+     */
+    private static void ditherImage(String inputFile, String outputFile, String paletteFile,
+                                    PaletteDitherer.Method method, int threads) throws IOException {
+        PaletteReader reader = PaletteReaderFactory.createReader(paletteFile);
+        int[] colors = reader.readColors(paletteFile);
+
+        new PaletteDitherer(colors, method, threads).dither(Paths.get(inputFile), Paths.get(outputFile));
+        System.out.println("Successfully created dithered image: " + outputFile);
+    }
+
+    /**
+     * Converts a VH file or BMP preview to PAL format.
      *
-     * @param inputFile  Path to the input VH file
+     * @param inputFile  Path to the input VH or BMP file
      * @param outputFile Path where the PAL file will be saved
      * @throws IOException If there are errors reading the input or writing the output
      */
     private static void convertToPal(String inputFile, String outputFile) throws IOException {
-        // Read input using VH reader
+        // Read input using VH or BMP reader
         PaletteReader reader = PaletteReaderFactory.createReader(inputFile);
         int[] colors = reader.readColors(inputFile);
 
         // Convert to PAL format bytes and write
-        byte[] palData = ColorConverter.intArrayToRgbBytes(colors);
-        Path outputPath = Paths.get(outputFile);
-        Files.write(outputPath, palData);
+        new PalWriter().writeColors(colors, Paths.get(outputFile));
 
         System.out.println("Successfully converted to PAL format: " + outputFile);
     }
@@ -109,40 +321,437 @@ public class PaletteTool {
         PaletteReader reader = PaletteReaderFactory.createReader(inputFile);
         int[] palColors = reader.readColors(inputFile);
 
-        // Convert to VH format
-        int[] vhColors = ColorArrangement.palToVhOrder(palColors);
+        // Convert to VH format and write
+        new VhWriter().writeColors(palColors, Paths.get(outputFile));
+
+        System.out.println("Successfully converted to VH format: " + outputFile);
+    }
+
+    /**
+     * Converts a palette file to any supported format.
+     *
+     * @param inputFile  Path to the input palette file
+     * @param outputFile Path where the converted file will be saved
+     * @param target     The format to convert to
+     * @param writer     The writer encoding the target format
+     * @throws IOException If there are errors reading the input or writing the output
+     */
+    private static void convertPalette(String inputFile, String outputFile, PaletteFormat target,
+                                       PaletteWriter writer) throws IOException {
+        int[] colors = PaletteReaderFactory.createReader(inputFile).readColors(inputFile);
 
-        // Create VH array content
-        StringBuilder vhContent = new StringBuilder();
-        vhContent.append("wire [23:0] lumacode_data_3s[0:63] = '{ ");
+        writer.writeColors(colors, Paths.get(outputFile));
+        System.out.println("Successfully converted to " + target + " format: " + outputFile);
+    }
 
-        for (int i = 0; i < vhColors.length; i++) {
-            vhContent.append(String.format("24'h%06X", vhColors[i]));
-            if (i < vhColors.length - 1) {
-                vhContent.append(", ");
-            }
+    /**
+     * Derives an output name by replacing the extension of the input.
+     * Since several formats share the .pal extension, the format name is appended
+     * if the result would overwrite the input.
+     *
+     * @param inputFile The input file name
+     * @param target    The output format
+     * @return The output file name
+     */
+    private static String deriveOutputName(String inputFile, PaletteFormat target) {
+        String base = inputFile.replaceFirst("\\.[^./\\\\]*$", "");
+        String outputFile = base + target.getExtension();
+        if (outputFile.equalsIgnoreCase(inputFile)) {
+            outputFile = base + "-" + target.name().toLowerCase() + target.getExtension();
         }
-        vhContent.append("};");
+        return outputFile;
+    }
+
+    /**
+     * Converts all palettes inside a ZIP archive and writes the results to a new archive.
+     *
+     * @param inputFile  Path to the input archive
+     * @param outputFile Path of the output archive, or null to derive it from the input name
+     * @param target     The format to convert to
+     * @param writer     The writer encoding the target format
+     * @throws IOException If there are errors reading the input or writing the output
+     */
+    private static void convertArchive(String inputFile, String outputFile, PaletteFormat target,
+                                       PaletteWriter writer) throws IOException {
+        if (outputFile == null) {
+            outputFile = inputFile.replaceFirst("(?i)\\.(zip|jar)$", "") + "-" + target.name().toLowerCase() + ".zip";
+        }
+        int count = ArchiveConverter.convert(Paths.get(inputFile), Paths.get(outputFile), target, writer);
+        System.out.println("Successfully converted " + count + " palettes to archive: " + outputFile);
+    }
+
+    /**
+     * Derives a palette from a BMP image and saves it in PAL format.
+     *
+     * @param inputFile     Path to the input BMP image
+     * @param outputFile    Path where the PAL file will be saved
+     * @param histogramBits Resolution of the color histogram, 15 or 18 bits
+     * @throws IOException If there are errors reading the input or writing the output
+     */
+    private static void extractPalette(String inputFile, String outputFile, int histogramBits) throws IOException {
+        int[] colors = new PaletteExtractor(histogramBits).extract(Paths.get(inputFile));
+
+        Files.write(Paths.get(outputFile), ColorConverter.intArrayToRgbBytes(colors));
+        System.out.println("Successfully extracted palette: " + outputFile);
+    }
+
+    /**
+     * Computes the distance matrix of all palettes of a library.
+     * Besides the matrix file, writes an index file listing the palette of each row
+     * and optionally the cluster of each palette.
+     *
+     * @param input      Directory with palette files, scanned recursively, a .pst palette store or a .ppk archive
+     * @param outputFile Path where the matrix will be saved
+     * @param threshold  Linkage threshold for clustering, or a negative value to skip clustering
+     * @throws IOException If there are errors reading the palettes or writing the output
+     */
+    private static void writeDistanceMatrix(String input, String outputFile, float threshold) throws IOException {
+        Library library = loadLibrary(input);
+        DistanceMatrix matrix = new DistanceMatrix(library.colors());
 
-        // Write VH file
         Path outputPath = Paths.get(outputFile);
-        Files.writeString(outputPath, vhContent.toString());
+        matrix.write(outputPath);
+        Files.write(Paths.get(outputFile + ".index"), library.names());
+        System.out.println("Successfully wrote distance matrix of " + matrix.size() + " palettes: " + outputFile);
 
-        System.out.println("Successfully converted to VH format: " + outputFile);
+        if (threshold >= 0) {
+            int[] clusters = DistanceMatrix.cluster(outputPath, threshold);
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFile + ".clusters.csv"))) {
+                writer.write("file,cluster\n");
+                for (int i = 0; i < clusters.length; i++) {
+                    writer.write(library.names().get(i) + "," + clusters[i] + "\n");
+                }
+            }
+            int clusterCount = Arrays.stream(clusters).max().orElse(-1) + 1;
+            System.out.println("Successfully wrote " + clusterCount + " clusters: " + outputFile + ".clusters.csv");
+        }
+    }
+
+    /**
+     * Computes the nearest neighbors of all palettes of a library and writes them as CSV.
+     *
+     * @param input      Directory with palette files, scanned recursively, a .pst palette store or a .ppk archive
+     * @param outputFile Path where the CSV file will be saved
+     * @param k          Number of neighbors per palette
+     * @throws IOException If there are errors reading the palettes or writing the output
+     */
+    private static void writeNearestNeighbors(String input, String outputFile, int k) throws IOException {
+        Library library = loadLibrary(input);
+        DistanceMatrix matrix = new DistanceMatrix(library.colors());
+        List<String> names = library.names();
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFile))) {
+            writer.write("file,neighbor,distance\n");
+            matrix.nearest(k, (index, neighbors, distances) -> {
+                for (int n = 0; n < neighbors.length; n++) {
+                    writer.write(names.get(index) + "," + names.get(neighbors[n]) + "," + distances[n] + "\n");
+                }
+            });
+        }
+        System.out.println("Successfully wrote nearest neighbors of " + matrix.size() + " palettes: " + outputFile);
+    }
+
+    /**
+     * Packs a library into a palette store file.
+     * Also writes an index file listing the source of each palette.
+     *
+     * @param input      Directory with palette files, scanned recursively, or a .ppk archive
+     * @param outputFile Path where the store will be saved
+     * @param layout     Memory layout of the store
+     * @throws IOException If there are errors reading the palettes or writing the output
+     */
+    private static void packLibrary(String input, String outputFile, PaletteStore.Layout layout) throws IOException {
+        Library library = loadLibrary(input);
+        PaletteStore store = PaletteStore.of(library.colors(), layout);
+
+        store.save(Paths.get(outputFile));
+        Files.write(Paths.get(outputFile + ".index"), library.names());
+        System.out.println("Successfully packed " + store.size() + " palettes: " + outputFile);
+    }
+
+    /**
+     * Compresses a library into a palette archive file.
+     * Also writes an index file listing the source of each palette.
+     *
+     * @param input      Directory with palette files, scanned recursively, or a .pst palette store
+     * @param outputFile Path where the archive will be saved
+     * @throws IOException If there are errors reading the palettes or writing the output
+     */
+    private static void compressLibrary(String input, String outputFile) throws IOException {
+        Library library = loadLibrary(input);
+        Path output = Paths.get(outputFile);
+        PaletteArchive.write(library.colors(), output);
+        Files.write(Paths.get(outputFile + ".index"), library.names());
+
+        long rawSize = (long) library.names().size() * PaletteReader.TOTAL_COLORS * 3;
+        System.out.printf("Successfully compressed %d palettes: %s (%d bytes, %.1f%% of raw)%n",
+                library.names().size(), outputFile, Files.size(output),
+                rawSize == 0 ? 0.0 : 100.0 * Files.size(output) / rawSize);
+    }
+
+    /**
+     * Writes a palette file or a whole library into one FPGA memory initialization file.
+     * Also writes an index file listing the palette in each ROM slot.
+     *
+     * @param input      Path to a palette file, a directory scanned recursively, a .pst palette store
+     *                   or a .ppk archive
+     * @param outputFile Path where the ROM file will be saved
+     * @param writer     Writer for the ROM format
+     * @throws IOException If there are errors reading the palettes or writing the output
+     */
+    private static void writeRom(String input, String outputFile, RomWriter writer) throws IOException {
+        Library library = loadLibrary(input);
+        if (library.names().isEmpty()) {
+            throw new IllegalArgumentException("No palettes found: " + input);
+        }
+
+        writer.writeRom(library.colors(), Paths.get(outputFile));
+        Files.write(Paths.get(outputFile + ".index"), library.names());
+        System.out.println("Successfully wrote ROM of " + library.names().size() + " palettes: " + outputFile);
+    }
+
+    /**
+     * Applies a transform chain to a palette file or all palette files below a directory.
+     *
+     * @param input      Path to a palette file or a directory to scan recursively
+     * @param outputFile Output file, or output directory for a directory input
+     * @param pipeline   The compiled transform chain
+     * @throws IOException If there are errors reading the input or writing the output
+     */
+    private static void transformPalettes(String input, String outputFile, TransformPipeline pipeline)
+            throws IOException {
+        int count = pipeline.transformFiles(Paths.get(input), Paths.get(outputFile));
+        System.out.println("Successfully applied " + pipeline + " to " + count + " palettes: " + outputFile);
+    }
+
+    /**
+     * Palettes of a library with a display name for each.
+     */
+    private record Library(List<String> names, int[] colors) {
+    }
+
+    /**
+     * Loads a palette library from a directory, a palette store or a palette archive.
+     * Palettes of a store or archive are named by its index file if present, otherwise by number.
+     *
+     * @param input Directory with palette files, scanned recursively, a .pst palette store or a .ppk archive
+     * @return The palettes and their names
+     * @throws IOException If the palettes can't be read
+     */
+    private static Library loadLibrary(String input) throws IOException {
+        String lowerInput = input.toLowerCase();
+        if (lowerInput.endsWith(".pst") || lowerInput.endsWith(".ppk")) {
+            int[] colors = lowerInput.endsWith(".pst")
+                    ? PaletteStore.map(Paths.get(input), false).toArray()
+                    : PaletteArchive.open(Paths.get(input)).toArray();
+            int count = colors.length / PaletteReader.TOTAL_COLORS;
+            Path index = Paths.get(input + ".index");
+            List<String> names = Files.exists(index)
+                    ? Files.readAllLines(index)
+                    : IntStream.range(0, count).mapToObj(i -> "#" + i).toList();
+            if (names.size() != count) {
+                throw new IllegalArgumentException("Index file doesn't match palette library: " + index);
+            }
+            return new Library(names, colors);
+        }
+        List<Path> files = listPalettes(input);
+        return new Library(files.stream().map(Path::toString).toList(), PaletteFiles.readAll(files));
+    }
+
+    /**
+     * Lists the palette files of a library directory, or the single given file.
+     *
+     * @param input Directory with palette files, scanned recursively, or a single palette file
+     * @return The palette files in a stable order
+     * @throws IOException              If the directory tree can't be traversed
+     * @throws IllegalArgumentException if no palette files are found
+     */
+    private static List<Path> listPalettes(String input) throws IOException {
+        List<Path> files = PaletteFiles.list(Paths.get(input));
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No palette files found in " + input);
+        }
+        return files;
+    }
+
+    /**
+     * Computes color statistics of a library and writes them as JSON.
+     * Optionally also writes the global color histogram as CSV to {@code <output>.colors.csv}.
+     *
+     * @param input      Directory with palette files, scanned recursively, a .pst palette store or a .ppk archive
+     * @param outputFile Path where the JSON summary will be saved
+     * @param topColors  Number of most frequent colors to list
+     * @param histogram  Whether to write the full color histogram
+     * @throws IOException If there are errors reading the palettes or writing the output
+     */
+    private static void writeStatistics(String input, String outputFile, int topColors, boolean histogram)
+            throws IOException {
+        PaletteStatistics statistics;
+        if (input.toLowerCase().endsWith(".pst")) {
+            statistics = PaletteStatistics.of(PaletteStore.map(Paths.get(input), false));
+        } else if (input.toLowerCase().endsWith(".ppk")) {
+            PaletteArchive archive = PaletteArchive.open(Paths.get(input));
+            statistics = PaletteStatistics.collect(archive.size(), archive::read);
+        } else {
+            statistics = PaletteStatistics.of(listPalettes(input));
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFile))) {
+            statistics.writeJson(writer, topColors);
+        }
+        System.out.println("Successfully wrote statistics of " + statistics.getPalettes() + " palettes: " + outputFile);
+
+        if (histogram) {
+            try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(outputFile + ".colors.csv"))) {
+                statistics.writeHistogramCsv(writer);
+            }
+            System.out.println("Successfully wrote color histogram: " + outputFile + ".colors.csv");
+        }
+    }
+
+    /**
+     * Renders all palettes below a directory into one contact sheet image.
+     *
+     * @param inputDir   Directory with palette files, scanned recursively
+     * @param outputFile Path where the BMP file will be saved
+     * @param renderer   The configured atlas renderer
+     * @throws IOException If there are errors reading the palettes or writing the output
+     */
+    private static void renderAtlas(String inputDir, String outputFile, AtlasRenderer renderer) throws IOException {
+        // The output may be inside the input directory, so don't render a previous atlas
+        Path outputPath = Paths.get(outputFile).toAbsolutePath();
+        List<Path> files = listPalettes(inputDir).stream()
+                .filter(file -> !file.toAbsolutePath().equals(outputPath))
+                .toList();
+
+        renderer.render(files, outputPath);
+        System.out.println("Successfully created atlas of " + files.size() + " palettes: " + outputFile);
+    }
+
+    /**
+     * Verifies a palette file or all palette files below a directory.
+     * Writes one JSON line per file to the output file, or to stdout if none is given,
+     * and prints a summary to stderr.
+     *
+     * @param input      Path to a palette file or a directory to scan recursively
+     * @param outputFile Path of the JSON lines report, or null for stdout
+     * @return true if all files are valid
+     * @throws IOException If the tree can't be traversed or the report can't be written
+     */
+    private static boolean verify(String input, String outputFile) throws IOException {
+        Writer writer = outputFile != null
+                ? Files.newBufferedWriter(Paths.get(outputFile))
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+
+        PaletteVerifier.Summary summary;
+        try (writer) {
+            summary = new PaletteVerifier().verifyTree(Paths.get(input), result -> {
+                String line = result.toJson();
+                synchronized (writer) {
+                    try {
+                        writer.write(line);
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        System.err.printf("Verified %d files, %d invalid%n", summary.files(), summary.invalid());
+        return summary.invalid() == 0;
+    }
+
+    /**
+     * Writes a palette into the <code>lumacode_data_3s</code> arrays of a Verilog source tree.
+     * Lists the files that change or can't be patched, followed by the totals.
+     *
+     * @param paletteFile Palette file in any readable format
+     * @param sources     Directory to patch recursively, or a single source file
+     * @param dryRun      Whether to only list the files that would change
+     * @throws IOException              If the palette can't be read or the tree can't be traversed
+     * @throws IllegalArgumentException if any file could not be patched
+     */
+    private static void patchSources(String paletteFile, String sources, boolean dryRun) throws IOException {
+        PaletteReader reader = PaletteReaderFactory.createReader(paletteFile);
+        int[] colors = reader.readColors(paletteFile);
+
+        long start = System.nanoTime();
+        VhPatcher.Summary summary = new VhPatcher(colors, dryRun).patchTree(Paths.get(sources), result -> {
+            if (result.isFailed()) {
+                System.err.println(result.file() + ": " + result.error());
+            } else if (result.isPatched()) {
+                System.out.println((dryRun ? "Would patch " : "Patched ") + result.changed() + " colors in " + result.file());
+            }
+        });
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("Searched %d files in %d ms: %d arrays, %d files %s, %d failed%n",
+                summary.files(), millis, summary.arrays(), summary.patched(),
+                dryRun ? "to patch" : "patched", summary.failed());
+        if (summary.failed() > 0) {
+            throw new IllegalArgumentException(summary.failed() + " files could not be patched");
+        }
     }
 
     private static void printUsage() {
         System.out.println("Usage:");
-        System.out.println("  PaletteTool tobmp <input.pal or input.vh> [output.bmp]");
+        System.out.println("  PaletteTool tobmp <input.pal or input.vh> [output.bmp] [--update] [--square=50] [--layout=16x4|8x8] [--bits=24|32]");
         System.out.println("  PaletteTool topal <input.vh> [output.pal]");
         System.out.println("  PaletteTool tovh  <input.pal> [output.vh]");
+        System.out.println("  PaletteTool frombmp <input.bmp> [output.pal]");
+        System.out.println("  PaletteTool convert <input> <output.pal|.vh|.bmp|.act|.gpl|.ppk> [--format=name]");
+        System.out.println("  PaletteTool extract <input.bmp> [output.pal] [--bits=15|18]");
+        System.out.println("  PaletteTool matrix <directory, .pst or .ppk> [output.pdm] [--cluster=threshold | --top=k]");
+        System.out.println("  PaletteTool pack <directory, .pst or .ppk> [output.pst|.ppk] [--planar]");
+        System.out.println("  PaletteTool transform <file or directory> [output] --ops=<chain>");
+        System.out.println("  PaletteTool rom <file, directory, .pst or .ppk> [output.mif|.coe|.hex] [--format=name]");
+        System.out.println("  PaletteTool stats <directory, .pst or .ppk> [output.json] [--top=16] [--histogram]");
+        System.out.println("  PaletteTool dither <input.bmp> [output.bmp] --palette=<file> [--method=floyd|ordered] [--threads=n]");
+        System.out.println("  PaletteTool atlas <directory> [output.bmp] [--square=8] [--columns=n] [--gap=2]");
+        System.out.println("  PaletteTool verify <file or directory> [report.jsonl]");
+        System.out.println("  PaletteTool patch <palette file> <source directory or file> [--dry-run]");
         System.out.println();
         System.out.println("Commands:");
-        System.out.println("  tobmp  - Convert PAL or VH file to BMP visualization");
-        System.out.println("  topal  - Convert VH file to PAL format");
-        System.out.println("  tovh   - Convert PAL file to VH format");
+        System.out.println("  tobmp   - Convert PAL or VH file to BMP visualization");
+        System.out.println("  topal   - Convert VH file to PAL format");
+        System.out.println("  tovh    - Convert PAL file to VH format");
+        System.out.println("  frombmp - Recover the palette of a BMP preview created by tobmp");
+        System.out.println("  convert - Convert between any formats: pal, vh, bmp, jasc, riff, act, gpl, ppk");
+        System.out.println("  extract - Derive a palette from a BMP image");
+        System.out.println("  matrix  - Compute perceptual distances between all palettes of a library");
+        System.out.println("  transform - Apply a chain of gamma, levels, saturation and range adjustments");
+        System.out.println("  pack    - Pack a library into a memory-mappable store (.pst) or compressed archive (.ppk)");
+        System.out.println("  rom     - Pack one or many palettes into an FPGA ROM init file (VH order)");
+        System.out.println("  stats   - Color frequencies and per-slot and per-row luminance of a library");
+        System.out.println("  dither  - Map an image to a palette with Floyd-Steinberg or ordered dithering");
+        System.out.println("  atlas   - Render all palettes of a library into one overview image");
+        System.out.println("  verify  - Check palette files and report issues as JSON lines");
+        System.out.println("  patch   - Replace the lumacode_data_3s palette in Verilog sources (.v, .vh, .sv, .svh)");
         System.out.println();
         System.out.println("If output file is not specified, it will be created with");
         System.out.println("the same name as the input file but with the new extension.");
+        System.out.println();
+        System.out.println("Input files can be entries of a ZIP archive, given as archive.zip!/path/file.pal.");
+        System.out.println("If tobmp, topal or tovh get a whole .zip file, all its palettes are converted");
+        System.out.println("into a new archive (default: <archive>-<format>.zip).");
+        System.out.println();
+        System.out.println("With --update, tobmp only rewrites the color squares that changed in an existing preview.");
+        System.out.println();
+        System.out.println("JASC and RIFF palettes share the .pal extension and are detected by their header.");
+        System.out.println("To write them, use convert with --format=jasc or --format=riff.");
+        System.out.println();
+        System.out.println("ROM files hold 64 words of 24 bits per palette; palette n starts at address n * 64.");
+        System.out.println("Formats: mif (Intel), coe (Xilinx) and hex ($readmemh).");
+        System.out.println();
+        System.out.println("patch only rewrites the literals whose color changed; files that already hold");
+        System.out.println("the palette are not written, so their modification time is kept.");
+        System.out.println();
+        System.out.println("dither reads uncompressed 24-bit or 32-bit BMP images and writes a 24-bit BMP.");
+        System.out.println();
+        System.out.println("Transform chains are comma-separated: gamma=G, levels=inBlack:inWhite:outBlack:outWhite,");
+        System.out.println("saturation=S, limited (full to 16-235 range) and full (16-235 to full range).");
     }
 }
\ No newline at end of file
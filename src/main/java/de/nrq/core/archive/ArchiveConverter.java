@@ -0,0 +1,101 @@
+package de.nrq.core.archive;
+
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.reader.PalettePaths;
+import de.nrq.core.reader.PaletteReader;
+import de.nrq.core.reader.PaletteReaderFactory;
+import de.nrq.core.writer.PaletteWriter;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Converts all palettes inside a ZIP archive into another format, writing the results
+ * into a new ZIP archive. Entries are read through a zip file system without
+ * extracting the archive, converted in parallel, and compressed concurrently by
+ * {@link ParallelZipWriter}. The input archive is opened once per conversion and
+ * closed when it is done.
+ */
+public final class ArchiveConverter {
+    private ArchiveConverter() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Checks whether a file name denotes a whole archive rather than a palette or an archive entry.
+     *
+     * @param filename The file name to check
+     * @return true for .zip and .jar files
+     */
+    public static boolean isArchive(String filename) {
+        String lowerFilename = filename.toLowerCase();
+        return !PalettePaths.isArchiveEntry(filename) && (lowerFilename.endsWith(".zip") || lowerFilename.endsWith(".jar"));
+    }
+
+    /**
+     * Converts every palette entry of an archive that is not already in the target format.
+     * Output entries keep their path with the extension replaced by the target format's.
+     *
+     * @param inputArchive  The archive to read
+     * @param outputArchive The archive to create
+     * @param target        The format to convert to
+     * @param writer        The writer encoding the target format
+     * @return The number of converted entries
+     * @throws IOException              If the archives can't be read or written
+     * @throws IllegalArgumentException if an entry is not a valid palette or two entries map to the same name
+     */
+    public static int convert(Path inputArchive, Path outputArchive, PaletteFormat target, PaletteWriter writer)
+            throws IOException {
+        String archiveName = inputArchive.toString();
+        try (FileSystem archive = FileSystems.newFileSystem(inputArchive)) {
+            Path root = archive.getPath("/");
+
+            List<String> entries;
+            try (Stream<Path> paths = Files.walk(root)) {
+                entries = paths.filter(Files::isRegularFile)
+                        .map(path -> root.relativize(path).toString())
+                        .filter(entry -> isConvertible(entry, target))
+                        .sorted()
+                        .toList();
+            }
+
+            List<String> outputNames = entries.stream()
+                    .map(entry -> entry.substring(0, entry.lastIndexOf('.')) + target.getExtension())
+                    .toList();
+            Set<String> unique = new HashSet<>();
+            for (String name : outputNames) {
+                if (!unique.add(name)) {
+                    throw new IllegalArgumentException("Several archive entries convert to " + name);
+                }
+            }
+
+            ParallelZipWriter.write(outputArchive, outputNames, index -> {
+                String entry = entries.get(index);
+                try {
+                    int[] colors = new int[PaletteReader.TOTAL_COLORS];
+                    PaletteReaderFactory.createReader(entry).readColors(root.resolve(entry), colors);
+                    return writer.toBytes(colors);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(
+                            archiveName + PalettePaths.ARCHIVE_SEPARATOR + entry + ": " + e.getMessage(), e);
+                }
+            });
+            return entries.size();
+        }
+    }
+
+    private static boolean isConvertible(String entry, PaletteFormat target) {
+        try {
+            return PaletteFormat.fromFileName(entry) != target;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
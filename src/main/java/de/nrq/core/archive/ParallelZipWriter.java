@@ -0,0 +1,217 @@
+package de.nrq.core.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes ZIP archives whose entries are produced and compressed concurrently.
+ * {@link java.util.zip.ZipOutputStream} compresses entries one after another; here each
+ * entry is deflated on its own worker into a byte array, and only the final sequential
+ * step assembles the local headers, the compressed data and the central directory.
+ * Entries that don't shrink are stored uncompressed. Archives with more than 65535
+ * entries get ZIP64 end records.
+ */
+public final class ParallelZipWriter {
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int METHOD_STORED = 0;
+    private static final int METHOD_DEFLATED = 8;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+    private static final int MAX_16 = 0xFFFF;
+
+    private ParallelZipWriter() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Produces the content of one entry.
+     */
+    public interface EntrySource {
+        /**
+         * Creates the uncompressed content of an entry.
+         *
+         * @param index Index of the entry in the name list
+         * @return The entry content
+         * @throws IOException If the content can't be produced
+         */
+        byte[] content(int index) throws IOException;
+    }
+
+    private record CompressedEntry(byte[] name, byte[] data, int method, long crc, long size) {
+    }
+
+    /**
+     * Writes an archive, producing and compressing the entries in parallel.
+     *
+     * @param output The archive file to create
+     * @param names  Entry names, in the order they appear in the archive
+     * @param source Producer of the entry contents; called concurrently for different indices
+     * @throws IOException If an entry can't be produced or the archive can't be written
+     */
+    public static void write(Path output, List<String> names, EntrySource source) throws IOException {
+        CompressedEntry[] entries = new CompressedEntry[names.size()];
+        try {
+            IntStream.range(0, names.size()).parallel().forEach(i -> {
+                try {
+                    entries[i] = compress(names.get(i), source.content(i));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+            writeArchive(out, entries);
+        }
+    }
+
+    private static CompressedEntry compress(String name, byte[] content) {
+        if (content.length >= MAX_32) {
+            throw new IllegalArgumentException("Archive entry is too large: " + name);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(content);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, content.length + content.length / 1000 + 64)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            if (length >= content.length) {
+                return new CompressedEntry(nameBytes, content, METHOD_STORED, crc.getValue(), content.length);
+            }
+            return new CompressedEntry(nameBytes, Arrays.copyOf(buffer, length),
+                    METHOD_DEFLATED, crc.getValue(), content.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeArchive(OutputStream out, CompressedEntry[] entries) throws IOException {
+        int dosTime = dosTime(LocalDateTime.now());
+        long[] offsets = new long[entries.length];
+        long offset = 0;
+
+        for (int i = 0; i < entries.length; i++) {
+            CompressedEntry entry = entries[i];
+            offsets[i] = offset;
+            if (offset > MAX_32) {
+                throw new IllegalArgumentException("Archive exceeds 4 GB");
+            }
+            ByteBuffer header = littleEndian(30 + entry.name().length);
+            header.putInt(LOCAL_HEADER_SIGNATURE)
+                    .putShort((short) VERSION)
+                    .putShort((short) FLAG_UTF8)
+                    .putShort((short) entry.method())
+                    .putInt(dosTime)
+                    .putInt((int) entry.crc())
+                    .putInt(entry.data().length)
+                    .putInt((int) entry.size())
+                    .putShort((short) entry.name().length)
+                    .putShort((short) 0)
+                    .put(entry.name());
+            out.write(header.array());
+            out.write(entry.data());
+            offset += header.capacity() + entry.data().length;
+        }
+
+        long directoryOffset = offset;
+        for (int i = 0; i < entries.length; i++) {
+            CompressedEntry entry = entries[i];
+            ByteBuffer header = littleEndian(46 + entry.name().length);
+            header.putInt(CENTRAL_HEADER_SIGNATURE)
+                    .putShort((short) VERSION)
+                    .putShort((short) VERSION)
+                    .putShort((short) FLAG_UTF8)
+                    .putShort((short) entry.method())
+                    .putInt(dosTime)
+                    .putInt((int) entry.crc())
+                    .putInt(entry.data().length)
+                    .putInt((int) entry.size())
+                    .putShort((short) entry.name().length)
+                    .putShort((short) 0)             // Extra field length
+                    .putShort((short) 0)             // Comment length
+                    .putShort((short) 0)             // Disk number
+                    .putShort((short) 0)             // Internal attributes
+                    .putInt(0)                       // External attributes
+                    .putInt((int) offsets[i])
+                    .put(entry.name());
+            out.write(header.array());
+            offset += header.capacity();
+        }
+        long directorySize = offset - directoryOffset;
+        if (directoryOffset > MAX_32 || directorySize > MAX_32) {
+            throw new IllegalArgumentException("Archive exceeds 4 GB");
+        }
+
+        if (entries.length >= MAX_16) {
+            ByteBuffer zip64 = littleEndian(56 + 20);
+            zip64.putInt(ZIP64_END_SIGNATURE)
+                    .putLong(44)                     // Size of the remaining record
+                    .putShort((short) VERSION_ZIP64)
+                    .putShort((short) VERSION_ZIP64)
+                    .putInt(0)                       // Disk number
+                    .putInt(0)                       // Disk with central directory
+                    .putLong(entries.length)
+                    .putLong(entries.length)
+                    .putLong(directorySize)
+                    .putLong(directoryOffset);
+            zip64.putInt(ZIP64_LOCATOR_SIGNATURE)
+                    .putInt(0)                       // Disk with ZIP64 end record
+                    .putLong(offset)                 // Offset of ZIP64 end record
+                    .putInt(1);                      // Total disks
+            out.write(zip64.array());
+        }
+
+        int count = Math.min(entries.length, MAX_16);
+        ByteBuffer end = littleEndian(22);
+        end.putInt(END_SIGNATURE)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) count)
+                .putShort((short) count)
+                .putInt((int) directorySize)
+                .putInt((int) directoryOffset)
+                .putShort((short) 0);
+        out.write(end.array());
+    }
+
+    private static ByteBuffer littleEndian(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+}
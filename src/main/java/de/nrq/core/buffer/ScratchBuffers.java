@@ -0,0 +1,73 @@
+package de.nrq.core.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Per-thread scratch buffers for the allocation-free read and write paths.
+ * Each thread gets one instance on first use; its buffers are reused by every later
+ * call on that thread, so repeated conversions don't allocate once the buffers have
+ * grown to the largest size needed. The retained byte buffer never grows beyond
+ * {@value #MAX_RETAINED_BYTES} bytes, so a single large request doesn't pin a large
+ * array on the thread for the life of the JVM.
+ * <p>
+ * The buffers are shared by all library code running on the thread: their content is
+ * only valid until the next library call, so they must not be passed to library methods
+ * as sources or destinations, and they must not be handed to other threads.
+ * Short-lived threads such as virtual threads per task get fresh buffers each, so pooled
+ * threads benefit most.
+ */
+public final class ScratchBuffers {
+    /**
+     * Largest byte buffer kept by a thread; larger requests get a buffer of their own.
+     */
+    public static final int MAX_RETAINED_BYTES = 1024 * 1024;
+
+    private static final int INITIAL_BYTES = 4096;
+    private static final int PALETTE_SIZE = 64;
+    private static final ThreadLocal<ScratchBuffers> CURRENT = ThreadLocal.withInitial(ScratchBuffers::new);
+
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_BYTES);
+    private final int[] colors = new int[PALETTE_SIZE];
+
+    private ScratchBuffers() {
+        // One instance per thread, see get()
+    }
+
+    /**
+     * Gets the scratch buffers of the current thread.
+     *
+     * @return The calling thread's instance
+     */
+    public static ScratchBuffers get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Gets a heap byte buffer with room for at least the given number of bytes.
+     * The buffer is cleared, with its limit set to the requested size; its backing
+     * array is available through {@link ByteBuffer#array()}. It grows by doubling up to
+     * {@value #MAX_RETAINED_BYTES} bytes, so the previous buffer is replaced when more room
+     * is needed. Larger requests get a new buffer that the thread doesn't keep.
+     *
+     * @param capacity The number of bytes needed
+     * @return The thread's byte buffer, position 0 and limit {@code capacity}
+     */
+    public ByteBuffer bytes(int capacity) {
+        if (capacity > bytes.capacity()) {
+            if (capacity > MAX_RETAINED_BYTES) {
+                return ByteBuffer.allocate(capacity);
+            }
+            bytes = ByteBuffer.allocate(Math.min(Math.max(capacity, bytes.capacity() * 2), MAX_RETAINED_BYTES));
+        }
+        return bytes.clear().limit(capacity);
+    }
+
+    /**
+     * Gets an array for one palette of 64 colors, e.g. for an intermediate color order.
+     *
+     * @return The thread's palette array; its content is undefined
+     */
+    public int[] colors() {
+        return colors;
+    }
+}
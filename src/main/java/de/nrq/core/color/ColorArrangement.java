@@ -1,7 +1,10 @@
 package de.nrq.core.color;
 
+import java.nio.IntBuffer;
+
 /**
  * Utility class for handling color arrangement conversions between PAL and VH formats.
+ * Both directions are precomputed {@link Permutation} tables.
  */
 public class ColorArrangement {
     private static final int TOTAL_COLORS = 64;
@@ -9,6 +12,18 @@ public class ColorArrangement {
     private static final int NUM_ROWS = 4;
     private static final int BLACK_COLORS = 8;
 
+    /**
+     * Rearranges colors from PAL order to VH order.
+     * Collects the black colors from the end of each row at the start of the array.
+     */
+    public static final Permutation PAL_TO_VH = createPalToVh();
+
+    /**
+     * Rearranges colors from VH order to PAL order.
+     * Moves the black colors from the start of the array to the end of each row.
+     */
+    public static final Permutation VH_TO_PAL = PAL_TO_VH.inverse();
+
     private ColorArrangement() {
         // Utility class, prevent instantiation
     }
@@ -25,29 +40,7 @@ public class ColorArrangement {
      */
     public static int[] vhToPalOrder(int[] vhColors) {
         validateInput(vhColors);
-
-        int[] palColors = new int[TOTAL_COLORS];
-
-        // Place main colors (everything except the black colors from the first 8 positions)
-        for (int i = 0; i < TOTAL_COLORS - BLACK_COLORS; i++) {
-            int vhIndex = i + BLACK_COLORS;  // Skip the 8 black colors at start
-            int row = i / (COLORS_PER_ROW - 2);  // 14 colors per row (excluding 2 black at end)
-            int col = i % (COLORS_PER_ROW - 2);  // Position within row
-            int palIndex = row * COLORS_PER_ROW + col;  // Position in PAL format
-            palColors[palIndex] = vhColors[vhIndex];
-        }
-
-        // Place black colors at the end of each row
-        for (int row = 0; row < NUM_ROWS; row++) {
-            int palIndex1 = row * COLORS_PER_ROW + (COLORS_PER_ROW - 2);  // Second to last in row
-            int palIndex2 = row * COLORS_PER_ROW + (COLORS_PER_ROW - 1);  // Last in row
-            int vhIndex1 = row * 2;        // Two black colors per row, from start of VH
-            int vhIndex2 = row * 2 + 1;
-            palColors[palIndex1] = vhColors[vhIndex1];
-            palColors[palIndex2] = vhColors[vhIndex2];
-        }
-
-        return palColors;
+        return VH_TO_PAL.apply(vhColors);
     }
 
     /**
@@ -61,29 +54,95 @@ public class ColorArrangement {
      */
     public static int[] palToVhOrder(int[] palColors) {
         validateInput(palColors);
+        return PAL_TO_VH.apply(palColors);
+    }
 
-        int[] vhColors = new int[TOTAL_COLORS];
+    /**
+     * Converts colors from VH arrangement to PAL arrangement into a caller-provided array,
+     * without allocating.
+     *
+     * @param vhColors  Array of 64 colors in VH arrangement
+     * @param palColors Array of 64 colors receiving the PAL arrangement; must not be the source array
+     * @throws IllegalArgumentException if an array is null or doesn't hold exactly 64 colors
+     */
+    public static void vhToPalOrder(int[] vhColors, int[] palColors) {
+        validateInput(vhColors);
+        validateInput(palColors);
+        VH_TO_PAL.apply(vhColors, palColors);
+    }
 
-        // First collect black colors from the end of each row
+    /**
+     * Converts colors from PAL arrangement to VH arrangement into a caller-provided array,
+     * without allocating.
+     *
+     * @param palColors Array of 64 colors in PAL arrangement
+     * @param vhColors  Array of 64 colors receiving the VH arrangement; must not be the source array
+     * @throws IllegalArgumentException if an array is null or doesn't hold exactly 64 colors
+     */
+    public static void palToVhOrder(int[] palColors, int[] vhColors) {
+        validateInput(palColors);
+        validateInput(vhColors);
+        PAL_TO_VH.apply(palColors, vhColors);
+    }
+
+    /**
+     * Converts colors from PAL arrangement to VH arrangement, reading them from a buffer
+     * such as a {@link de.nrq.core.store.PaletteStore} view without copying them first.
+     *
+     * @param palColors Buffer with exactly 64 remaining colors in PAL arrangement
+     * @param vhColors  Array of 64 colors receiving the VH arrangement
+     * @throws IllegalArgumentException if the buffer or the array doesn't hold exactly 64 colors
+     */
+    public static void palToVhOrder(IntBuffer palColors, int[] vhColors) {
+        PAL_TO_VH.apply(palColors, vhColors);
+    }
+
+    /**
+     * Converts colors from VH arrangement to PAL arrangement, reading them from a buffer.
+     *
+     * @param vhColors  Buffer with exactly 64 remaining colors in VH arrangement
+     * @param palColors Array of 64 colors receiving the PAL arrangement
+     * @throws IllegalArgumentException if the buffer or the array doesn't hold exactly 64 colors
+     */
+    public static void vhToPalOrder(IntBuffer vhColors, int[] palColors) {
+        VH_TO_PAL.apply(vhColors, palColors);
+    }
+
+    /**
+     * Builds the PAL to VH table: for each VH position, the PAL position it is taken from.
+     *
+     * @return The permutation from PAL to VH order
+     */
+    private static Permutation createPalToVh() {
+        int[] palIndices = new int[TOTAL_COLORS];
+
+        // First the black colors from the end of each row
         for (int row = 0; row < NUM_ROWS; row++) {
-            int palIndex1 = row * COLORS_PER_ROW + (COLORS_PER_ROW - 2);
-            int palIndex2 = row * COLORS_PER_ROW + (COLORS_PER_ROW - 1);
-            int vhIndex1 = row * 2;
-            int vhIndex2 = row * 2 + 1;
-            vhColors[vhIndex1] = palColors[palIndex1];
-            vhColors[vhIndex2] = palColors[palIndex2];
+            palIndices[row * 2] = row * COLORS_PER_ROW + (COLORS_PER_ROW - 2);
+            palIndices[row * 2 + 1] = row * COLORS_PER_ROW + (COLORS_PER_ROW - 1);
         }
 
-        // Then place the remaining colors
+        // Then the remaining colors row by row
         int vhIndex = BLACK_COLORS;
         for (int row = 0; row < NUM_ROWS; row++) {
             for (int col = 0; col < COLORS_PER_ROW - 2; col++) {
-                int palIndex = row * COLORS_PER_ROW + col;
-                vhColors[vhIndex++] = palColors[palIndex];
+                palIndices[vhIndex++] = row * COLORS_PER_ROW + col;
             }
         }
 
-        return vhColors;
+        return Permutation.of(palIndices);
+    }
+
+    /**
+     * Checks whether a position in PAL arrangement is one of the black slots.
+     * The last two colors of each row are reserved for black and end up
+     * at the start of the array in VH arrangement.
+     *
+     * @param palIndex Index of the color in PAL arrangement (0-63)
+     * @return true if the slot is expected to hold black
+     */
+    public static boolean isBlackSlot(int palIndex) {
+        return palIndex % COLORS_PER_ROW >= COLORS_PER_ROW - 2;
     }
 
     /**
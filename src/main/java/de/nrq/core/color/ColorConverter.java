@@ -56,6 +56,25 @@ public class ColorConverter {
         return colors;
     }
 
+    /**
+     * Converts RGB bytes to integer colors in a caller-provided array, without allocating.
+     * Reads three bytes per entry of the destination.
+     *
+     * @param data   Array of RGB bytes [R,G,B,R,G,B,...]
+     * @param offset Index of the first byte to read
+     * @param dest   Array receiving the colors in 0xRRGGBB format
+     * @throws IllegalArgumentException if the data doesn't hold 3 bytes per destination entry
+     */
+    public static void rgbBytesToIntArray(byte[] data, int offset, int[] dest) {
+        if (offset < 0 || data.length - offset < dest.length * 3) {
+            throw new IllegalArgumentException(
+                    String.format("Data must hold %d bytes from offset %d", dest.length * 3, offset));
+        }
+        for (int i = 0, pos = offset; i < dest.length; i++, pos += 3) {
+            dest[i] = rgbToInt(data[pos], data[pos + 1], data[pos + 2]);
+        }
+    }
+
     /**
      * Converts an array of integer colors to RGB bytes.
      * Each color is split into its RGB components.
@@ -65,12 +84,28 @@ public class ColorConverter {
      */
     public static byte[] intArrayToRgbBytes(int[] colors) {
         byte[] data = new byte[colors.length * 3];
-        for (int i = 0; i < colors.length; i++) {
-            byte[] rgb = intToRgb(colors[i]);
-            data[i * 3] = rgb[0];
-            data[i * 3 + 1] = rgb[1];
-            data[i * 3 + 2] = rgb[2];
-        }
+        intArrayToRgbBytes(colors, data, 0);
         return data;
     }
+
+    /**
+     * Converts integer colors to RGB bytes in a caller-provided array, without allocating.
+     *
+     * @param colors Array of integer colors in 0xRRGGBB format
+     * @param dest   Array receiving 3 bytes [R,G,B] per color
+     * @param offset Index of the first byte to write
+     * @throws IllegalArgumentException if the destination has no room for all colors
+     */
+    public static void intArrayToRgbBytes(int[] colors, byte[] dest, int offset) {
+        if (offset < 0 || dest.length - offset < colors.length * 3) {
+            throw new IllegalArgumentException(
+                    String.format("Destination must have room for %d bytes from offset %d", colors.length * 3, offset));
+        }
+        for (int i = 0, pos = offset; i < colors.length; i++, pos += 3) {
+            int color = colors[i];
+            dest[pos] = (byte) ((color >> 16) & 0xFF);     // R
+            dest[pos + 1] = (byte) ((color >> 8) & 0xFF);  // G
+            dest[pos + 2] = (byte) (color & 0xFF);         // B
+        }
+    }
 }
@@ -0,0 +1,369 @@
+package de.nrq.core.color;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable permutation of palette entries, stored as a precomputed index table.
+ * Applying the permutation gathers entries: position i of the result receives
+ * the source entry at {@link #sourceIndex(int) sourceIndex(i)}.
+ * <p>
+ * The cycle structure is computed once at construction, so the permutation can be
+ * applied in place by cycle-following without a temporary array. Bulk methods apply
+ * it to every palette in a contiguous buffer (e.g. a whole bank or raw dump),
+ * parallelized over chunks of palettes.
+ * <p>
+ * Custom orderings for other firmware can be created with {@link #of(int...)}.
+ */
+public final class Permutation {
+    private static final int BYTES_PER_COLOR = 3;
+    private static final int PALETTES_PER_CHUNK = 4096;
+
+    private final int[] table;
+    private final int[] cycleStarts;
+
+    private Permutation(int[] table) {
+        this.table = table;
+        this.cycleStarts = findCycleStarts(table);
+    }
+
+    /**
+     * Creates a permutation from a table of source indices.
+     * Entry i of the table names the source position whose value ends up at position i.
+     *
+     * @param sourceIndices Source index for each target position; each index must appear exactly once
+     * @return The permutation
+     * @throws IllegalArgumentException if the table is null, empty or not a permutation
+     */
+    public static Permutation of(int... sourceIndices) {
+        if (sourceIndices == null || sourceIndices.length == 0) {
+            throw new IllegalArgumentException("Permutation table cannot be empty");
+        }
+        boolean[] seen = new boolean[sourceIndices.length];
+        for (int index : sourceIndices) {
+            if (index < 0 || index >= sourceIndices.length || seen[index]) {
+                throw new IllegalArgumentException(
+                        String.format("Invalid permutation table: index %d is out of range or repeated", index)
+                );
+            }
+            seen[index] = true;
+        }
+        return new Permutation(sourceIndices.clone());
+    }
+
+    /**
+     * Creates the permutation that leaves every entry in place.
+     *
+     * @param size Number of entries
+     * @return The identity permutation
+     */
+    public static Permutation identity(int size) {
+        return of(IntStream.range(0, size).toArray());
+    }
+
+    /**
+     * Gets the number of entries this permutation rearranges.
+     *
+     * @return The permutation size
+     */
+    public int size() {
+        return table.length;
+    }
+
+    /**
+     * Gets the source position of the entry that ends up at the given target position.
+     *
+     * @param targetIndex Position in the rearranged array
+     * @return Position in the source array
+     */
+    public int sourceIndex(int targetIndex) {
+        return table[targetIndex];
+    }
+
+    /**
+     * Creates the permutation that undoes this one.
+     *
+     * @return The inverse permutation
+     */
+    public Permutation inverse() {
+        int[] inverse = new int[table.length];
+        for (int i = 0; i < table.length; i++) {
+            inverse[table[i]] = i;
+        }
+        return new Permutation(inverse);
+    }
+
+    /**
+     * Composes this permutation with another one applied afterwards.
+     * Applying the result is equivalent to applying this permutation and then {@code next}.
+     *
+     * @param next The permutation to apply after this one
+     * @return The composed permutation
+     * @throws IllegalArgumentException if the sizes differ
+     */
+    public Permutation andThen(Permutation next) {
+        checkSize(next.size());
+        int[] composed = new int[table.length];
+        for (int i = 0; i < table.length; i++) {
+            composed[i] = table[next.table[i]];
+        }
+        return new Permutation(composed);
+    }
+
+    /**
+     * Applies the permutation, returning a new array.
+     *
+     * @param colors Source entries
+     * @return Rearranged copy of the entries
+     * @throws IllegalArgumentException if the array length doesn't match the permutation size
+     */
+    public int[] apply(int[] colors) {
+        int[] result = new int[table.length];
+        apply(colors, result);
+        return result;
+    }
+
+    /**
+     * Applies the permutation into a caller-provided array.
+     * Source and target must be different arrays.
+     *
+     * @param source Source entries
+     * @param target Array receiving the rearranged entries
+     * @throws IllegalArgumentException if a length doesn't match the permutation size
+     */
+    public void apply(int[] source, int[] target) {
+        checkSize(source.length);
+        checkSize(target.length);
+        for (int i = 0; i < table.length; i++) {
+            target[i] = source[table[i]];
+        }
+    }
+
+    /**
+     * Applies the permutation to the entries of a buffer, such as a view into a
+     * {@link de.nrq.core.store.PaletteStore}, without copying the source first.
+     * The entries are read from the buffer's position; the position is not modified.
+     *
+     * @param source Buffer with at least as many remaining entries as the permutation size
+     * @param target Array receiving the rearranged entries
+     * @throws IllegalArgumentException if a size doesn't match the permutation size
+     */
+    public void apply(IntBuffer source, int[] target) {
+        checkSize(source.remaining());
+        checkSize(target.length);
+        int base = source.position();
+        for (int i = 0; i < table.length; i++) {
+            target[i] = source.get(base + table[i]);
+        }
+    }
+
+    /**
+     * Applies the permutation in place.
+     *
+     * @param colors Entries to rearrange
+     * @throws IllegalArgumentException if the array length doesn't match the permutation size
+     */
+    public void applyInPlace(int[] colors) {
+        checkSize(colors.length);
+        applyInPlace(colors, 0);
+    }
+
+    /**
+     * Applies the permutation in place to one palette inside a larger buffer.
+     *
+     * @param data   Buffer of colors
+     * @param offset Index of the palette's first entry in the buffer
+     */
+    public void applyInPlace(int[] data, int offset) {
+        for (int start : cycleStarts) {
+            int saved = data[offset + start];
+            int target = start;
+            int source = table[target];
+            while (source != start) {
+                data[offset + target] = data[offset + source];
+                target = source;
+                source = table[target];
+            }
+            data[offset + target] = saved;
+        }
+    }
+
+    /**
+     * Applies the permutation in place to one palette inside an int buffer.
+     * Uses absolute access only, so different palettes of the same buffer can be
+     * processed concurrently.
+     *
+     * @param data   Buffer of colors
+     * @param offset Index of the palette's first entry in the buffer
+     */
+    public void applyInPlace(IntBuffer data, int offset) {
+        for (int start : cycleStarts) {
+            int saved = data.get(offset + start);
+            int target = start;
+            int source = table[target];
+            while (source != start) {
+                data.put(offset + target, data.get(offset + source));
+                target = source;
+                source = table[target];
+            }
+            data.put(offset + target, saved);
+        }
+    }
+
+    /**
+     * Applies the permutation in place to one palette of single-byte entries inside a buffer,
+     * such as one channel of a planar {@link de.nrq.core.store.PaletteStore}.
+     *
+     * @param data   Buffer of bytes, one per entry
+     * @param offset Index of the palette's first entry in the buffer
+     */
+    public void applyInPlace(ByteBuffer data, int offset) {
+        for (int start : cycleStarts) {
+            byte saved = data.get(offset + start);
+            int target = start;
+            int source = table[target];
+            while (source != start) {
+                data.put(offset + target, data.get(offset + source));
+                target = source;
+                source = table[target];
+            }
+            data.put(offset + target, saved);
+        }
+    }
+
+    /**
+     * Applies the permutation in place to one palette of 3-byte RGB entries inside a byte buffer,
+     * such as the content of a raw PAL file.
+     *
+     * @param data   Buffer of RGB bytes
+     * @param offset Byte offset of the palette's first entry
+     */
+    public void applyInPlaceRgb(byte[] data, int offset) {
+        for (int start : cycleStarts) {
+            int startPos = offset + start * BYTES_PER_COLOR;
+            byte r = data[startPos];
+            byte g = data[startPos + 1];
+            byte b = data[startPos + 2];
+            int target = start;
+            int source = table[target];
+            while (source != start) {
+                System.arraycopy(data, offset + source * BYTES_PER_COLOR,
+                        data, offset + target * BYTES_PER_COLOR, BYTES_PER_COLOR);
+                target = source;
+                source = table[target];
+            }
+            int targetPos = offset + target * BYTES_PER_COLOR;
+            data[targetPos] = r;
+            data[targetPos + 1] = g;
+            data[targetPos + 2] = b;
+        }
+    }
+
+    /**
+     * Applies the permutation in place to every palette in a contiguous buffer of colors.
+     * Large buffers are processed in parallel chunks.
+     *
+     * @param data Buffer holding whole palettes back to back
+     * @throws IllegalArgumentException if the length isn't a multiple of the permutation size
+     */
+    public void applyBulk(int[] data) {
+        int palettes = countPalettes(data.length);
+        forEachChunk(palettes, (from, to) -> {
+            for (int p = from; p < to; p++) {
+                applyInPlace(data, p * table.length);
+            }
+        });
+    }
+
+    /**
+     * Applies the permutation in place to every palette in a contiguous buffer of RGB bytes.
+     * Large buffers are processed in parallel chunks.
+     *
+     * @param data Buffer holding whole palettes of 3-byte entries back to back
+     * @throws IllegalArgumentException if the length isn't a multiple of the palette size in bytes
+     */
+    public void applyBulkRgb(byte[] data) {
+        if (data.length % BYTES_PER_COLOR != 0) {
+            throw new IllegalArgumentException("Data length must be multiple of 3");
+        }
+        int palettes = countPalettes(data.length / BYTES_PER_COLOR);
+        forEachChunk(palettes, (from, to) -> {
+            for (int p = from; p < to; p++) {
+                applyInPlaceRgb(data, p * table.length * BYTES_PER_COLOR);
+            }
+        });
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Permutation other && Arrays.equals(table, other.table);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(table);
+    }
+
+    @Override
+    public String toString() {
+        return "Permutation" + Arrays.toString(table);
+    }
+
+    private interface ChunkTask {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits the palette range into chunks and runs them in parallel if there is more than one.
+     */
+    private static void forEachChunk(int palettes, ChunkTask task) {
+        int chunks = (palettes + PALETTES_PER_CHUNK - 1) / PALETTES_PER_CHUNK;
+        if (chunks <= 1) {
+            task.run(0, palettes);
+            return;
+        }
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * PALETTES_PER_CHUNK;
+            task.run(from, Math.min(from + PALETTES_PER_CHUNK, palettes));
+        });
+    }
+
+    private int countPalettes(int entries) {
+        if (entries % table.length != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Buffer must hold whole palettes of %d colors", table.length)
+            );
+        }
+        return entries / table.length;
+    }
+
+    private void checkSize(int size) {
+        if (size != table.length) {
+            throw new IllegalArgumentException(
+                    String.format("Colors array must contain exactly %d colors", table.length)
+            );
+        }
+    }
+
+    /**
+     * Finds one element of every cycle longer than one, so in-place application
+     * can skip fixed points and needs no visited markers.
+     */
+    private static int[] findCycleStarts(int[] table) {
+        boolean[] visited = new boolean[table.length];
+        int[] starts = new int[table.length];
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (visited[i] || table[i] == i) {
+                continue;
+            }
+            starts[count++] = i;
+            for (int j = i; !visited[j]; j = table[j]) {
+                visited[j] = true;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+}
@@ -0,0 +1,285 @@
+package de.nrq.core.distance;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * All-pairs perceptual distances between the palettes of a library.
+ * Distances are computed in square tiles of palettes so both tiles stay in cache,
+ * with tiles processed in parallel on the common fork-join pool.
+ * <p>
+ * The full matrix is written to a memory-mapped file: an 8-byte header (the magic
+ * {@code PDM1} followed by the palette count as little-endian int) and N x N
+ * little-endian floats in row-major order. Only the upper triangle is computed;
+ * each value is stored in both halves. For libraries where N² floats don't fit on
+ * disk, {@link #nearest(int, NeighborSink)} streams the k nearest neighbors instead.
+ */
+public class DistanceMatrix {
+    /**
+     * Size of the matrix file header in bytes.
+     */
+    public static final int HEADER_SIZE = 8;
+
+    private static final int TILE = 64;
+    private static final byte[] MAGIC = {'P', 'D', 'M', '1'};
+
+    private final float[] lab;
+    private final int count;
+
+    /**
+     * Receives the nearest neighbors of one palette.
+     */
+    public interface NeighborSink {
+        /**
+         * Called once per palette, in index order.
+         *
+         * @param index     Index of the palette
+         * @param neighbors Indices of the nearest other palettes, closest first
+         * @param distances Distances to those palettes
+         * @throws IOException If the result can't be written
+         */
+        void accept(int index, int[] neighbors, float[] distances) throws IOException;
+    }
+
+    /**
+     * Prepares the distance computation for a library of palettes.
+     *
+     * @param colors Flat array of whole palettes, 64 colors each, as returned by
+     *               {@link de.nrq.core.reader.PaletteFiles#readAll}
+     * @throws IllegalArgumentException if the array doesn't hold whole palettes
+     */
+    public DistanceMatrix(int[] colors) {
+        this.lab = LabPalettes.toLab(colors);
+        this.count = colors.length / LabPalettes.TOTAL_COLORS;
+    }
+
+    /**
+     * Gets the number of palettes.
+     *
+     * @return The matrix dimension
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Computes the full matrix and writes it to a memory-mapped file.
+     *
+     * @param output The matrix file to create or overwrite
+     * @throws IOException If the file can't be written
+     */
+    public void write(Path output) throws IOException {
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(count).flip();
+            channel.write(header, 0);
+
+            MatrixWindows windows = new MatrixWindows(channel, count, FileChannel.MapMode.READ_WRITE);
+
+            // Enumerate the tile pairs of the upper triangle, so work is spread evenly
+            int tiles = (count + TILE - 1) / TILE;
+            long[] pairs = new long[tiles * (tiles + 1) / 2];
+            int next = 0;
+            for (int ti = 0; ti < tiles; ti++) {
+                for (int tj = ti; tj < tiles; tj++) {
+                    pairs[next++] = (long) ti << 32 | tj;
+                }
+            }
+
+            Arrays.stream(pairs).parallel().forEach(pair -> {
+                int rowStart = (int) (pair >>> 32) * TILE;
+                int colStart = (int) pair * TILE;
+                int rowEnd = Math.min(rowStart + TILE, count);
+                int colEnd = Math.min(colStart + TILE, count);
+                for (int i = rowStart; i < rowEnd; i++) {
+                    for (int j = Math.max(colStart, i); j < colEnd; j++) {
+                        float distance = i == j ? 0 : LabPalettes.distance(lab, i, j);
+                        windows.put(i, j, distance);
+                        windows.put(j, i, distance);
+                    }
+                }
+            });
+
+            windows.force();
+        }
+    }
+
+    /**
+     * Computes the k nearest neighbors of every palette and streams them to a sink.
+     * Rows are processed in blocks of tiles in parallel; results are handed to the sink
+     * in index order, so memory use is bounded by the block size, not by N².
+     *
+     * @param k    Number of neighbors per palette (capped at N - 1)
+     * @param sink Receiver of the neighbor lists
+     * @throws IOException If the sink fails
+     */
+    public void nearest(int k, NeighborSink sink) throws IOException {
+        if (k < 1) {
+            throw new IllegalArgumentException("Number of neighbors must be at least 1");
+        }
+        int neighbors = Math.max(0, Math.min(k, count - 1));
+        int blockRows = TILE * Runtime.getRuntime().availableProcessors() * 4;
+        int[][] indices = new int[blockRows][neighbors];
+        float[][] distances = new float[blockRows][neighbors];
+
+        for (int blockStart = 0; blockStart < count; blockStart += blockRows) {
+            int start = blockStart;
+            int end = Math.min(blockStart + blockRows, count);
+
+            int tiles = neighbors > 0 ? (end - start + TILE - 1) / TILE : 0;
+            IntStream.range(0, tiles).parallel().forEach(tile -> {
+                int rowStart = start + tile * TILE;
+                int rowEnd = Math.min(rowStart + TILE, end);
+                int[] sizes = new int[rowEnd - rowStart];
+                for (int colStart = 0; colStart < count; colStart += TILE) {
+                    int colEnd = Math.min(colStart + TILE, count);
+                    for (int i = rowStart; i < rowEnd; i++) {
+                        for (int j = colStart; j < colEnd; j++) {
+                            if (i != j) {
+                                sizes[i - rowStart] = insert(indices[i - start], distances[i - start],
+                                        sizes[i - rowStart], j, LabPalettes.distance(lab, i, j));
+                            }
+                        }
+                    }
+                }
+            });
+
+            for (int i = start; i < end; i++) {
+                sink.accept(i, indices[i - start], distances[i - start]);
+            }
+        }
+    }
+
+    /**
+     * Groups palettes by single-linkage clustering on a written matrix file:
+     * palettes closer than the threshold end up in the same cluster, transitively.
+     *
+     * @param matrixFile A file written by {@link #write(Path)}
+     * @param threshold  Maximum distance for linking two palettes
+     * @return Cluster number for every palette, numbered from 0 in order of first appearance
+     * @throws IOException              If the file can't be read
+     * @throws IllegalArgumentException if the file is not a distance matrix
+     */
+    public static int[] cluster(Path matrixFile, float threshold) throws IOException {
+        try (FileChannel channel = FileChannel.open(matrixFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.get(0) != MAGIC[0] || header.get(1) != MAGIC[1]
+                    || header.get(2) != MAGIC[2] || header.get(3) != MAGIC[3]) {
+                throw new IllegalArgumentException("Not a palette distance matrix file");
+            }
+            int n = header.getInt(4);
+            if (channel.size() != HEADER_SIZE + (long) n * n * Float.BYTES) {
+                throw new IllegalArgumentException("Invalid distance matrix file size");
+            }
+
+            MatrixWindows windows = new MatrixWindows(channel, n, FileChannel.MapMode.READ_ONLY);
+            int[] parent = IntStream.range(0, n).toArray();
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if (windows.get(i, j) < threshold) {
+                        union(parent, i, j);
+                    }
+                }
+            }
+
+            int[] clusters = new int[n];
+            int[] numbers = new int[n];
+            Arrays.fill(numbers, -1);
+            int next = 0;
+            for (int i = 0; i < n; i++) {
+                int root = find(parent, i);
+                if (numbers[root] < 0) {
+                    numbers[root] = next++;
+                }
+                clusters[i] = numbers[root];
+            }
+            return clusters;
+        }
+    }
+
+    /**
+     * Inserts a candidate into a sorted bounded neighbor list.
+     *
+     * @return The new list size
+     */
+    private static int insert(int[] indices, float[] distances, int size, int index, float distance) {
+        if (size == indices.length && distance >= distances[size - 1]) {
+            return size;
+        }
+        int pos = size == indices.length ? size - 1 : size;
+        while (pos > 0 && distances[pos - 1] > distance) {
+            indices[pos] = indices[pos - 1];
+            distances[pos] = distances[pos - 1];
+            pos--;
+        }
+        indices[pos] = index;
+        distances[pos] = distance;
+        return Math.min(size + 1, indices.length);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];  // Path halving
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+
+    /**
+     * Maps the matrix body in windows of whole rows, since a single mapping
+     * is limited to 2 GB.
+     */
+    private static final class MatrixWindows {
+        private final MappedByteBuffer[] windows;
+        private final int rowsPerWindow;
+        private final long rowBytes;
+
+        MatrixWindows(FileChannel channel, int n, FileChannel.MapMode mode) throws IOException {
+            this.rowBytes = (long) n * Float.BYTES;
+            this.rowsPerWindow = (int) Math.max(1, Integer.MAX_VALUE / Math.max(1, rowBytes));
+            int count = n == 0 ? 0 : (n + rowsPerWindow - 1) / rowsPerWindow;
+            this.windows = new MappedByteBuffer[count];
+            for (int w = 0; w < count; w++) {
+                int rows = Math.min(rowsPerWindow, n - w * rowsPerWindow);
+                windows[w] = channel.map(mode, HEADER_SIZE + w * rowsPerWindow * rowBytes, rows * rowBytes);
+                windows[w].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        void put(int row, int col, float value) {
+            windows[row / rowsPerWindow].putFloat(index(row, col), value);
+        }
+
+        float get(int row, int col) {
+            return windows[row / rowsPerWindow].getFloat(index(row, col));
+        }
+
+        void force() {
+            for (MappedByteBuffer window : windows) {
+                window.force();
+            }
+        }
+
+        private int index(int row, int col) {
+            return (int) ((row % rowsPerWindow) * rowBytes + (long) col * Float.BYTES);
+        }
+    }
+}
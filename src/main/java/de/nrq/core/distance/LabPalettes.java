@@ -0,0 +1,108 @@
+package de.nrq.core.distance;
+
+/**
+ * Converts palettes to CIELAB and measures perceptual distances between them.
+ * Palettes are handled as flat float arrays holding L, a and b for each of the
+ * 64 entries, palette after palette, so large libraries stay in a single
+ * primitive array with good locality.
+ */
+public final class LabPalettes {
+    /**
+     * Number of colors in a palette.
+     */
+    public static final int TOTAL_COLORS = 64;
+
+    /**
+     * Number of floats one palette occupies in a flat Lab array.
+     */
+    public static final int STRIDE = TOTAL_COLORS * 3;
+
+    private static final float[] LINEAR = createLinearTable();
+
+    // sRGB D65 white point
+    private static final float WHITE_X = 0.95047f;
+    private static final float WHITE_Z = 1.08883f;
+
+    private LabPalettes() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Converts palettes from 0xRRGGBB colors to CIELAB.
+     *
+     * @param colors Flat array of whole palettes, 64 colors each
+     * @return Flat array with L, a and b for each color
+     * @throws IllegalArgumentException if the array doesn't hold whole palettes
+     */
+    public static float[] toLab(int[] colors) {
+        if (colors.length % TOTAL_COLORS != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Colors array must hold whole palettes of %d colors", TOTAL_COLORS)
+            );
+        }
+        float[] lab = new float[colors.length * 3];
+        for (int i = 0; i < colors.length; i++) {
+            int color = colors[i];
+            float r = LINEAR[(color >> 16) & 0xFF];
+            float g = LINEAR[(color >> 8) & 0xFF];
+            float b = LINEAR[color & 0xFF];
+
+            float fx = f((0.4124f * r + 0.3576f * g + 0.1805f * b) / WHITE_X);
+            float fy = f(0.2126f * r + 0.7152f * g + 0.0722f * b);
+            float fz = f((0.0193f * r + 0.1192f * g + 0.9505f * b) / WHITE_Z);
+
+            lab[i * 3] = 116 * fy - 16;
+            lab[i * 3 + 1] = 500 * (fx - fy);
+            lab[i * 3 + 2] = 200 * (fy - fz);
+        }
+        return lab;
+    }
+
+    /**
+     * Computes the distance between two palettes as the mean CIE76 color difference
+     * of corresponding entries.
+     *
+     * @param lab Flat Lab array as returned by {@link #toLab(int[])}
+     * @param a   Index of the first palette
+     * @param b   Index of the second palette
+     * @return The mean color difference (0 for identical palettes)
+     */
+    public static float distance(float[] lab, int a, int b) {
+        return distance(lab, a, lab, b);
+    }
+
+    /**
+     * Computes the distance between palettes of two flat Lab arrays.
+     *
+     * @param labA Flat Lab array holding the first palette
+     * @param a    Index of the first palette in labA
+     * @param labB Flat Lab array holding the second palette
+     * @param b    Index of the second palette in labB
+     * @return The mean color difference
+     */
+    public static float distance(float[] labA, int a, float[] labB, int b) {
+        int offsetA = a * STRIDE;
+        int offsetB = b * STRIDE;
+        float sum = 0;
+        for (int i = 0; i < STRIDE; i += 3) {
+            float dl = labA[offsetA + i] - labB[offsetB + i];
+            float da = labA[offsetA + i + 1] - labB[offsetB + i + 1];
+            float db = labA[offsetA + i + 2] - labB[offsetB + i + 2];
+            sum += (float) Math.sqrt(dl * dl + da * da + db * db);
+        }
+        return sum / TOTAL_COLORS;
+    }
+
+    private static float f(float t) {
+        return t > 216f / 24389f ? (float) Math.cbrt(t) : (24389f / 27f * t + 16) / 116;
+    }
+
+    private static float[] createLinearTable() {
+        float[] table = new float[256];
+        for (int i = 0; i < table.length; i++) {
+            double c = i / 255.0;
+            table[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+        return table;
+    }
+}
@@ -1,18 +1,43 @@
 package de.nrq.core.format;
 
+import java.nio.ByteBuffer;
+
 /**
  * Represents supported palette file formats.
  * Supported formats:
  * - PAL: Raw RGB color data, 3 bytes per color
  * - VH: Verilog array format with 24'hRRGGBB color values
+ * - BMP: Preview image with 16x4 color squares, as created by the tobmp command
+ * - JASC: Paint Shop Pro text palette, stored as .pal with a JASC-PAL header
+ * - RIFF: Microsoft RIFF palette, stored as .pal with a RIFF/PAL header
+ * - ACT: Adobe color table, 256 RGB triplets with an optional color count
+ * - GPL: GIMP text palette
+ * - PPK: Compressed palette archive, here holding a single palette
  */
 public enum PaletteFormat {
-    PAL,
-    VH;
+    PAL(".pal"),
+    VH(".vh"),
+    BMP(".bmp"),
+    JASC(".pal"),
+    RIFF(".pal"),
+    ACT(".act"),
+    GPL(".gpl"),
+    PPK(".ppk");
+
+    private static final byte[] RIFF_MAGIC = {'R', 'I', 'F', 'F'};
+    private static final byte[] JASC_MAGIC = {'J', 'A', 'S', 'C', '-', 'P', 'A', 'L'};
+
+    private final String extension;
+
+    PaletteFormat(String extension) {
+        this.extension = extension;
+    }
 
     /**
      * Determines the palette format from a filename extension.
-     * Case-insensitive matching of .pal or .vh extensions.
+     * Case-insensitive matching of .pal, .vh, .bmp, .act, .gpl or .ppk extensions.
+     * All .pal files map to PAL; use {@link #detect(ByteBuffer)} to tell
+     * the JASC and RIFF variants apart by their content.
      *
      * @param filename The filename to check
      * @return The detected PaletteFormat
@@ -24,17 +49,71 @@ public enum PaletteFormat {
             return PAL;
         } else if (lowerFilename.endsWith(".vh")) {
             return VH;
+        } else if (lowerFilename.endsWith(".bmp")) {
+            return BMP;
+        } else if (lowerFilename.endsWith(".act")) {
+            return ACT;
+        } else if (lowerFilename.endsWith(".gpl")) {
+            return GPL;
+        } else if (lowerFilename.endsWith(".ppk")) {
+            return PPK;
+        }
+        throw new IllegalArgumentException("Unsupported file format. Use .pal, .vh, .bmp, .act, .gpl or .ppk files.");
+    }
+
+    /**
+     * Determines the format by name, as given on the command line.
+     * Case-insensitive.
+     *
+     * @param name The format name, e.g. "jasc"
+     * @return The matching PaletteFormat
+     * @throws IllegalArgumentException if there is no format of that name
+     */
+    public static PaletteFormat fromName(String name) {
+        for (PaletteFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown palette format: " + name);
+    }
+
+    /**
+     * Tells the variants of .pal files apart by their header.
+     * Only the first bytes of the buffer are inspected; its position is not modified.
+     *
+     * @param data Buffer holding the beginning of a .pal file
+     * @return RIFF or JASC if the content starts with their signature, otherwise PAL (raw RGB data)
+     */
+    public static PaletteFormat detect(ByteBuffer data) {
+        if (startsWith(data, RIFF_MAGIC)) {
+            return RIFF;
+        } else if (startsWith(data, JASC_MAGIC)) {
+            return JASC;
+        }
+        return PAL;
+    }
+
+    private static boolean startsWith(ByteBuffer data, byte[] magic) {
+        if (data.remaining() < magic.length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (data.get(data.position() + i) != magic[i]) {
+                return false;
+            }
         }
-        throw new IllegalArgumentException("Unsupported file format. Use .pal or .vh files.");
+        return true;
     }
 
     /**
      * Gets the file extension for this format.
      * Returns the lowercase extension including the dot.
+     * The .pal variants JASC and RIFF share the extension of PAL.
      *
      * @return The file extension (e.g., ".pal" or ".vh")
      */
     public String getExtension() {
-        return "." + name().toLowerCase();
+        return extension;
     }
 }
@@ -0,0 +1,64 @@
+package de.nrq.core.format;
+
+/**
+ * Thrown when palette file content does not match its format.
+ * Carries the line and column of the offending input where the format has
+ * a meaningful notion of position (text formats such as VH).
+ */
+public class PaletteFormatException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    private final String reason;
+    private final int line;
+    private final int column;
+
+    /**
+     * Creates an exception without position information.
+     *
+     * @param message Description of the problem
+     */
+    public PaletteFormatException(String message) {
+        this(message, -1, -1);
+    }
+
+    /**
+     * Creates an exception pointing at a position in the input.
+     *
+     * @param message Description of the problem
+     * @param line    1-based line number, or -1 if unknown
+     * @param column  1-based column number, or -1 if unknown
+     */
+    public PaletteFormatException(String message, int line, int column) {
+        super(line > 0 ? String.format("%s (line %d, column %d)", message, line, column) : message);
+        this.reason = message;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the 1-based line of the error.
+     *
+     * @return The line number, or -1 if the error has no position
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Gets the 1-based column of the error.
+     *
+     * @return The column number, or -1 if the error has no position
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Gets the message without the appended position.
+     *
+     * @return The plain error description
+     */
+    public String getReason() {
+        return reason;
+    }
+}
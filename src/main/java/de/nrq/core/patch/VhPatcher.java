@@ -0,0 +1,396 @@
+package de.nrq.core.patch;
+
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.format.PaletteFormatException;
+import de.nrq.core.reader.PaletteReader;
+import de.nrq.core.reader.VhParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Replaces the palette of <code>lumacode_data_3s</code> arrays embedded in Verilog sources,
+ * as written by {@link de.nrq.core.writer.VhWriter}.
+ * <p>
+ * Files are memory-mapped and searched for the array name; only occurrences outside
+ * comments that are followed by optional dimensions and an <code>= '{</code> initializer
+ * count as declarations, so reads of the array elsewhere in the file are left alone.
+ * The initializer must hold exactly 64 well-formed literals. Only the hex digits of
+ * literals whose color differs are rewritten,
+ * in place, keeping the layout, comments and digit case of the file. Files whose arrays
+ * already hold the palette are never opened for writing, so their modification time stays
+ * the same and incremental builds skip them.
+ */
+public class VhPatcher {
+    /**
+     * Name of the patched array.
+     */
+    public static final String ARRAY_NAME = "lumacode_data_3s";
+
+    /**
+     * Extensions of the Verilog and SystemVerilog sources searched by {@link #patchTree}.
+     */
+    public static final List<String> SOURCE_EXTENSIONS = List.of(".v", ".vh", ".sv", ".svh");
+
+    private static final int TOTAL_COLORS = PaletteReader.TOTAL_COLORS;
+    private static final int HEX_DIGITS = 6;
+    private static final byte[] NAME = ARRAY_NAME.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UPPER_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LOWER_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Distance to shift the search window by, indexed by the byte under its last position
+     * (Boyer-Moore-Horspool), so most bytes of a file are never looked at.
+     */
+    private static final int[] SKIP = createSkipTable();
+
+    private final int[] vhColors;
+    private final boolean dryRun;
+
+    /**
+     * Outcome of patching one file.
+     *
+     * @param file    The source file
+     * @param arrays  Number of array declarations found
+     * @param changed Number of colors that differed and were rewritten, or would be in a dry run
+     * @param error   Why the file was left unchanged, or null on success
+     */
+    public record Result(Path file, int arrays, int changed, String error) {
+        /**
+         * Checks whether the file had colors to change.
+         *
+         * @return true if colors were or, in a dry run, would be rewritten
+         */
+        public boolean isPatched() {
+            return changed > 0;
+        }
+
+        /**
+         * Checks whether the file could not be patched.
+         *
+         * @return true if an error occurred
+         */
+        public boolean isFailed() {
+            return error != null;
+        }
+    }
+
+    /**
+     * Totals of a tree patch.
+     *
+     * @param files   Number of source files searched
+     * @param arrays  Number of array declarations found
+     * @param patched Number of files with changed colors
+     * @param failed  Number of files that could not be patched
+     */
+    public record Summary(int files, int arrays, int patched, int failed) {
+    }
+
+    /**
+     * Creates a patcher that writes a palette.
+     *
+     * @param colors Array of 64 colors in PAL order
+     * @param dryRun Whether to only report changes without writing them
+     * @throws IllegalArgumentException if the array doesn't hold exactly 64 colors
+     */
+    public VhPatcher(int[] colors, boolean dryRun) {
+        this.vhColors = ColorArrangement.palToVhOrder(colors);
+        for (int i = 0; i < TOTAL_COLORS; i++) {
+            vhColors[i] &= 0xFFFFFF;
+        }
+        this.dryRun = dryRun;
+    }
+
+    /**
+     * Patches all Verilog sources below a directory in parallel.
+     * Files are matched by the extensions in {@link #SOURCE_EXTENSIONS}; hidden directories
+     * such as <code>.git</code> are skipped. If the root is a regular file, only that file is patched.
+     * Results of files containing the array are handed to the sink as soon as they are
+     * available, in no particular order, so the sink must be safe to call from multiple threads.
+     *
+     * @param root Directory to scan recursively, or a single source file
+     * @param sink Receiver of the per-file results
+     * @return Totals over all searched files
+     * @throws IOException If the directory tree can't be traversed
+     */
+    public Summary patchTree(Path root, Consumer<Result> sink) throws IOException {
+        List<Path> files = listSources(root);
+
+        AtomicInteger arrays = new AtomicInteger();
+        AtomicInteger patched = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        files.parallelStream()
+                .map(this::patch)
+                .filter(result -> result.arrays() > 0 || result.isFailed())
+                .forEach(result -> {
+                    arrays.addAndGet(result.arrays());
+                    if (result.isFailed()) {
+                        failed.incrementAndGet();
+                    } else if (result.isPatched()) {
+                        patched.incrementAndGet();
+                    }
+                    sink.accept(result);
+                });
+        return new Summary(files.size(), arrays.get(), patched.get(), failed.get());
+    }
+
+    /**
+     * Patches every array declaration in a single file.
+     * A file is only written if all its declarations are valid and at least one color differs.
+     *
+     * @param file The source file
+     * @return The result; errors are reported in it rather than thrown
+     */
+    public Result patch(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return new Result(file, 0, 0, "File is larger than 2 GB");
+            }
+            if (size < NAME.length) {
+                return new Result(file, 0, 0, null);
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return patch(file, data);
+        } catch (IOException e) {
+            return new Result(file, 0, 0, "Cannot patch file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the declarations in the mapped content and writes the changed literals.
+     */
+    private Result patch(Path file, ByteBuffer data) throws IOException {
+        int end = data.limit();
+        int[] colors = new int[TOTAL_COLORS];
+        int[] offsets = new int[TOTAL_COLORS];
+        List<int[]> edits = new ArrayList<>();
+        int arrays = 0;
+
+        // Bytes before this index are known to be outside comments
+        int scanned = 0;
+        int pos = indexOf(data, 0, end);
+        while (pos >= 0) {
+            try {
+                scanned = skipComments(data, scanned, pos);
+            } catch (PaletteFormatException e) {
+                return new Result(file, arrays, 0, e.getMessage());
+            }
+            if (scanned > pos) {
+                pos = indexOf(data, scanned, end);
+                continue;
+            }
+            if (!isDeclaration(data, pos, end)) {
+                pos = indexOf(data, pos + 1, end);
+                continue;
+            }
+            arrays++;
+            int count;
+            try {
+                count = VhParser.parse(data, pos, colors, offsets);
+            } catch (PaletteFormatException e) {
+                return new Result(file, arrays, 0, e.getMessage());
+            }
+            if (count != TOTAL_COLORS) {
+                return new Result(file, arrays, 0, String.format(
+                        "Array at line %d has %d colors, expected %d", lineOf(data, pos), count, TOTAL_COLORS));
+            }
+            for (int i = 0; i < TOTAL_COLORS; i++) {
+                if (colors[i] != vhColors[i]) {
+                    edits.add(new int[]{offsets[i], vhColors[i]});
+                }
+            }
+            scanned = offsets[TOTAL_COLORS - 1] + HEX_DIGITS;
+            pos = indexOf(data, scanned, end);
+        }
+
+        if (!edits.isEmpty() && !dryRun) {
+            write(file, data, edits);
+        }
+        return new Result(file, arrays, edits.size(), null);
+    }
+
+    /**
+     * Rewrites the hex digits of changed literals with a single positional write spanning
+     * the first to the last edit. Each literal keeps the letter case it was written in.
+     */
+    private static void write(Path file, ByteBuffer data, List<int[]> edits) throws IOException {
+        int first = edits.get(0)[0];
+        int last = edits.get(edits.size() - 1)[0] + HEX_DIGITS;
+        byte[] region = new byte[last - first];
+        data.get(first, region);
+        for (int[] edit : edits) {
+            int pos = edit[0] - first;
+            byte[] digits = isLowerCase(region, pos) ? LOWER_DIGITS : UPPER_DIGITS;
+            for (int i = 0; i < HEX_DIGITS; i++) {
+                region[pos + i] = digits[(edit[1] >>> (20 - i * 4)) & 0xF];
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(region);
+            long position = first;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+    private static boolean isLowerCase(byte[] region, int pos) {
+        for (int i = 0; i < HEX_DIGITS; i++) {
+            if (region[pos + i] >= 'a' && region[pos + i] <= 'f') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the next occurrence of the array name.
+     *
+     * @return Index of the occurrence, or -1 if there is none
+     */
+    private static int indexOf(ByteBuffer data, int from, int end) {
+        int last = NAME.length - 1;
+        int pos = from;
+        while (pos + last < end) {
+            byte b = data.get(pos + last);
+            if (b == NAME[last] && matchesName(data, pos)) {
+                return pos;
+            }
+            pos += SKIP[b & 0xFF];
+        }
+        return -1;
+    }
+
+    private static boolean matchesName(ByteBuffer data, int pos) {
+        for (int i = 0; i < NAME.length - 1; i++) {
+            if (data.get(pos + i) != NAME[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walks from a position outside comments towards a target, skipping comments
+     * the way {@link VhParser} does.
+     *
+     * @return The target if it is outside comments, otherwise the index after the comment containing it
+     */
+    private static int skipComments(ByteBuffer data, int from, int target) {
+        int pos = from;
+        while (pos < target) {
+            int next = VhParser.skipComment(data, pos);
+            pos = next != pos ? next : pos + 1;
+        }
+        return pos;
+    }
+
+    /**
+     * Checks whether an occurrence of the name declares the array: it must be a whole
+     * identifier followed by optional dimensions and <code>= '{</code>, with only
+     * whitespace in between.
+     */
+    private static boolean isDeclaration(ByteBuffer data, int pos, int end) {
+        int p = pos + NAME.length;
+        if ((pos > 0 && isIdentifierChar(data.get(pos - 1))) || (p < end && isIdentifierChar(data.get(p)))) {
+            return false;
+        }
+        p = skipWhitespace(data, p, end);
+        while (p < end && data.get(p) == '[') {
+            while (p < end && data.get(p) != ']') {
+                p++;
+            }
+            p = skipWhitespace(data, p + 1, end);
+        }
+        if (p >= end || data.get(p) != '=') {
+            return false;
+        }
+        p = skipWhitespace(data, p + 1, end);
+        return p + 1 < end && data.get(p) == '\'' && data.get(p + 1) == '{';
+    }
+
+    private static int skipWhitespace(ByteBuffer data, int pos, int end) {
+        while (pos < end) {
+            byte b = data.get(pos);
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isIdentifierChar(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '_' || b == '$';
+    }
+
+    private static int lineOf(ByteBuffer data, int pos) {
+        int line = 1;
+        for (int i = 0; i < pos; i++) {
+            if (data.get(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Lists the source files below a directory, sorted by path, skipping hidden directories.
+     */
+    private static List<Path> listSources(Path root) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                Path name = dir.getFileName();
+                return !dir.equals(root) && name != null && name.toString().startsWith(".")
+                        ? FileVisitResult.SKIP_SUBTREE
+                        : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && (file.equals(root) || isSource(file.getFileName().toString()))) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort(null);
+        return files;
+    }
+
+    private static boolean isSource(String filename) {
+        String lowerFilename = filename.toLowerCase();
+        for (String extension : SOURCE_EXTENSIONS) {
+            if (lowerFilename.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] createSkipTable() {
+        int[] skip = new int[256];
+        Arrays.fill(skip, NAME.length);
+        for (int i = 0; i < NAME.length - 1; i++) {
+            skip[NAME[i] & 0xFF] = NAME.length - 1 - i;
+        }
+        return skip;
+    }
+}
@@ -0,0 +1,47 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormatException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of PaletteReader for Adobe color tables.
+ * An ACT file holds 256 RGB triplets (768 bytes), optionally followed by the number
+ * of used colors and the transparent index as big-endian 16-bit values (772 bytes).
+ * The first 64 entries form the palette; a stored color count must be at least 64.
+ */
+public class ActReader extends ByteBufferPaletteReader {
+    private static final int SLOTS = 256;
+    private static final int TABLE_SIZE = SLOTS * 3;
+
+    /**
+     * Size of an ACT file with color count and transparent index.
+     */
+    public static final int EXTENDED_FILE_SIZE = TABLE_SIZE + 4;
+
+    @Override
+    public int[] parse(ByteBuffer data) {
+        int size = data.remaining();
+        if (size != TABLE_SIZE && size != EXTENDED_FILE_SIZE) {
+            throw new PaletteFormatException(
+                    String.format("Invalid .act file size %d. Must be %d or %d bytes.", size, TABLE_SIZE, EXTENDED_FILE_SIZE)
+            );
+        }
+
+        int start = data.position();
+        if (size == EXTENDED_FILE_SIZE) {
+            int count = ((data.get(start + TABLE_SIZE) & 0xFF) << 8) | (data.get(start + TABLE_SIZE + 1) & 0xFF);
+            if (count < TOTAL_COLORS) {
+                throw new PaletteFormatException(
+                        String.format("Invalid number of colors in ACT file: found %d, expected %d.", count, TOTAL_COLORS)
+                );
+            }
+        }
+
+        int[] colors = new int[TOTAL_COLORS];
+        for (int i = 0, pos = start; i < TOTAL_COLORS; i++, pos += 3) {
+            colors[i] = ((data.get(pos) & 0xFF) << 16) | ((data.get(pos + 1) & 0xFF) << 8) | (data.get(pos + 2) & 0xFF);
+        }
+        return colors;
+    }
+}
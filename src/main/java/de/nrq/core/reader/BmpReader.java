@@ -0,0 +1,117 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.buffer.ScratchBuffers;
+import de.nrq.core.format.PaletteFormatException;
+import de.nrq.image.BmpConfig;
+import de.nrq.image.BmpHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Implementation of PaletteReader for BMP previews created by {@link de.nrq.image.BmpBuilder}.
+ * Recovers the palette by sampling the center pixel of each of the 64 color squares,
+ * in 16x4 or 8x8 layout as detected from the image dimensions.
+ * Only the header and the 64 sampled pixels are read, using positional reads,
+ * so the cost doesn't depend on the image size. Images already in memory are
+ * sampled in place by {@link #parse(ByteBuffer)}.
+ */
+public class BmpReader extends ByteBufferPaletteReader {
+    @Override
+    public void readColors(Path file, int[] dest) throws IOException {
+        PaletteReaders.validateDestination(dest);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ScratchBuffers.get().bytes(BmpHeader.SIZE);
+            readFully(channel, buffer, 0);
+            BmpHeader header;
+            try {
+                header = BmpHeader.read(buffer.flip());
+            } catch (IllegalArgumentException e) {
+                throw new PaletteFormatException(e.getMessage());
+            }
+
+            BmpConfig config = getConfig(header);
+            if (channel.size() < header.getFileSize()) {
+                throw new PaletteFormatException("Invalid BMP file: pixel data is truncated");
+            }
+
+            ScratchBuffers scratch = ScratchBuffers.get();
+            for (int i = 0; i < TOTAL_COLORS; i++) {
+                ByteBuffer pixel = scratch.bytes(3);
+                readFully(channel, pixel, getSampleOffset(header, config, i));
+                dest[i] = toRgb(pixel, 0);
+            }
+        }
+    }
+
+    @Override
+    public int[] parse(ByteBuffer data) {
+        ByteBuffer image = data.slice();
+        BmpHeader header;
+        try {
+            header = BmpHeader.read(image);
+        } catch (IllegalArgumentException e) {
+            throw new PaletteFormatException(e.getMessage());
+        }
+
+        BmpConfig config = getConfig(header);
+        if (image.remaining() < header.getFileSize()) {
+            throw new PaletteFormatException("Invalid BMP file: pixel data is truncated");
+        }
+
+        int[] colors = new int[TOTAL_COLORS];
+        for (int i = 0; i < TOTAL_COLORS; i++) {
+            colors[i] = toRgb(image, (int) getSampleOffset(header, config, i));
+        }
+        return colors;
+    }
+
+    /**
+     * Infers the preview settings from the image dimensions.
+     *
+     * @param header The parsed BMP header
+     * @return The settings the preview was written with
+     * @throws PaletteFormatException if the dimensions don't match a 16x4 or 8x8 palette preview
+     */
+    public static BmpConfig getConfig(BmpHeader header) {
+        for (BmpConfig.Layout layout : BmpConfig.Layout.values()) {
+            int squareSize = header.getWidth() / layout.getColumns();
+            if (squareSize >= 1 && header.getWidth() == squareSize * layout.getColumns()
+                    && header.getHeight() == squareSize * layout.getRows()) {
+                return new BmpConfig(squareSize, layout, header.getBitsPerPixel());
+            }
+        }
+        throw new PaletteFormatException(String.format(
+                "Invalid BMP preview size %dx%d. Expected 16x4 or 8x8 squares of equal size.",
+                header.getWidth(), header.getHeight()));
+    }
+
+    /**
+     * Gets the file offset of the center pixel of a color square.
+     */
+    private static long getSampleOffset(BmpHeader header, BmpConfig config, int index) {
+        int columns = config.layout().getColumns();
+        int x = (index % columns) * config.squareSize() + config.squareSize() / 2;
+        int y = (index / columns) * config.squareSize() + config.squareSize() / 2;
+        return header.getRowOffset(y) + (long) x * header.getBytesPerPixel();
+    }
+
+    private static int toRgb(ByteBuffer pixel, int offset) {
+        // BMP stores BGR
+        return ((pixel.get(offset + 2) & 0xFF) << 16) | ((pixel.get(offset + 1) & 0xFF) << 8)
+                | (pixel.get(offset) & 0xFF);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new PaletteFormatException("Invalid BMP file: unexpected end of file");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.buffer.ScratchBuffers;
+import de.nrq.core.format.PaletteFormatException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Base class for readers that parse the whole file content from a {@link ByteBuffer}.
+ * The file is read once into memory and parsed in place, without decoding it to
+ * a String first, so parsers work directly on the bytes of the file. The content is
+ * read into the thread's {@link ScratchBuffers}, so no file-sized array is allocated.
+ * Files larger than {@value #MAX_FILE_SIZE} bytes are rejected before they are read.
+ */
+public abstract class ByteBufferPaletteReader implements PaletteReader {
+    /**
+     * Largest palette file that is read. Text palettes with long comments stay far below it.
+     */
+    public static final int MAX_FILE_SIZE = 256 * 1024;
+
+    @Override
+    public int[] readColors(String filename) throws IOException {
+        int[] colors = new int[TOTAL_COLORS];
+        if (!PalettePaths.isArchiveEntry(filename)) {
+            readColors(Paths.get(filename), colors);
+            return colors;
+        }
+        try (FileSystem archive = PalettePaths.openArchive(filename)) {
+            readColors(PalettePaths.getEntry(archive, filename), colors);
+        }
+        return colors;
+    }
+
+    @Override
+    public void readColors(Path file, int[] dest) throws IOException {
+        PaletteReaders.validateDestination(dest);
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            long size = channel.size();
+            checkSize(size);
+            ByteBuffer buffer = ScratchBuffers.get().bytes((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until the buffer is full or the file ends
+            }
+            parse(buffer.flip(), dest);
+        }
+    }
+
+    /**
+     * Rejects files whose size rules them out, before their content is read.
+     * Readers of fixed-size formats override this to check the exact size.
+     *
+     * @param size The size of the file in bytes
+     * @throws PaletteFormatException if the file can't be a palette of this format
+     */
+    protected void checkSize(long size) {
+        if (size > MAX_FILE_SIZE) {
+            throw new PaletteFormatException("File is too large for a palette: " + size + " bytes");
+        }
+    }
+
+    /**
+     * Parses the colors of a palette from the remaining bytes of a buffer.
+     * The buffer's position is not modified.
+     *
+     * @param data Buffer holding the file content
+     * @return Array of 64 colors in 0xRRGGBB format, in PAL order
+     * @throws IllegalArgumentException if the content is not valid for the format
+     */
+    public abstract int[] parse(ByteBuffer data);
+
+    /**
+     * Parses the colors of a palette into a caller-provided array.
+     * The PAL and VH readers parse without allocating; other formats parse into
+     * a new array that is copied.
+     *
+     * @param data Buffer holding the file content; its position is not modified
+     * @param dest Array of 64 entries receiving the colors in 0xRRGGBB format, in PAL order
+     * @throws IllegalArgumentException if the content is not valid for the format
+     *                                  or the array doesn't have 64 entries
+     */
+    public void parse(ByteBuffer data, int[] dest) {
+        PaletteReaders.validateDestination(dest);
+        System.arraycopy(parse(data), 0, dest, 0, TOTAL_COLORS);
+    }
+}
@@ -0,0 +1,50 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormatException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of PaletteReader for GIMP palettes.
+ * The text format starts with a <code>GIMP Palette</code> line, optionally followed by
+ * <code>Name:</code> and <code>Columns:</code> header lines. Each color is a line of three
+ * decimal components, optionally followed by a color name. Lines starting with
+ * <code>#</code> and blank lines are ignored. The palette must hold exactly 64 colors.
+ */
+public class GplReader extends ByteBufferPaletteReader {
+    @Override
+    public int[] parse(ByteBuffer data) {
+        TextScanner scanner = new TextScanner(data);
+        scanner.expect("GIMP Palette", "Missing GIMP Palette header");
+        scanner.endLine();
+
+        int[] colors = new int[TOTAL_COLORS];
+        int count = 0;
+        while (!scanner.atEnd()) {
+            scanner.skipSpaces();
+            byte b = scanner.peek();
+            if (b == '#' || scanner.atLineEnd()) {
+                scanner.skipLine();
+            } else if (b >= '0' && b <= '9') {
+                int color = scanner.readRgb();
+                if (count < TOTAL_COLORS) {
+                    colors[count] = color;
+                }
+                count++;
+                // The rest of the line is the color name
+                scanner.skipLine();
+            } else if (count == 0 && (scanner.lookingAt("Name:") || scanner.lookingAt("Columns:"))) {
+                scanner.skipLine();
+            } else {
+                throw scanner.error("Expected color entry");
+            }
+        }
+
+        if (count != TOTAL_COLORS) {
+            throw new PaletteFormatException(
+                    String.format("Invalid number of colors in GPL file: found %d, expected %d.", count, TOTAL_COLORS)
+            );
+        }
+        return colors;
+    }
+}
@@ -0,0 +1,51 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormatException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of PaletteReader for JASC (Paint Shop Pro) palettes.
+ * The text format starts with the lines <code>JASC-PAL</code>, <code>0100</code>
+ * and the number of colors, followed by one <code>R G B</code> line per color
+ * with decimal components. The palette must declare exactly 64 colors.
+ */
+public class JascPalReader extends ByteBufferPaletteReader {
+    @Override
+    public int[] parse(ByteBuffer data) {
+        return parseJasc(data);
+    }
+
+    static int[] parseJasc(ByteBuffer data) {
+        TextScanner scanner = new TextScanner(data);
+        scanner.expect("JASC-PAL", "Missing JASC-PAL header");
+        scanner.endLine();
+        scanner.expect("0100", "Unsupported JASC-PAL version, expected 0100");
+        scanner.endLine();
+
+        scanner.skipSpaces();
+        int count = scanner.readDecimal(0xFFFF, "Number of colors");
+        if (count != TOTAL_COLORS) {
+            throw new PaletteFormatException(
+                    String.format("Invalid number of colors in JASC file: found %d, expected %d.", count, TOTAL_COLORS)
+            );
+        }
+        scanner.endLine();
+
+        int[] colors = new int[TOTAL_COLORS];
+        for (int i = 0; i < TOTAL_COLORS; i++) {
+            if (scanner.atEnd()) {
+                throw scanner.error(String.format("Unexpected end of file after %d colors", i));
+            }
+            scanner.skipSpaces();
+            colors[i] = scanner.readRgb();
+            scanner.endLine();
+        }
+
+        // Only blank lines may follow
+        while (!scanner.atEnd()) {
+            scanner.endLine();
+        }
+        return colors;
+    }
+}
@@ -1,30 +1,76 @@
 package de.nrq.core.reader;
 
-import de.nrq.core.color.ColorConverter;
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.format.PaletteFormatException;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.ByteBuffer;
 
 /**
  * Implementation of PaletteReader for PAL format files.
  * Reads raw RGB color data where each color is represented by 3 consecutive bytes.
+ * Since JASC and RIFF palettes use the .pal extension as well, files starting with
+ * their signature are handed to {@link JascPalReader} or {@link RiffPalReader}.
  */
-public class PalReader implements PaletteReader {
+public class PalReader extends ByteBufferPaletteReader {
     private static final int BYTES_PER_COLOR = 3;
-    private static final int EXPECTED_FILE_SIZE = TOTAL_COLORS * BYTES_PER_COLOR;
+
+    /**
+     * Upper bound of JASC and RIFF palettes; even with 256 colors they take a few KB.
+     */
+    public static final int MAX_VARIANT_SIZE = 16 * 1024;
+
+    /**
+     * The exact size of a valid PAL file in bytes.
+     */
+    public static final int EXPECTED_FILE_SIZE = TOTAL_COLORS * BYTES_PER_COLOR;
+
+    @Override
+    public int[] parse(ByteBuffer data) {
+        return switch (PaletteFormat.detect(data)) {
+            case RIFF -> RiffPalReader.parseRiff(data);
+            case JASC -> JascPalReader.parseJasc(data);
+            default -> {
+                int[] colors = new int[TOTAL_COLORS];
+                parseRaw(data, colors);
+                yield colors;
+            }
+        };
+    }
+
+    /**
+     * Rejects files that are neither a raw palette of the exact size nor small enough
+     * to be a JASC or RIFF palette, without reading them.
+     */
+    @Override
+    protected void checkSize(long size) {
+        if (size != EXPECTED_FILE_SIZE && size > MAX_VARIANT_SIZE) {
+            throw invalidSize(size);
+        }
+    }
 
     @Override
-    public int[] readColors(String filename) throws IOException {
-        byte[] palData = Files.readAllBytes(Paths.get(filename));
+    public void parse(ByteBuffer data, int[] dest) {
+        if (PaletteFormat.detect(data) == PaletteFormat.PAL) {
+            PaletteReaders.validateDestination(dest);
+            parseRaw(data, dest);
+        } else {
+            super.parse(data, dest);
+        }
+    }
 
-        if (palData.length < EXPECTED_FILE_SIZE) {
-            throw new IllegalArgumentException(
-                    String.format("Invalid .pal file size. Must be at least %d bytes.", EXPECTED_FILE_SIZE)
-            );
+    private static PaletteFormatException invalidSize(long size) {
+        return new PaletteFormatException(
+                String.format("Invalid .pal file size %d. Must be exactly %d bytes.", size, EXPECTED_FILE_SIZE));
+    }
+
+    private static void parseRaw(ByteBuffer data, int[] colors) {
+        if (data.remaining() != EXPECTED_FILE_SIZE) {
+            throw invalidSize(data.remaining());
         }
 
         // Convert byte data to integer colors
-        return ColorConverter.rgbBytesToIntArray(palData);
+        for (int i = 0, pos = data.position(); i < TOTAL_COLORS; i++, pos += BYTES_PER_COLOR) {
+            colors[i] = ((data.get(pos) & 0xFF) << 16) | ((data.get(pos + 1) & 0xFF) << 8) | (data.get(pos + 2) & 0xFF);
+        }
     }
 }
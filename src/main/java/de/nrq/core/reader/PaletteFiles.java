@@ -0,0 +1,134 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Utility methods for working with whole libraries of palette files.
+ */
+public final class PaletteFiles {
+    /**
+     * Formats of palette files in a library. BMP previews and .ppk archives, which
+     * typically sit next to the palettes they were made from, are not included.
+     */
+    public static final Set<PaletteFormat> LIBRARY_FORMATS = Collections.unmodifiableSet(EnumSet.of(
+            PaletteFormat.PAL, PaletteFormat.JASC, PaletteFormat.RIFF,
+            PaletteFormat.VH, PaletteFormat.ACT, PaletteFormat.GPL));
+
+    private static final int HEADER_PEEK_SIZE = 8;
+
+    private PaletteFiles() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Lists the palette files of a library below a directory, sorted by path.
+     * Only the {@link #LIBRARY_FORMATS} are included; BMP and .ppk files can be
+     * listed with {@link #list(Path, Set)}.
+     * If the root is a regular file, the list contains only that file.
+     *
+     * @param root Directory to scan recursively, or a single file
+     * @return The palette files in a stable order
+     * @throws IOException If the directory tree can't be traversed
+     */
+    public static List<Path> list(Path root) throws IOException {
+        return list(root, LIBRARY_FORMATS);
+    }
+
+    /**
+     * Lists the palette files of the given formats below a directory, sorted by path.
+     * Formats are matched by file extension. If the root is a regular file, the list
+     * contains only that file whatever its extension, so that reading it reports
+     * an unsupported format instead of silently finding nothing.
+     *
+     * @param root    Directory to scan recursively, or a single file
+     * @param formats Formats to include
+     * @return The matching files in a stable order
+     * @throws IOException If the directory tree can't be traversed
+     */
+    public static List<Path> list(Path root, Set<PaletteFormat> formats) throws IOException {
+        if (Files.isRegularFile(root)) {
+            return List.of(root);
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> hasExtension(path.getFileName().toString(), formats))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Reads many palettes in parallel into one flat array.
+     * Palette i occupies the entries from i * 64 to i * 64 + 63, in PAL order.
+     *
+     * @param files The palette files to read
+     * @return Array of files.size() * 64 colors
+     * @throws IOException              If a file can't be read
+     * @throws IllegalArgumentException if a file is not a valid palette; the message names the file
+     */
+    public static int[] readAll(List<Path> files) throws IOException {
+        int[] colors = new int[files.size() * PaletteReader.TOTAL_COLORS];
+        try {
+            IntStream.range(0, files.size()).parallel().forEach(i -> {
+                String filename = files.get(i).toString();
+                try {
+                    int[] palette = PaletteReaderFactory.createReader(filename).readColors(filename);
+                    System.arraycopy(palette, 0, colors, i * PaletteReader.TOTAL_COLORS, PaletteReader.TOTAL_COLORS);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(filename + ": " + e.getMessage(), e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return colors;
+    }
+
+    /**
+     * Determines the format of a palette file from its extension and, for .pal files,
+     * from the header that tells raw, JASC and RIFF palettes apart.
+     *
+     * @param file The palette file
+     * @return The detected format
+     * @throws IOException              If the header can't be read
+     * @throws IllegalArgumentException if the extension is not supported
+     */
+    public static PaletteFormat detectFormat(Path file) throws IOException {
+        PaletteFormat format = PaletteFormat.fromFileName(file.getFileName().toString());
+        if (format != PaletteFormat.PAL) {
+            return format;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_PEEK_SIZE);
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // Read until the header is complete or the file ends
+            }
+        }
+        return PaletteFormat.detect(header.flip());
+    }
+
+    private static boolean hasExtension(String filename, Set<PaletteFormat> formats) {
+        String lowerFilename = filename.toLowerCase();
+        for (PaletteFormat format : formats) {
+            if (lowerFilename.endsWith(format.getExtension())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package de.nrq.core.reader;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Helpers for palette file names that reference entries inside ZIP or JAR archives.
+ * An archive entry is referenced as <code>archive.zip!/path/palette.pal</code> and read
+ * through the zip file system provider without extracting the archive.
+ * <p>
+ * No archive is kept open globally: {@link #openArchive} opens a new file system that the
+ * caller closes once it is done, so rewritten archives are always read afresh and can be
+ * replaced on disk. Callers reading many entries, such as
+ * {@link de.nrq.core.archive.ArchiveConverter}, open the archive once for all of them.
+ */
+public final class PalettePaths {
+    /**
+     * Separator between the archive file and the entry path.
+     */
+    public static final String ARCHIVE_SEPARATOR = "!/";
+
+    private PalettePaths() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Opens the archive that an entry reference points into.
+     * The caller must close the returned file system.
+     *
+     * @param filename Reference of the form <code>archive!/entry</code>
+     * @return The archive's file system
+     * @throws IOException              If the archive can't be opened
+     * @throws IllegalArgumentException if the name doesn't reference an archive entry
+     */
+    public static FileSystem openArchive(String filename) throws IOException {
+        int separator = filename.indexOf(ARCHIVE_SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Not an archive entry: " + filename);
+        }
+        return FileSystems.newFileSystem(Paths.get(filename.substring(0, separator)));
+    }
+
+    /**
+     * Resolves the entry of a reference inside an opened archive.
+     *
+     * @param archive  The archive's file system, as returned by {@link #openArchive}
+     * @param filename Reference of the form <code>archive!/entry</code>
+     * @return The path of the entry
+     */
+    public static Path getEntry(FileSystem archive, String filename) {
+        int separator = filename.indexOf(ARCHIVE_SEPARATOR);
+        return archive.getPath("/" + filename.substring(separator + ARCHIVE_SEPARATOR.length()));
+    }
+
+    /**
+     * Checks whether a file name references an entry inside an archive.
+     *
+     * @param filename The file name to check
+     * @return true if the name contains the archive separator
+     */
+    public static boolean isArchiveEntry(String filename) {
+        return filename.contains(ARCHIVE_SEPARATOR);
+    }
+}
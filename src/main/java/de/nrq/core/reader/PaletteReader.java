@@ -1,6 +1,7 @@
 package de.nrq.core.reader;
 
 import java.io.IOException;
+import java.nio.file.Path;
 
 /**
  * Interface for reading color palettes from files.
@@ -24,4 +25,19 @@ public interface PaletteReader {
      * @throws IllegalArgumentException If the file content is invalid
      */
     int[] readColors(String filename) throws IOException;
+
+    /**
+     * Reads colors from a file into a caller-provided array, in PAL format order.
+     * Lets callers reuse one array for many reads; the PAL and VH readers then
+     * allocate nothing but the file channel.
+     *
+     * @param file The file to read from
+     * @param dest Array of 64 entries receiving the colors in 0xRRGGBB format
+     * @throws IOException              If there's an error reading the file
+     * @throws IllegalArgumentException If the file content is invalid or the array doesn't have 64 entries
+     */
+    default void readColors(Path file, int[] dest) throws IOException {
+        PaletteReaders.validateDestination(dest);
+        System.arraycopy(readColors(file.toString()), 0, dest, 0, TOTAL_COLORS);
+    }
 }
@@ -5,20 +5,51 @@ import de.nrq.core.format.PaletteFormat;
 /**
  * Factory for creating PaletteReader instances based on file format.
  * Determines the appropriate reader based on file extension.
+ * <p>
+ * Readers are stateless, so one instance per format is kept in a table indexed by
+ * the format's ordinal. The table is filled by a static initializer without reflection
+ * or service loading; the native image initializes this class at build time, so the
+ * table is part of the image heap and costs nothing at startup.
  */
 public class PaletteReaderFactory {
+    private static final ByteBufferPaletteReader[] READERS = new ByteBufferPaletteReader[PaletteFormat.values().length];
+
+    static {
+        for (PaletteFormat format : PaletteFormat.values()) {
+            READERS[format.ordinal()] = switch (format) {
+                case PAL -> new PalReader();
+                case VH -> new VhReader();
+                case BMP -> new BmpReader();
+                case JASC -> new JascPalReader();
+                case RIFF -> new RiffPalReader();
+                case ACT -> new ActReader();
+                case GPL -> new GplReader();
+                case PPK -> new PpkReader();
+            };
+        }
+    }
+
     /**
      * Creates a PaletteReader for the specified format.
      * Returns a reader instance that can handle the given format.
+     * The PAL reader also accepts the JASC and RIFF variants of .pal files.
      *
      * @param format The palette format to create a reader for
      * @return A PaletteReader instance appropriate for the format
      */
     public static PaletteReader createReader(PaletteFormat format) {
-        return switch (format) {
-            case PAL -> new PalReader();
-            case VH -> new VhReader();
-        };
+        return READERS[format.ordinal()];
+    }
+
+    /**
+     * Creates a reader that parses palettes of the specified format from memory.
+     * All readers support this; it is used for content that doesn't come from a file.
+     *
+     * @param format The palette format to parse
+     * @return A reader whose {@link ByteBufferPaletteReader#parse} handles the format
+     */
+    public static ByteBufferPaletteReader createParser(PaletteFormat format) {
+        return READERS[format.ordinal()];
     }
 
     /**
@@ -0,0 +1,23 @@
+package de.nrq.core.reader;
+
+/**
+ * Helpers shared by the palette readers.
+ */
+final class PaletteReaders {
+    private PaletteReaders() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Checks that a caller-provided destination can hold one palette.
+     *
+     * @param dest The destination array
+     * @throws IllegalArgumentException if the array is null or doesn't have 64 entries
+     */
+    static void validateDestination(int[] dest) {
+        if (dest == null || dest.length != PaletteReader.TOTAL_COLORS) {
+            throw new IllegalArgumentException(
+                    String.format("Destination array must hold exactly %d colors", PaletteReader.TOTAL_COLORS));
+        }
+    }
+}
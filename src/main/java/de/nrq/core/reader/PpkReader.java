@@ -0,0 +1,35 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormatException;
+import de.nrq.core.store.PaletteArchive;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of PaletteReader for compressed palette archives (.ppk) holding a single palette.
+ * Archives of whole libraries are opened with {@link PaletteArchive} instead.
+ */
+public class PpkReader extends ByteBufferPaletteReader {
+    @Override
+    public int[] parse(ByteBuffer data) {
+        int[] colors = new int[TOTAL_COLORS];
+        parse(data, colors);
+        return colors;
+    }
+
+    @Override
+    public void parse(ByteBuffer data, int[] dest) {
+        PaletteReaders.validateDestination(dest);
+        PaletteArchive archive;
+        try {
+            archive = PaletteArchive.wrap(data);
+        } catch (IllegalArgumentException e) {
+            throw new PaletteFormatException(e.getMessage());
+        }
+        if (archive.size() != 1) {
+            throw new PaletteFormatException(String.format(
+                    "Palette archive holds %d palettes, expected 1. Use it as a library instead.", archive.size()));
+        }
+        archive.read(0, dest);
+    }
+}
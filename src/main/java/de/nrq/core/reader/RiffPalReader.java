@@ -0,0 +1,83 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormatException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Implementation of PaletteReader for Microsoft RIFF palettes.
+ * The file is a RIFF container of form type <code>PAL </code> whose <code>data</code>
+ * chunk holds a LOGPALETTE: version 0x0300, the number of entries and one
+ * (R, G, B, flags) quadruple per entry, all little-endian. Other chunks are skipped.
+ * The palette must hold exactly 64 entries.
+ */
+public class RiffPalReader extends ByteBufferPaletteReader {
+    private static final int RIFF_HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int LOGPALETTE_HEADER_SIZE = 4;
+    private static final int VERSION = 0x0300;
+
+    @Override
+    public int[] parse(ByteBuffer data) {
+        return parseRiff(data);
+    }
+
+    static int[] parseRiff(ByteBuffer data) {
+        ByteBuffer riff = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (riff.limit() < RIFF_HEADER_SIZE || !hasId(riff, 0, "RIFF") || !hasId(riff, 8, "PAL ")) {
+            throw new PaletteFormatException("Invalid RIFF palette: missing RIFF/PAL header");
+        }
+        long end = Math.min(riff.limit(), CHUNK_HEADER_SIZE + Integer.toUnsignedLong(riff.getInt(4)));
+
+        // Walk the chunks until the data chunk is found
+        int pos = RIFF_HEADER_SIZE;
+        while (pos + CHUNK_HEADER_SIZE <= end) {
+            long chunkSize = Integer.toUnsignedLong(riff.getInt(pos + 4));
+            int body = pos + CHUNK_HEADER_SIZE;
+            if (body + chunkSize > end) {
+                throw new PaletteFormatException("Invalid RIFF palette: chunk exceeds file size");
+            }
+            if (hasId(riff, pos, "data")) {
+                return parseLogPalette(riff, body, (int) chunkSize);
+            }
+            // Chunks are padded to an even size
+            pos = (int) (body + chunkSize + (chunkSize & 1));
+        }
+        throw new PaletteFormatException("Invalid RIFF palette: missing data chunk");
+    }
+
+    private static int[] parseLogPalette(ByteBuffer riff, int body, int size) {
+        if (size < LOGPALETTE_HEADER_SIZE) {
+            throw new PaletteFormatException("Invalid RIFF palette: data chunk is too small");
+        }
+        int version = riff.getShort(body) & 0xFFFF;
+        if (version != VERSION) {
+            throw new PaletteFormatException(String.format("Unsupported RIFF palette version %04X", version));
+        }
+        int count = riff.getShort(body + 2) & 0xFFFF;
+        if (count != TOTAL_COLORS) {
+            throw new PaletteFormatException(
+                    String.format("Invalid number of colors in RIFF file: found %d, expected %d.", count, TOTAL_COLORS)
+            );
+        }
+        if (size < LOGPALETTE_HEADER_SIZE + count * 4) {
+            throw new PaletteFormatException("Invalid RIFF palette: data chunk is truncated");
+        }
+
+        int[] colors = new int[TOTAL_COLORS];
+        for (int i = 0, pos = body + LOGPALETTE_HEADER_SIZE; i < TOTAL_COLORS; i++, pos += 4) {
+            colors[i] = ((riff.get(pos) & 0xFF) << 16) | ((riff.get(pos + 1) & 0xFF) << 8) | (riff.get(pos + 2) & 0xFF);
+        }
+        return colors;
+    }
+
+    private static boolean hasId(ByteBuffer riff, int pos, String id) {
+        for (int i = 0; i < 4; i++) {
+            if (riff.get(pos + i) != id.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
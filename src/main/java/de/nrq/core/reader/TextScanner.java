@@ -0,0 +1,171 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormatException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cursor over the bytes of a line-based text palette (JASC, GPL).
+ * Reads tokens directly from the buffer without decoding it to a String;
+ * line and column of errors are computed only when an error is raised.
+ */
+final class TextScanner {
+    private final ByteBuffer data;
+    private final int start;
+    private final int end;
+    private int pos;
+
+    TextScanner(ByteBuffer data) {
+        this.data = data;
+        this.start = data.position();
+        this.end = data.limit();
+        this.pos = start;
+    }
+
+    boolean atEnd() {
+        return pos >= end;
+    }
+
+    /**
+     * Checks whether the cursor is at a line break or the end of the input.
+     */
+    boolean atLineEnd() {
+        return pos >= end || data.get(pos) == '\r' || data.get(pos) == '\n';
+    }
+
+    /**
+     * Gets the byte at the cursor.
+     *
+     * @return The byte, or 0 at the end of the input
+     */
+    byte peek() {
+        return pos < end ? data.get(pos) : 0;
+    }
+
+    /**
+     * Checks whether the input at the cursor starts with an ASCII literal.
+     */
+    boolean lookingAt(String literal) {
+        if (pos + literal.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (data.get(pos + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Consumes an ASCII literal.
+     *
+     * @throws PaletteFormatException if the input doesn't start with the literal
+     */
+    void expect(String literal, String message) {
+        if (!lookingAt(literal)) {
+            throw error(message);
+        }
+        pos += literal.length();
+    }
+
+    /**
+     * Skips spaces and tabs.
+     */
+    void skipSpaces() {
+        while (pos < end && (data.get(pos) == ' ' || data.get(pos) == '\t')) {
+            pos++;
+        }
+    }
+
+    /**
+     * Skips the rest of the current line including the line break.
+     */
+    void skipLine() {
+        while (pos < end && data.get(pos) != '\n') {
+            pos++;
+        }
+        if (pos < end) {
+            pos++;
+        }
+    }
+
+    /**
+     * Consumes trailing spaces and the line break, which may be LF or CR LF.
+     *
+     * @throws PaletteFormatException if anything else follows on the line
+     */
+    void endLine() {
+        skipSpaces();
+        if (pos < end && data.get(pos) == '\r') {
+            pos++;
+        }
+        if (pos < end) {
+            if (data.get(pos) != '\n') {
+                throw error("Expected end of line");
+            }
+            pos++;
+        }
+    }
+
+    /**
+     * Reads an unsigned decimal number.
+     *
+     * @param max Largest allowed value
+     * @return The number
+     * @throws PaletteFormatException if there is no number or it exceeds the maximum
+     */
+    int readDecimal(int max, String what) {
+        int first = pos;
+        int value = 0;
+        while (pos < end && data.get(pos) >= '0' && data.get(pos) <= '9') {
+            value = value * 10 + (data.get(pos) - '0');
+            if (value > max) {
+                pos = first;
+                throw error(String.format("%s must be between 0 and %d", what, max));
+            }
+            pos++;
+        }
+        if (pos == first) {
+            throw error("Expected " + what);
+        }
+        return value;
+    }
+
+    /**
+     * Reads one color as three decimal components separated by whitespace.
+     *
+     * @return The color in 0xRRGGBB format
+     */
+    int readRgb() {
+        int r = readDecimal(255, "Red value");
+        requireSpace();
+        int g = readDecimal(255, "Green value");
+        requireSpace();
+        int b = readDecimal(255, "Blue value");
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private void requireSpace() {
+        int before = pos;
+        skipSpaces();
+        if (pos == before) {
+            throw error("Expected whitespace between color components");
+        }
+    }
+
+    /**
+     * Creates an exception pointing at the cursor.
+     */
+    PaletteFormatException error(String message) {
+        int line = 1;
+        int lineStart = start;
+        for (int i = start; i < pos; i++) {
+            if (data.get(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return new PaletteFormatException(message, line, pos - lineStart + 1);
+    }
+}
@@ -0,0 +1,265 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormatException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Strict parser for the Verilog array syntax of VH files.
+ * Expects a declaration followed by an initializer of the form
+ * <code>'{ 24'hRRGGBB, ..., 24'hRRGGBB };</code> with exactly 64 entries.
+ * Whitespace and Verilog comments are allowed between tokens.
+ * Errors are reported as {@link PaletteFormatException} carrying the line
+ * and column of the first offending character.
+ */
+public final class VhParser {
+    private static final int TOTAL_COLORS = PaletteReader.TOTAL_COLORS;
+    private static final int HEX_DIGITS = 6;
+    private static final int LITERAL_LENGTH = 4 + HEX_DIGITS;
+
+    private VhParser() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Parses the colors of a VH array from the remaining bytes of a buffer.
+     * Colors are returned in the order they appear in the file (VH order).
+     * The buffer's position is not modified.
+     *
+     * @param data Buffer holding the VH file content
+     * @return Array of 64 colors in 0xRRGGBB format, in VH order
+     * @throws PaletteFormatException if the content is not a valid VH array
+     */
+    public static int[] parse(ByteBuffer data) {
+        int[] colors = new int[TOTAL_COLORS];
+        int count = parse(data, colors);
+        if (count != TOTAL_COLORS) {
+            throw new PaletteFormatException(
+                    String.format("Invalid number of colors in VH file: found %d, expected %d.", count, TOTAL_COLORS)
+            );
+        }
+        return colors;
+    }
+
+    /**
+     * Parses the colors of a VH array into a caller-provided array.
+     * Only syntax errors are thrown; the number of entries is returned so
+     * callers can report missing or surplus colors themselves. Entries beyond
+     * the length of the destination are counted but not stored.
+     *
+     * @param data Buffer holding the VH file content, read from its position to its limit
+     * @param dest Array receiving the colors in VH order
+     * @return The number of color entries in the initializer
+     * @throws PaletteFormatException if the content is syntactically invalid
+     */
+    public static int parse(ByteBuffer data, int[] dest) {
+        return parse(data, data.position(), dest, null);
+    }
+
+    /**
+     * Parses the first array initializer at or after an index, e.g. of a declaration
+     * embedded in a larger Verilog source, and records where each literal is.
+     * Errors carry line and column relative to the buffer's position.
+     *
+     * @param data    Buffer holding the source, read from its position to its limit
+     * @param from    Index at which to start searching for the initializer
+     * @param dest    Array receiving the colors in VH order
+     * @param offsets Array receiving the buffer index of the first hex digit of each
+     *                entry, or null; entries beyond its length are not stored
+     * @return The number of color entries in the initializer
+     * @throws PaletteFormatException if the content is syntactically invalid
+     */
+    public static int parse(ByteBuffer data, int from, int[] dest, int[] offsets) {
+        int start = data.position();
+        int end = data.limit();
+
+        int pos = findInitializer(data, start, from, end);
+        int count = 0;
+
+        pos = skipWhitespace(data, start, pos, end);
+        if (pos < end && data.get(pos) == '}') {
+            return finish(data, start, pos, end, count);
+        }
+
+        while (true) {
+            pos = skipWhitespace(data, start, pos, end);
+            if (pos >= end) {
+                throw error(data, start, pos, "Unexpected end of file in array initializer");
+            }
+            int color = parseLiteral(data, start, pos, end);
+            if (count < dest.length) {
+                dest[count] = color;
+            }
+            if (offsets != null && count < offsets.length) {
+                offsets[count] = pos + 4;
+            }
+            count++;
+            pos += LITERAL_LENGTH;
+
+            pos = skipWhitespace(data, start, pos, end);
+            if (pos >= end) {
+                throw error(data, start, pos, "Unexpected end of file in array initializer");
+            }
+            byte b = data.get(pos);
+            if (b == ',') {
+                pos++;
+            } else if (b == '}') {
+                return finish(data, start, pos, end, count);
+            } else {
+                throw error(data, start, pos, "Expected ',' or '}' after color literal");
+            }
+        }
+    }
+
+    /**
+     * Skips a single line or block comment, with the same rules the parser applies between tokens.
+     *
+     * @param data Buffer holding the source, read from its position to its limit
+     * @param pos  Index to check for the start of a comment
+     * @return Index after the comment, or the unchanged index if no comment starts there
+     * @throws PaletteFormatException if a block comment is not terminated
+     */
+    public static int skipComment(ByteBuffer data, int pos) {
+        return skipComment(data, data.position(), pos, data.limit());
+    }
+
+    /**
+     * Checks the terminating semicolon after the closing brace.
+     *
+     * @return The number of entries, passed through
+     */
+    private static int finish(ByteBuffer data, int start, int pos, int end, int count) {
+        pos = skipWhitespace(data, start, pos + 1, end);
+        if (pos >= end || data.get(pos) != ';') {
+            throw error(data, start, pos, "Expected ';' after array initializer");
+        }
+        return count;
+    }
+
+    /**
+     * Finds the start of the array initializer, skipping the declaration.
+     *
+     * @return Position just after the opening <code>'{</code>
+     */
+    private static int findInitializer(ByteBuffer data, int start, int from, int end) {
+        int pos = from;
+        while (pos < end) {
+            int next = skipComment(data, start, pos, end);
+            if (next != pos) {
+                pos = next;
+            } else if (data.get(pos) == '\'' && pos + 1 < end && data.get(pos + 1) == '{') {
+                return pos + 2;
+            } else {
+                pos++;
+            }
+        }
+        throw error(data, start, end, "Missing array initializer '{");
+    }
+
+    /**
+     * Parses one <code>24'hRRGGBB</code> literal.
+     *
+     * @return The color value of the literal
+     */
+    private static int parseLiteral(ByteBuffer data, int start, int pos, int end) {
+        if (pos + 4 > end
+                || data.get(pos) != '2' || data.get(pos + 1) != '4' || data.get(pos + 2) != '\''
+                || (data.get(pos + 3) != 'h' && data.get(pos + 3) != 'H')) {
+            throw error(data, start, pos, "Expected color literal 24'hRRGGBB");
+        }
+        pos += 4;
+
+        int color = 0;
+        for (int i = 0; i < HEX_DIGITS; i++, pos++) {
+            int digit = pos < end ? hexValue(data.get(pos)) : -1;
+            if (digit < 0) {
+                throw error(data, start, pos, "Invalid hex digit in color literal");
+            }
+            color = (color << 4) | digit;
+        }
+        if (pos < end && hexValue(data.get(pos)) >= 0) {
+            throw error(data, start, pos,
+                    String.format("Color literal must have exactly %d hex digits", HEX_DIGITS));
+        }
+
+        return color;
+    }
+
+    /**
+     * Skips whitespace and comments.
+     *
+     * @return Position of the next significant character
+     */
+    private static int skipWhitespace(ByteBuffer data, int start, int pos, int end) {
+        while (pos < end) {
+            byte b = data.get(pos);
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                pos++;
+                continue;
+            }
+            int next = skipComment(data, start, pos, end);
+            if (next == pos) {
+                return pos;
+            }
+            pos = next;
+        }
+        return pos;
+    }
+
+    /**
+     * Skips a single line or block comment starting at the given position.
+     *
+     * @return Position after the comment, or the unchanged position if there is none
+     */
+    private static int skipComment(ByteBuffer data, int start, int pos, int end) {
+        if (data.get(pos) != '/' || pos + 1 >= end) {
+            return pos;
+        }
+        byte next = data.get(pos + 1);
+        if (next == '/') {
+            int p = pos + 2;
+            while (p < end && data.get(p) != '\n') {
+                p++;
+            }
+            return p;
+        }
+        if (next == '*') {
+            for (int p = pos + 2; p + 1 < end; p++) {
+                if (data.get(p) == '*' && data.get(p + 1) == '/') {
+                    return p + 2;
+                }
+            }
+            throw error(data, start, pos, "Unterminated block comment");
+        }
+        return pos;
+    }
+
+    private static int hexValue(byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Creates an exception for the given position, computing line and column lazily
+     * so the happy path never tracks line breaks.
+     */
+    private static PaletteFormatException error(ByteBuffer data, int start, int pos, String message) {
+        int line = 1;
+        int lineStart = start;
+        for (int i = start; i < pos; i++) {
+            if (data.get(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return new PaletteFormatException(message, line, pos - lineStart + 1);
+    }
+}
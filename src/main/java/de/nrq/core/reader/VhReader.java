@@ -1,43 +1,34 @@
 package de.nrq.core.reader;
 
+import de.nrq.core.buffer.ScratchBuffers;
 import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.format.PaletteFormatException;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.nio.ByteBuffer;
 
 /**
  * Implementation of PaletteReader for VH format files.
  * Handles Verilog arrays containing 64 colors in 24'hRRGGBB format.
  * Converts the VH color order to PAL color order during reading.
  */
-public class VhReader implements PaletteReader {
-    private static final Pattern COLOR_PATTERN = Pattern.compile("24'h([0-9a-fA-F]{6})");
-
+public class VhReader extends ByteBufferPaletteReader {
     @Override
-    public int[] readColors(String filename) throws IOException {
-        String content = Files.readString(Paths.get(filename));
-
-        // Extract all hex values
-        Matcher matcher = COLOR_PATTERN.matcher(content);
-        List<Integer> colors = new ArrayList<>();
-
-        while (matcher.find()) {
-            colors.add(Integer.parseInt(matcher.group(1), 16));
-        }
+    public int[] parse(ByteBuffer data) {
+        // Parse the Verilog array and transform to PAL order
+        int[] vhColors = VhParser.parse(data);
+        return ColorArrangement.vhToPalOrder(vhColors);
+    }
 
-        if (colors.size() != TOTAL_COLORS) {
-            throw new IllegalArgumentException(
-                    String.format("Invalid number of colors in VH file. Expected %d colors.", TOTAL_COLORS)
+    @Override
+    public void parse(ByteBuffer data, int[] dest) {
+        PaletteReaders.validateDestination(dest);
+        int[] vhColors = ScratchBuffers.get().colors();
+        int count = VhParser.parse(data, vhColors);
+        if (count != TOTAL_COLORS) {
+            throw new PaletteFormatException(
+                    String.format("Invalid number of colors in VH file: found %d, expected %d.", count, TOTAL_COLORS)
             );
         }
-
-        // Convert colors to array and transform to PAL order
-        int[] vhColors = colors.stream().mapToInt(Integer::intValue).toArray();
-        return ColorArrangement.vhToPalOrder(vhColors);
+        ColorArrangement.vhToPalOrder(vhColors, dest);
     }
-}
\ No newline at end of file
+}
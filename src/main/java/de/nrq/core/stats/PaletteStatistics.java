@@ -0,0 +1,477 @@
+package de.nrq.core.stats;
+
+import de.nrq.core.reader.PaletteReader;
+import de.nrq.core.reader.PaletteReaderFactory;
+import de.nrq.core.store.PaletteStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Color statistics over a whole palette library: the global frequency of every 24-bit
+ * color, the luminance distribution of each of the 64 slots, and the luminance spread
+ * within each row of 16 colors.
+ * <p>
+ * Palettes are streamed through a parallel pipeline, each worker reading into its own
+ * reused array, so memory use is fixed regardless of the library size. The global
+ * histogram is one shared array of 2^24 counters split into lock stripes by the high
+ * bits of the color; workers buffer colors, group them by stripe and add them to one
+ * stripe at a time, so workers rarely wait on each other and no counters are boxed.
+ * The small per-slot and per-row counters are kept per worker and merged at the end.
+ */
+public final class PaletteStatistics {
+    private static final int TOTAL_COLORS = PaletteReader.TOTAL_COLORS;
+    private static final int COLORS_PER_ROW = 16;
+    private static final int NUM_ROWS = 4;
+    private static final int COLOR_SPACE = 1 << 24;
+    private static final int LUMA_LEVELS = 256;
+    private static final int STRIPE_BITS = 6;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int BUFFERED_PALETTES = 256;
+
+    private final int palettes;
+    private final int[] histogram;
+    private final long[] slotSums;
+    private final long[] slotLuma;
+    private final long[] rowSpreadSums;
+    private final int[] rowSpreadMax;
+
+    /**
+     * Provides the palettes of a library by index.
+     */
+    public interface PaletteSource {
+        /**
+         * Reads one palette into an array; called concurrently for different indices.
+         *
+         * @param index Index of the palette
+         * @param dest  Array of 64 entries receiving the colors in PAL order
+         * @throws IOException If the palette can't be read
+         */
+        void read(int index, int[] dest) throws IOException;
+    }
+
+    private PaletteStatistics(int palettes, int[] histogram, Worker totals) {
+        this.palettes = palettes;
+        this.histogram = histogram;
+        this.slotSums = totals.slotSums;
+        this.slotLuma = totals.slotLuma;
+        this.rowSpreadSums = totals.rowSpreadSums;
+        this.rowSpreadMax = totals.rowSpreadMax;
+    }
+
+    /**
+     * Computes the statistics of palette files, reading them in parallel.
+     *
+     * @param files The palette files
+     * @return The statistics
+     * @throws IOException              If a file can't be read
+     * @throws IllegalArgumentException if a file is not a valid palette; the message names the file
+     */
+    public static PaletteStatistics of(List<Path> files) throws IOException {
+        return collect(files.size(), (index, dest) -> {
+            Path file = files.get(index);
+            try {
+                PaletteReaderFactory.createReader(file.toString()).readColors(file, dest);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Computes the statistics of the palettes in a store.
+     *
+     * @param store The palette store
+     * @return The statistics
+     */
+    public static PaletteStatistics of(PaletteStore store) {
+        try {
+            return collect(store.size(), store::read);
+        } catch (IOException e) {
+            throw new IllegalStateException("Palette store cannot fail", e);
+        }
+    }
+
+    /**
+     * Computes the statistics of any palette source in parallel.
+     *
+     * @param count  Number of palettes
+     * @param source Provider of the palettes
+     * @return The statistics
+     * @throws IOException If the source fails
+     */
+    public static PaletteStatistics collect(int count, PaletteSource source) throws IOException {
+        int[] histogram = new int[COLOR_SPACE];
+        Object[] stripes = new Object[STRIPES];
+        for (int s = 0; s < STRIPES; s++) {
+            stripes[s] = new Object();
+        }
+
+        Worker totals;
+        try {
+            totals = IntStream.range(0, count).parallel().collect(
+                    () -> new Worker(histogram, stripes),
+                    (worker, index) -> worker.add(source, index),
+                    Worker::merge);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        totals.flush();
+        return new PaletteStatistics(count, histogram, totals);
+    }
+
+    /**
+     * Gets the number of palettes.
+     *
+     * @return The number of palettes counted
+     */
+    public int getPalettes() {
+        return palettes;
+    }
+
+    /**
+     * Gets how often a color occurs in all palettes.
+     *
+     * @param color Color in 0xRRGGBB format
+     * @return The number of occurrences
+     */
+    public int getCount(int color) {
+        return histogram[color & 0xFFFFFF];
+    }
+
+    /**
+     * Counts the different colors used in all palettes.
+     *
+     * @return The number of colors that occur at least once
+     */
+    public int getDistinctColors() {
+        int distinct = 0;
+        for (int count : histogram) {
+            if (count != 0) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Finds the most frequent colors.
+     *
+     * @param n Maximum number of colors
+     * @return The colors in 0xRRGGBB format, most frequent first; ties in ascending color order
+     */
+    public int[] getTopColors(int n) {
+        int[] colors = new int[Math.max(0, n)];
+        int[] counts = new int[colors.length];
+        int size = 0;
+        for (int color = 0; color < COLOR_SPACE && colors.length > 0; color++) {
+            int count = histogram[color];
+            if (count == 0 || (size == colors.length && count <= counts[size - 1])) {
+                continue;
+            }
+            // Insert into the sorted bounded list
+            int pos = size == colors.length ? size - 1 : size;
+            while (pos > 0 && counts[pos - 1] < count) {
+                colors[pos] = colors[pos - 1];
+                counts[pos] = counts[pos - 1];
+                pos--;
+            }
+            colors[pos] = color;
+            counts[pos] = count;
+            size = Math.min(size + 1, colors.length);
+        }
+        return Arrays.copyOf(colors, size);
+    }
+
+    /**
+     * Gets the average color of a slot over all palettes.
+     *
+     * @param slot Slot in PAL order (0-63)
+     * @return The channel-wise mean color in 0xRRGGBB format
+     */
+    public int getMeanColor(int slot) {
+        if (palettes == 0) {
+            return 0;
+        }
+        int r = (int) Math.round((double) slotSums[slot * 3] / palettes);
+        int g = (int) Math.round((double) slotSums[slot * 3 + 1] / palettes);
+        int b = (int) Math.round((double) slotSums[slot * 3 + 2] / palettes);
+        return r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Gets the distribution of luminance values of a slot over all palettes.
+     *
+     * @param slot Slot in PAL order (0-63)
+     * @return Number of palettes per Rec. 709 luma level (0-255)
+     */
+    public long[] getLumaHistogram(int slot) {
+        return Arrays.copyOfRange(slotLuma, slot * LUMA_LEVELS, (slot + 1) * LUMA_LEVELS);
+    }
+
+    /**
+     * Gets the mean difference between the brightest and darkest color of a row within a palette.
+     *
+     * @param row Row index (0-3)
+     * @return The average luma spread of the row
+     */
+    public double getMeanRowSpread(int row) {
+        return palettes == 0 ? 0 : (double) rowSpreadSums[row] / palettes;
+    }
+
+    /**
+     * Gets the largest difference between the brightest and darkest color of a row within a palette.
+     *
+     * @param row Row index (0-3)
+     * @return The maximum luma spread of the row
+     */
+    public int getMaxRowSpread(int row) {
+        return rowSpreadMax[row];
+    }
+
+    /**
+     * Writes a compact JSON summary: counts, the most frequent colors, luminance per row and per slot.
+     *
+     * @param out       The writer to write to; it is not closed
+     * @param topColors Number of most frequent colors to list
+     * @throws IOException If writing fails
+     */
+    public void writeJson(Writer out, int topColors) throws IOException {
+        StringBuilder json = new StringBuilder(16384);
+        json.append("{\"palettes\":").append(palettes);
+        json.append(",\"colors\":").append((long) palettes * TOTAL_COLORS);
+        json.append(",\"distinctColors\":").append(getDistinctColors());
+
+        json.append(",\"topColors\":[");
+        int[] top = getTopColors(topColors);
+        for (int i = 0; i < top.length; i++) {
+            json.append(i > 0 ? "," : "").append("{\"color\":");
+            appendColor(json, top[i]);
+            json.append(",\"count\":").append(histogram[top[i]]).append('}');
+        }
+
+        json.append("],\"rows\":[");
+        for (int row = 0; row < NUM_ROWS; row++) {
+            LumaSummary luma = summarize(row * COLORS_PER_ROW, COLORS_PER_ROW);
+            json.append(row > 0 ? "," : "").append("{\"row\":").append(row);
+            appendLuma(json, luma);
+            json.append(",\"spreadMean\":").append(round(getMeanRowSpread(row)));
+            json.append(",\"spreadMax\":").append(rowSpreadMax[row]).append('}');
+        }
+
+        json.append("],\"slots\":[");
+        for (int slot = 0; slot < TOTAL_COLORS; slot++) {
+            json.append(slot > 0 ? "," : "").append("{\"slot\":").append(slot).append(",\"meanColor\":");
+            appendColor(json, getMeanColor(slot));
+            appendLuma(json, summarize(slot, 1));
+            json.append('}');
+        }
+        json.append("]}\n");
+        out.write(json.toString());
+    }
+
+    /**
+     * Writes the global color histogram as CSV, one line per color that occurs, in color order.
+     *
+     * @param out The writer to write to; it is not closed
+     * @throws IOException If writing fails
+     */
+    public void writeHistogramCsv(Writer out) throws IOException {
+        StringBuilder line = new StringBuilder(32);
+        out.write("color,count\n");
+        for (int color = 0; color < COLOR_SPACE; color++) {
+            if (histogram[color] != 0) {
+                line.setLength(0);
+                appendHex(line, color);
+                line.append(',').append(histogram[color]).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    /**
+     * Luminance distribution of one or more slots.
+     */
+    private record LumaSummary(double mean, double stdDev, int min, int p25, int median, int p75, int max) {
+    }
+
+    private LumaSummary summarize(int firstSlot, int slots) {
+        long[] levels = new long[LUMA_LEVELS];
+        for (int slot = firstSlot; slot < firstSlot + slots; slot++) {
+            for (int level = 0; level < LUMA_LEVELS; level++) {
+                levels[level] += slotLuma[slot * LUMA_LEVELS + level];
+            }
+        }
+        long total = 0;
+        double sum = 0;
+        double sumSquares = 0;
+        for (int level = 0; level < LUMA_LEVELS; level++) {
+            total += levels[level];
+            sum += (double) levels[level] * level;
+            sumSquares += (double) levels[level] * level * level;
+        }
+        if (total == 0) {
+            return new LumaSummary(0, 0, 0, 0, 0, 0, 0);
+        }
+        double mean = sum / total;
+        double variance = Math.max(0, sumSquares / total - mean * mean);
+        return new LumaSummary(mean, Math.sqrt(variance), quantile(levels, total, 0),
+                quantile(levels, total, 0.25), quantile(levels, total, 0.5),
+                quantile(levels, total, 0.75), quantile(levels, total, 1));
+    }
+
+    private static int quantile(long[] levels, long total, double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int level = 0; level < LUMA_LEVELS; level++) {
+            seen += levels[level];
+            if (seen >= rank) {
+                return level;
+            }
+        }
+        return LUMA_LEVELS - 1;
+    }
+
+    private static void appendLuma(StringBuilder json, LumaSummary luma) {
+        json.append(",\"lumaMean\":").append(round(luma.mean()));
+        json.append(",\"lumaStdDev\":").append(round(luma.stdDev()));
+        json.append(",\"lumaMin\":").append(luma.min());
+        json.append(",\"lumaP25\":").append(luma.p25());
+        json.append(",\"lumaMedian\":").append(luma.median());
+        json.append(",\"lumaP75\":").append(luma.p75());
+        json.append(",\"lumaMax\":").append(luma.max());
+    }
+
+    private static void appendColor(StringBuilder json, int color) {
+        json.append('"');
+        appendHex(json, color);
+        json.append('"');
+    }
+
+    private static void appendHex(StringBuilder out, int color) {
+        out.append('#');
+        for (int shift = 20; shift >= 0; shift -= 4) {
+            out.append(Character.toUpperCase(Character.forDigit((color >>> shift) & 0xF, 16)));
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    /**
+     * Rec. 709 luma of a color, as a level from 0 to 255.
+     */
+    private static int luma(int color) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        return (2126 * r + 7152 * g + 722 * b + 5000) / 10000;
+    }
+
+    /**
+     * Accumulates the palettes of one stream split. Colors for the shared histogram are
+     * buffered and added one stripe at a time; everything else is counted locally.
+     */
+    private static final class Worker {
+        private final int[] histogram;
+        private final Object[] stripes;
+        private final int[] colors = new int[TOTAL_COLORS];
+        private final int[] buffer = new int[BUFFERED_PALETTES * TOTAL_COLORS];
+        private final int[] grouped = new int[BUFFERED_PALETTES * TOTAL_COLORS];
+        private final int[] stripeStarts = new int[STRIPES + 1];
+        private final int[] stripeNext = new int[STRIPES];
+        private int buffered;
+
+        private final long[] slotSums = new long[TOTAL_COLORS * 3];
+        private final long[] slotLuma = new long[TOTAL_COLORS * LUMA_LEVELS];
+        private final long[] rowSpreadSums = new long[NUM_ROWS];
+        private final int[] rowSpreadMax = new int[NUM_ROWS];
+
+        Worker(int[] histogram, Object[] stripes) {
+            this.histogram = histogram;
+            this.stripes = stripes;
+        }
+
+        void add(PaletteSource source, int index) {
+            try {
+                source.read(index, colors);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            for (int row = 0; row < NUM_ROWS; row++) {
+                int min = LUMA_LEVELS;
+                int max = -1;
+                for (int slot = row * COLORS_PER_ROW; slot < (row + 1) * COLORS_PER_ROW; slot++) {
+                    int color = colors[slot] & 0xFFFFFF;
+                    int level = luma(color);
+                    slotSums[slot * 3] += color >> 16;
+                    slotSums[slot * 3 + 1] += (color >> 8) & 0xFF;
+                    slotSums[slot * 3 + 2] += color & 0xFF;
+                    slotLuma[slot * LUMA_LEVELS + level]++;
+                    min = Math.min(min, level);
+                    max = Math.max(max, level);
+                }
+                rowSpreadSums[row] += max - min;
+                rowSpreadMax[row] = Math.max(rowSpreadMax[row], max - min);
+            }
+
+            for (int slot = 0; slot < TOTAL_COLORS; slot++) {
+                buffer[buffered++] = colors[slot] & 0xFFFFFF;
+            }
+            if (buffered == buffer.length) {
+                flush();
+            }
+        }
+
+        /**
+         * Adds the buffered colors to the shared histogram, grouped by stripe
+         * so each stripe lock is taken at most once.
+         */
+        void flush() {
+            Arrays.fill(stripeStarts, 0);
+            for (int i = 0; i < buffered; i++) {
+                stripeStarts[(buffer[i] >>> (24 - STRIPE_BITS)) + 1]++;
+            }
+            for (int s = 0; s < STRIPES; s++) {
+                stripeStarts[s + 1] += stripeStarts[s];
+            }
+            System.arraycopy(stripeStarts, 0, stripeNext, 0, STRIPES);
+            for (int i = 0; i < buffered; i++) {
+                grouped[stripeNext[buffer[i] >>> (24 - STRIPE_BITS)]++] = buffer[i];
+            }
+
+            for (int s = 0; s < STRIPES; s++) {
+                if (stripeStarts[s] == stripeStarts[s + 1]) {
+                    continue;
+                }
+                synchronized (stripes[s]) {
+                    for (int i = stripeStarts[s]; i < stripeStarts[s + 1]; i++) {
+                        histogram[grouped[i]]++;
+                    }
+                }
+            }
+            buffered = 0;
+        }
+
+        void merge(Worker other) {
+            other.flush();
+            for (int i = 0; i < slotSums.length; i++) {
+                slotSums[i] += other.slotSums[i];
+            }
+            for (int i = 0; i < slotLuma.length; i++) {
+                slotLuma[i] += other.slotLuma[i];
+            }
+            for (int row = 0; row < NUM_ROWS; row++) {
+                rowSpreadSums[row] += other.rowSpreadSums[row];
+                rowSpreadMax[row] = Math.max(rowSpreadMax[row], other.rowSpreadMax[row]);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package de.nrq.core.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Compressed, read-only archive of a palette library, stored in .ppk files.
+ * Palettes are encoded one by one with {@link PaletteCodec}, typically to about half of
+ * their raw 192 bytes, and any palette can be decoded on its own in constant time.
+ * <p>
+ * Archive files consist of a 16-byte header (the magic {@code PPK1}, the palette count,
+ * the number of palettes per block and a reserved int, all little-endian), a block index
+ * with the file offset of each block plus the end offset of the last block as longs, the
+ * blocks, and {@value PaletteCodec#PADDING} padding bytes. Each block starts with a table of
+ * 16-bit offsets of its palettes relative to the block start, followed by the encoded
+ * palettes. This costs about two bytes of index per palette instead of eight.
+ * <p>
+ * Archives are opened by mapping the file, without reading it; reads are thread-safe.
+ */
+public final class PaletteArchive {
+    /**
+     * Size of the archive file header in bytes.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    /**
+     * Number of palettes per block. The largest block, with all palettes at their maximum
+     * encoded size, still fits the 16-bit offsets.
+     */
+    public static final int BLOCK_SIZE = 256;
+
+    private static final byte[] MAGIC = {'P', 'P', 'K', '1'};
+    private static final int COLORS = PaletteStore.COLORS;
+
+    private final ByteBuffer data;
+    private final int count;
+    private final int blockSize;
+
+    private PaletteArchive(ByteBuffer data, int count, int blockSize) {
+        this.data = data;
+        this.count = count;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Opens an archive file by mapping it into memory.
+     *
+     * @param file A file written by {@link #write(int[], Path)}
+     * @return The archive
+     * @throws IOException              If the file can't be opened or mapped
+     * @throws IllegalArgumentException if the file is not a palette archive
+     */
+    public static PaletteArchive open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Palette archive is larger than 2 GB");
+            }
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Opens an archive held in memory.
+     * The archive uses the buffer's content from its position; the buffer must not be modified afterwards.
+     *
+     * @param buffer Buffer with the archive file content
+     * @return The archive
+     * @throws IllegalArgumentException if the content is not a valid palette archive
+     */
+    public static PaletteArchive wrap(ByteBuffer buffer) {
+        ByteBuffer data = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (data.remaining() < HEADER_SIZE || data.get(0) != MAGIC[0] || data.get(1) != MAGIC[1]
+                || data.get(2) != MAGIC[2] || data.get(3) != MAGIC[3]) {
+            throw new IllegalArgumentException("Not a palette archive file");
+        }
+        int count = data.getInt(4);
+        int blockSize = data.getInt(8);
+        if (count < 0 || blockSize < 1 || blockSize > BLOCK_SIZE) {
+            throw new IllegalArgumentException("Invalid palette archive header");
+        }
+        int blocks = getBlockCount(count, blockSize);
+        long indexEnd = HEADER_SIZE + (blocks + 1L) * Long.BYTES;
+        if (indexEnd > data.limit()) {
+            throw new IllegalArgumentException("Palette archive index is truncated");
+        }
+        long end = data.getLong((int) indexEnd - Long.BYTES);
+        if (end < indexEnd || end + PaletteCodec.PADDING > data.limit()) {
+            throw new IllegalArgumentException("Palette archive data is truncated");
+        }
+        // Block offsets must be ordered and leave room for the offset tables
+        long previous = indexEnd;
+        for (int b = 0; b < blocks; b++) {
+            long offset = data.getLong(HEADER_SIZE + b * Long.BYTES);
+            int palettes = Math.min(blockSize, count - b * blockSize);
+            if (offset < previous || offset + palettes * 2L > end) {
+                throw new IllegalArgumentException("Invalid palette archive block index");
+            }
+            previous = offset + palettes * 2L;
+        }
+        return new PaletteArchive(data, count, blockSize);
+    }
+
+    /**
+     * Compresses palettes into an archive file. Blocks are encoded in parallel.
+     *
+     * @param colors Flat array of whole palettes, 64 colors each, as returned by
+     *               {@link de.nrq.core.reader.PaletteFiles#readAll}
+     * @param file   The file to create or overwrite
+     * @throws IOException              If the file can't be written
+     * @throws IllegalArgumentException if the array doesn't hold whole palettes
+     */
+    public static void write(int[] colors, Path file) throws IOException {
+        byte[][] parts = encode(colors);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (byte[] part : parts) {
+                ByteBuffer buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compresses palettes into the content of an archive file.
+     *
+     * @param colors Flat array of whole palettes, 64 colors each
+     * @return The archive file content
+     * @throws IllegalArgumentException if the array doesn't hold whole palettes or the archive would exceed 2 GB
+     */
+    public static byte[] toBytes(int[] colors) {
+        byte[][] parts = encode(colors);
+        long size = Arrays.stream(parts).mapToLong(part -> part.length).sum();
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Palette archive would be larger than 2 GB");
+        }
+        byte[] result = new byte[(int) size];
+        int pos = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, pos, part.length);
+            pos += part.length;
+        }
+        return result;
+    }
+
+    /**
+     * Encodes the header and index, the blocks and the padding as separate parts.
+     */
+    private static byte[][] encode(int[] colors) {
+        if (colors.length % COLORS != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Buffer must hold whole palettes of %d colors", COLORS));
+        }
+        int count = colors.length / COLORS;
+        int blocks = getBlockCount(count, BLOCK_SIZE);
+
+        byte[][] parts = new byte[blocks + 2][];
+        IntStream.range(0, blocks).parallel().forEach(b -> parts[b + 1] = encodeBlock(colors, b, count));
+        parts[blocks + 1] = new byte[PaletteCodec.PADDING];
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + (blocks + 1) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(MAGIC).putInt(count).putInt(BLOCK_SIZE).putInt(0);
+        long offset = header.capacity();
+        for (int b = 0; b < blocks; b++) {
+            header.putLong(offset);
+            offset += parts[b + 1].length;
+        }
+        header.putLong(offset);
+        parts[0] = header.array();
+        return parts;
+    }
+
+    private static byte[] encodeBlock(int[] colors, int block, int count) {
+        int first = block * BLOCK_SIZE;
+        int palettes = Math.min(BLOCK_SIZE, count - first);
+        byte[] buffer = new byte[palettes * 2 + palettes * PaletteCodec.MAX_ENCODED_SIZE];
+        int pos = palettes * 2;
+        for (int i = 0; i < palettes; i++) {
+            buffer[i * 2] = (byte) pos;
+            buffer[i * 2 + 1] = (byte) (pos >>> 8);
+            pos += PaletteCodec.encode(colors, (first + i) * COLORS, buffer, pos);
+        }
+        return Arrays.copyOf(buffer, pos);
+    }
+
+    private static int getBlockCount(int count, int blockSize) {
+        return (int) ((count + (long) blockSize - 1) / blockSize);
+    }
+
+    /**
+     * Gets the number of palettes.
+     *
+     * @return The palette count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the size of the archive content.
+     *
+     * @return The number of bytes including header, index and padding
+     */
+    public long byteSize() {
+        return data.limit();
+    }
+
+    /**
+     * Decodes one palette into an array.
+     *
+     * @param index Index of the palette
+     * @param dest  Array of 64 colors receiving the palette
+     * @return The destination array
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @throws IllegalArgumentException  if the array doesn't hold exactly 64 colors
+     */
+    public int[] read(int index, int[] dest) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Palette index " + index + " out of range for " + count + " palettes");
+        }
+        if (dest.length != COLORS) {
+            throw new IllegalArgumentException(String.format("Colors array must contain exactly %d colors", COLORS));
+        }
+        int blockStart = (int) data.getLong(HEADER_SIZE + (index / blockSize) * Long.BYTES);
+        int offset = data.getShort(blockStart + (index % blockSize) * 2) & 0xFFFF;
+        PaletteCodec.decode(data, blockStart + offset, dest);
+        return dest;
+    }
+
+    /**
+     * Decodes one palette.
+     *
+     * @param index Index of the palette
+     * @return A new array of 64 colors
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int[] read(int index) {
+        return read(index, new int[COLORS]);
+    }
+
+    /**
+     * Decodes all palettes into one flat array, in parallel over blocks.
+     *
+     * @return Array of 64 colors per palette
+     * @throws IllegalStateException if the archive holds more palettes than fit into one array;
+     *                               such archives can only be read palette by palette
+     */
+    public int[] toArray() {
+        long size = (long) count * COLORS;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(String.format(
+                    "Archive holds %d palettes, more than the %d that fit into one array; read them one by one",
+                    count, (Integer.MAX_VALUE - 8) / COLORS));
+        }
+        int[] colors = new int[(int) size];
+        IntStream.range(0, getBlockCount(count, blockSize)).parallel().forEach(b -> {
+            int[] palette = new int[COLORS];
+            int blockStart = (int) data.getLong(HEADER_SIZE + b * Long.BYTES);
+            int first = b * blockSize;
+            int palettes = Math.min(blockSize, count - first);
+            // Palettes of a block are stored back to back, so the offset table is only needed once
+            int pos = blockStart + (data.getShort(blockStart) & 0xFFFF);
+            for (int i = 0; i < palettes; i++) {
+                pos += PaletteCodec.decode(data, pos, palette);
+                System.arraycopy(palette, 0, colors, (first + i) * COLORS, COLORS);
+            }
+        });
+        return colors;
+    }
+
+    /**
+     * Decodes all palettes into a new store.
+     *
+     * @param layout Memory layout of the store
+     * @return The store
+     * @throws IllegalStateException if the archive holds more palettes than fit into one array
+     */
+    public PaletteStore toStore(PaletteStore.Layout layout) {
+        return PaletteStore.of(toArray(), layout);
+    }
+}
@@ -0,0 +1,315 @@
+package de.nrq.core.store;
+
+import de.nrq.core.color.ColorArrangement;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Compact encoding of a single 64-color palette, used by {@link PaletteArchive}.
+ * <p>
+ * Each channel is predicted along the rows: the first color of a row from the first color of
+ * the row above, every other color from its predecessor in the row, either by repeating it
+ * (delta prediction) or by continuing the step from the color before (linear prediction),
+ * whichever needs fewer bits for that row and channel. Residuals are taken modulo 256 and
+ * zigzag-mapped, so small steps up or down need few bits; each group of residuals is then
+ * packed at the bit width of its largest value. Black slots, which {@link ColorArrangement}
+ * reserves in every row, are recorded in a bitmask and not stored when they hold black.
+ * <p>
+ * An encoded palette consists of:
+ * - one byte with a bit per black slot (in VH order), set if the slot holds black,
+ * - two bytes with a bit per row and channel, set if the group uses linear prediction,
+ * - eight bytes of 4-bit widths: one per row and channel (row by row, red, green, blue),
+ *   then one per channel for the first colors of rows 1 to 3,
+ * - the first color as three bytes R, G, B,
+ * - the residuals, LSB-first: the row starts channel by channel, then the rest of each row
+ *   channel by channel.
+ * <p>
+ * A palette of one repeated color takes {@value #HEADER_SIZE} bytes, constant-step ramps take
+ * no residual bits, and no palette grows beyond {@value #MAX_ENCODED_SIZE} bytes. Decoding reads
+ * little-endian longs, so buffers must have {@value #PADDING} readable bytes after the last palette.
+ */
+public final class PaletteCodec {
+    /**
+     * Size of the fixed part of an encoded palette: masks, widths and the first color.
+     */
+    public static final int HEADER_SIZE = 14;
+
+    /**
+     * Largest size of an encoded palette in bytes: the header and 63 x 3 full bytes.
+     */
+    public static final int MAX_ENCODED_SIZE = HEADER_SIZE + 63 * 3;
+
+    /**
+     * Number of readable bytes required after an encoded palette.
+     */
+    public static final int PADDING = Long.BYTES;
+
+    private static final int COLORS = PaletteStore.COLORS;
+    private static final int COLORS_PER_ROW = 16;
+    private static final int NUM_ROWS = 4;
+    private static final int GROUPS = NUM_ROWS * 3;
+    private static final int BLACK_COLORS = 8;
+
+    /**
+     * Bit of the black mask for each PAL slot, or 0 for slots that are always stored.
+     */
+    private static final int[] BLACK_BITS = createBlackBits();
+
+    private PaletteCodec() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Encodes a palette.
+     *
+     * @param colors Array holding the palette in 0xRRGGBB format, PAL order
+     * @param offset Index of the palette's first color in the array
+     * @param dest   Array receiving the encoded bytes
+     * @param pos    Index in dest to write to; at least {@value #MAX_ENCODED_SIZE} bytes must follow
+     * @return Number of bytes written
+     */
+    public static int encode(int[] colors, int offset, byte[] dest, int pos) {
+        int mask = 0;
+        for (int slot = 0; slot < COLORS; slot++) {
+            if (BLACK_BITS[slot] != 0 && (colors[offset + slot] & 0xFFFFFF) == 0) {
+                mask |= BLACK_BITS[slot];
+            }
+        }
+
+        // Residuals of each row and channel with both predictors; the smaller width wins
+        int[] residuals = new int[GROUPS * COLORS_PER_ROW];
+        int[] linear = new int[COLORS_PER_ROW];
+        int[] counts = new int[NUM_ROWS];
+        int linearGroups = 0;
+        long widths = 0;
+        for (int row = 0; row < NUM_ROWS; row++) {
+            int base = offset + row * COLORS_PER_ROW;
+            for (int channel = 0; channel < 3; channel++) {
+                int shift = 16 - channel * 8;
+                int group = row * 3 + channel;
+                int previous = (colors[base] >> shift) & 0xFF;
+                int step = 0;
+                int count = 0;
+                int deltaMax = 0;
+                int linearMax = 0;
+                for (int col = 1; col < COLORS_PER_ROW; col++) {
+                    if ((mask & BLACK_BITS[row * COLORS_PER_ROW + col]) != 0) {
+                        continue;
+                    }
+                    int value = (colors[base + col] >> shift) & 0xFF;
+                    int delta = zigzag(value - previous);
+                    int extrapolated = zigzag(value - previous - step);
+                    residuals[group * COLORS_PER_ROW + count] = delta;
+                    linear[count++] = extrapolated;
+                    deltaMax |= delta;
+                    linearMax |= extrapolated;
+                    step = value - previous;
+                    previous = value;
+                }
+                counts[row] = count;
+                int width = bitWidth(deltaMax);
+                if (bitWidth(linearMax) < width) {
+                    width = bitWidth(linearMax);
+                    linearGroups |= 1 << group;
+                    System.arraycopy(linear, 0, residuals, group * COLORS_PER_ROW, count);
+                }
+                widths |= (long) width << (group * 4);
+            }
+        }
+
+        // Row starts, predicted from the row above
+        int[] heads = new int[3 * (NUM_ROWS - 1)];
+        for (int channel = 0; channel < 3; channel++) {
+            int shift = 16 - channel * 8;
+            int max = 0;
+            for (int row = 1; row < NUM_ROWS; row++) {
+                int start = offset + row * COLORS_PER_ROW;
+                int head = zigzag(((colors[start] >> shift) & 0xFF) - ((colors[start - COLORS_PER_ROW] >> shift) & 0xFF));
+                heads[channel * (NUM_ROWS - 1) + row - 1] = head;
+                max |= head;
+            }
+            widths |= (long) bitWidth(max) << ((GROUPS + channel) * 4);
+        }
+
+        dest[pos] = (byte) mask;
+        dest[pos + 1] = (byte) linearGroups;
+        dest[pos + 2] = (byte) (linearGroups >>> 8);
+        for (int i = 0; i < 8; i++) {
+            dest[pos + 3 + i] = (byte) (widths >>> (i * 8));
+        }
+        int first = colors[offset];
+        dest[pos + 11] = (byte) (first >> 16);
+        dest[pos + 12] = (byte) (first >> 8);
+        dest[pos + 13] = (byte) first;
+
+        BitWriter out = new BitWriter(dest, pos + HEADER_SIZE);
+        for (int channel = 0; channel < 3; channel++) {
+            int width = (int) (widths >>> ((GROUPS + channel) * 4)) & 0xF;
+            for (int row = 1; row < NUM_ROWS; row++) {
+                out.write(heads[channel * (NUM_ROWS - 1) + row - 1], width);
+            }
+        }
+        for (int group = 0; group < GROUPS; group++) {
+            int width = (int) (widths >>> (group * 4)) & 0xF;
+            for (int i = 0; i < counts[group / 3]; i++) {
+                out.write(residuals[group * COLORS_PER_ROW + i], width);
+            }
+        }
+        return out.finish() - pos;
+    }
+
+    /**
+     * Decodes a palette.
+     *
+     * @param data Little-endian buffer holding the encoded palette
+     * @param pos  Index of the encoded palette in the buffer; {@value #PADDING} bytes
+     *             must be readable after its end
+     * @param dest Array of 64 colors receiving the palette in PAL order
+     * @return Number of bytes the encoded palette occupies
+     * @throws IndexOutOfBoundsException if the buffer ends early
+     */
+    public static int decode(ByteBuffer data, int pos, int[] dest) {
+        int mask = data.get(pos) & 0xFF;
+        int linearGroups = data.getShort(pos + 1) & 0xFFFF;
+        long widths = data.getLong(pos + 3);
+
+        // Bits are taken from a 64-bit window, refilled once fewer than 8 bits are left
+        long bitPos = (long) (pos + HEADER_SIZE) * 8;
+        long window = data.getLong(pos + HEADER_SIZE);
+        int available = 64;
+
+        // Row starts
+        int first = ((data.get(pos + 11) & 0xFF) << 16) | ((data.get(pos + 12) & 0xFF) << 8) | (data.get(pos + 13) & 0xFF);
+        dest[0] = first;
+        dest[COLORS_PER_ROW] = 0;
+        dest[2 * COLORS_PER_ROW] = 0;
+        dest[3 * COLORS_PER_ROW] = 0;
+        for (int channel = 0; channel < 3; channel++) {
+            int shift = 16 - channel * 8;
+            int width = (int) (widths >>> ((GROUPS + channel) * 4)) & 0xF;
+            int valueMask = (1 << width) - 1;
+            int value = (first >> shift) & 0xFF;
+            for (int row = 1; row < NUM_ROWS; row++) {
+                if (available < 8) {
+                    window = data.getLong((int) (bitPos >>> 3)) >>> (bitPos & 7);
+                    available = 64 - (int) (bitPos & 7);
+                }
+                value = (value + unzigzag((int) window & valueMask)) & 0xFF;
+                window >>>= width;
+                available -= width;
+                bitPos += width;
+                dest[row * COLORS_PER_ROW] |= value << shift;
+            }
+        }
+
+        // Rest of each row
+        for (int row = 0; row < NUM_ROWS; row++) {
+            int base = row * COLORS_PER_ROW;
+            int skipped = ((mask >>> (row * 2)) & 3) << (COLORS_PER_ROW - 2);
+            for (int col = 1; col < COLORS_PER_ROW; col++) {
+                dest[base + col] = 0;
+            }
+
+            for (int channel = 0; channel < 3; channel++) {
+                int shift = 16 - channel * 8;
+                int group = row * 3 + channel;
+                int width = (int) (widths >>> (group * 4)) & 0xF;
+                int valueMask = (1 << width) - 1;
+                int stepMask = (linearGroups & (1 << group)) != 0 ? -1 : 0;
+                int previous = (dest[base] >> shift) & 0xFF;
+                int step = 0;
+                for (int col = 1; col < COLORS_PER_ROW; col++) {
+                    if ((skipped & (1 << col)) != 0) {
+                        continue;
+                    }
+                    if (available < 8) {
+                        window = data.getLong((int) (bitPos >>> 3)) >>> (bitPos & 7);
+                        available = 64 - (int) (bitPos & 7);
+                    }
+                    int value = (previous + (step & stepMask) + unzigzag((int) window & valueMask)) & 0xFF;
+                    window >>>= width;
+                    available -= width;
+                    bitPos += width;
+                    dest[base + col] |= value << shift;
+                    step = value - previous;
+                    previous = value;
+                }
+            }
+        }
+        return (int) ((bitPos + 7) >>> 3) - pos;
+    }
+
+    /**
+     * Decodes a palette from an array, see {@link #decode(ByteBuffer, int, int[])}.
+     *
+     * @param data Array holding the encoded palette, followed by {@value #PADDING} readable bytes
+     * @param pos  Index of the encoded palette in the array
+     * @param dest Array of 64 colors receiving the palette in PAL order
+     * @return Number of bytes the encoded palette occupies
+     */
+    public static int decode(byte[] data, int pos, int[] dest) {
+        return decode(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN), pos, dest);
+    }
+
+    /**
+     * Maps a difference modulo 256 to 0, 1, 2, ... for 0, -1, 1, ...
+     */
+    private static int zigzag(int difference) {
+        int residual = (byte) difference;
+        return (residual << 1) ^ (residual >> 31);
+    }
+
+    private static int unzigzag(int zigzag) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static int bitWidth(int max) {
+        return 32 - Integer.numberOfLeadingZeros(max);
+    }
+
+    private static int[] createBlackBits() {
+        int[] bits = new int[COLORS];
+        for (int k = 0; k < BLACK_COLORS; k++) {
+            bits[ColorArrangement.PAL_TO_VH.sourceIndex(k)] = 1 << k;
+        }
+        return bits;
+    }
+
+    /**
+     * Packs values LSB-first into a byte array.
+     */
+    private static final class BitWriter {
+        private final byte[] dest;
+        private int pos;
+        private long bits;
+        private int count;
+
+        BitWriter(byte[] dest, int pos) {
+            this.dest = dest;
+            this.pos = pos;
+        }
+
+        void write(int value, int width) {
+            bits |= (long) value << count;
+            count += width;
+            while (count >= 8) {
+                dest[pos++] = (byte) bits;
+                bits >>>= 8;
+                count -= 8;
+            }
+        }
+
+        /**
+         * Flushes the remaining bits.
+         *
+         * @return Index after the last written byte
+         */
+        int finish() {
+            if (count > 0) {
+                dest[pos++] = (byte) bits;
+            }
+            return pos;
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package de.nrq.core.store;
+
+import de.nrq.core.color.Permutation;
+import de.nrq.core.reader.PaletteReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Off-heap store for a library of palettes.
+ * Instead of one <code>int[64]</code> object per palette, all palettes are kept back to back
+ * in direct or memory-mapped buffers outside the Java heap, so a large library adds
+ * no GC pressure and is traversed sequentially in memory.
+ * <p>
+ * Two layouts are available: {@link Layout#PACKED} stores each color as a little-endian
+ * 0x00RRGGBB int, so every palette is a contiguous run of 64 ints and can be handed
+ * out as an {@link IntBuffer} view; {@link Layout#PLANAR} stores the red, green and blue
+ * channels in separate byte columns, so loops over a single channel run over
+ * consecutive bytes.
+ * <p>
+ * Store files consist of a 16-byte header (the magic {@code PST1}, the layout, the
+ * palette count and a reserved int, all little-endian) followed by the columns. They
+ * are opened by mapping the columns directly, without reading or copying them.
+ * <p>
+ * Appending is not thread-safe. Bulk operations run in parallel internally. Views
+ * returned by {@link #view(int)} and {@link #plane(int)} stay valid until the store
+ * has to grow.
+ */
+public final class PaletteStore {
+    /**
+     * Number of colors per palette.
+     */
+    public static final int COLORS = PaletteReader.TOTAL_COLORS;
+
+    /**
+     * Size of the store file header in bytes.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    private static final byte[] MAGIC = {'P', 'S', 'T', '1'};
+    private static final int MIN_CAPACITY = 16;
+    private static final int PALETTES_PER_CHUNK = 4096;
+
+    /**
+     * Memory layout of the palettes.
+     */
+    public enum Layout {
+        /**
+         * One int per color, 64 consecutive ints per palette.
+         */
+        PACKED(1, COLORS * Integer.BYTES),
+        /**
+         * Separate red, green and blue byte columns, 64 consecutive bytes per palette in each.
+         */
+        PLANAR(3, COLORS);
+
+        private final int columns;
+        private final int columnBytes;
+
+        Layout(int columns, int columnBytes) {
+            this.columns = columns;
+            this.columnBytes = columnBytes;
+        }
+
+        /**
+         * Gets the largest number of palettes a store of this layout can hold,
+         * limited by the 2 GB size of a single buffer.
+         *
+         * @return The maximum palette count
+         */
+        public int getMaxPalettes() {
+            return Integer.MAX_VALUE / columnBytes;
+        }
+    }
+
+    private final Layout layout;
+    private ByteBuffer[] columns;
+    private IntBuffer ints;
+    private int capacity;
+    private int count;
+
+    private PaletteStore(Layout layout, ByteBuffer[] columns, int capacity, int count) {
+        this.layout = layout;
+        this.capacity = capacity;
+        this.count = count;
+        setColumns(columns);
+    }
+
+    /**
+     * Creates an empty store.
+     *
+     * @param layout Memory layout of the palettes
+     * @return The store
+     */
+    public static PaletteStore create(Layout layout) {
+        return create(layout, MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty store with room for the given number of palettes.
+     *
+     * @param layout          Memory layout of the palettes
+     * @param initialCapacity Number of palettes to allocate memory for
+     * @return The store
+     * @throws IllegalArgumentException if the capacity is negative or exceeds the layout's maximum
+     */
+    public static PaletteStore create(Layout layout, int initialCapacity) {
+        if (initialCapacity < 0 || initialCapacity > layout.getMaxPalettes()) {
+            throw new IllegalArgumentException(String.format(
+                    "Capacity must be between 0 and %d palettes", layout.getMaxPalettes()));
+        }
+        return new PaletteStore(layout, allocate(layout, initialCapacity), initialCapacity, 0);
+    }
+
+    /**
+     * Creates a store holding the given palettes.
+     *
+     * @param colors Flat array of whole palettes, 64 colors each, as returned by
+     *               {@link de.nrq.core.reader.PaletteFiles#readAll}
+     * @param layout Memory layout of the palettes
+     * @return The store
+     * @throws IllegalArgumentException if the array doesn't hold whole palettes
+     */
+    public static PaletteStore of(int[] colors, Layout layout) {
+        PaletteStore store = create(layout, colors.length / COLORS);
+        store.appendAll(colors);
+        return store;
+    }
+
+    /**
+     * Opens a store file by mapping its columns into memory.
+     * With write access, changes made through {@link #set}, {@link #transform} or
+     * {@link #permute} go directly to the file. Appending to a mapped store moves it
+     * into newly allocated memory, detaching it from the file.
+     *
+     * @param file     A file written by {@link #save(Path)}
+     * @param writable Whether to map the file for writing
+     * @return The store
+     * @throws IOException              If the file can't be opened or mapped
+     * @throws IllegalArgumentException if the file is not a palette store
+     */
+    public static PaletteStore map(Path file, boolean writable) throws IOException {
+        try (FileChannel channel = writable
+                ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // Positional reads until the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.get(0) != MAGIC[0] || header.get(1) != MAGIC[1]
+                    || header.get(2) != MAGIC[2] || header.get(3) != MAGIC[3]) {
+                throw new IllegalArgumentException("Not a palette store file");
+            }
+            int layoutIndex = header.getInt(4);
+            int count = header.getInt(8);
+            if (layoutIndex < 0 || layoutIndex >= Layout.values().length) {
+                throw new IllegalArgumentException("Unknown palette store layout " + layoutIndex);
+            }
+            Layout layout = Layout.values()[layoutIndex];
+            if (count < 0 || count > layout.getMaxPalettes()
+                    || channel.size() != HEADER_SIZE + (long) count * layout.columnBytes * layout.columns) {
+                throw new IllegalArgumentException("Invalid palette store file size");
+            }
+
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            long columnSize = (long) count * layout.columnBytes;
+            ByteBuffer[] columns = new ByteBuffer[layout.columns];
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = channel.map(mode, HEADER_SIZE + c * columnSize, columnSize);
+            }
+            return new PaletteStore(layout, columns, count, count);
+        }
+    }
+
+    /**
+     * Writes the store to a file that can be opened with {@link #map(Path, boolean)}.
+     *
+     * @param file The file to create or overwrite
+     * @throws IOException If the file can't be written
+     */
+    public void save(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC).putInt(layout.ordinal()).putInt(count).putInt(0).flip();
+            writeFully(channel, header);
+            for (ByteBuffer column : columns) {
+                writeFully(channel, column.slice(0, count * layout.columnBytes));
+            }
+        }
+    }
+
+    /**
+     * Gets the memory layout.
+     *
+     * @return The layout of this store
+     */
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * Gets the number of palettes.
+     *
+     * @return The palette count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Appends a palette.
+     *
+     * @param colors Array of 64 colors in 0xRRGGBB format
+     * @return Index of the new palette
+     * @throws IllegalArgumentException if the array doesn't hold exactly 64 colors or the store is full
+     */
+    public int append(int[] colors) {
+        if (colors == null || colors.length != COLORS) {
+            throw new IllegalArgumentException(String.format("Colors array must contain exactly %d colors", COLORS));
+        }
+        ensureCapacity(count + 1);
+        store(count, colors, 0);
+        return count++;
+    }
+
+    /**
+     * Appends many palettes.
+     *
+     * @param colors Flat array of whole palettes, 64 colors each
+     * @throws IllegalArgumentException if the array doesn't hold whole palettes or the store is full
+     */
+    public void appendAll(int[] colors) {
+        if (colors.length % COLORS != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Buffer must hold whole palettes of %d colors", COLORS));
+        }
+        int palettes = colors.length / COLORS;
+        ensureCapacity(count + palettes);
+        for (int p = 0; p < palettes; p++) {
+            store(count + p, colors, p * COLORS);
+        }
+        count += palettes;
+    }
+
+    /**
+     * Gets a read-only view of one palette in the packed layout.
+     * The view shares memory with the store, so creating it costs O(1) and copies nothing;
+     * it can be passed to methods taking an {@link IntBuffer}, such as
+     * {@link de.nrq.core.color.ColorArrangement#palToVhOrder(IntBuffer, int[])} or
+     * {@link de.nrq.image.BmpBuilder#writeBmp(IntBuffer, java.io.OutputStream)}.
+     *
+     * @param index Index of the palette
+     * @return Buffer of the palette's 64 colors
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @throws IllegalStateException     if the store uses the planar layout
+     */
+    public IntBuffer view(int index) {
+        checkIndex(index);
+        if (layout != Layout.PACKED) {
+            throw new IllegalStateException("Palette views require the packed layout");
+        }
+        return ints.slice(index * COLORS, COLORS).asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets a read-only view of one channel column in the planar layout.
+     * Byte {@code index * 64 + slot} of the column holds the channel value of that color.
+     *
+     * @param channel 0 for red, 1 for green, 2 for blue
+     * @return Buffer over the channel values of all palettes
+     * @throws IllegalStateException if the store uses the packed layout
+     */
+    public ByteBuffer plane(int channel) {
+        if (layout != Layout.PLANAR) {
+            throw new IllegalStateException("Channel planes require the planar layout");
+        }
+        return columns[channel].slice(0, count * COLORS).asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets one color.
+     *
+     * @param index Index of the palette
+     * @param slot  Index of the color in the palette (0-63)
+     * @return Color in 0xRRGGBB format
+     * @throws IndexOutOfBoundsException if an index is out of range
+     */
+    public int get(int index, int slot) {
+        checkIndex(index);
+        checkSlot(slot);
+        return load(index * COLORS + slot);
+    }
+
+    /**
+     * Sets one color.
+     *
+     * @param index Index of the palette
+     * @param slot  Index of the color in the palette (0-63)
+     * @param color Color in 0xRRGGBB format
+     * @throws IndexOutOfBoundsException      if an index is out of range
+     * @throws java.nio.ReadOnlyBufferException if the store was mapped read-only
+     */
+    public void set(int index, int slot, int color) {
+        checkIndex(index);
+        checkSlot(slot);
+        store(index * COLORS + slot, color);
+    }
+
+    /**
+     * Copies one palette into an array.
+     *
+     * @param index Index of the palette
+     * @param dest  Array of 64 colors receiving the palette
+     * @return The destination array
+     * @throws IndexOutOfBoundsException if the index is out of range
+     * @throws IllegalArgumentException  if the array doesn't hold exactly 64 colors
+     */
+    public int[] read(int index, int[] dest) {
+        checkIndex(index);
+        if (dest.length != COLORS) {
+            throw new IllegalArgumentException(String.format("Colors array must contain exactly %d colors", COLORS));
+        }
+        int base = index * COLORS;
+        if (layout == Layout.PACKED) {
+            ints.get(base, dest);
+        } else {
+            for (int slot = 0; slot < COLORS; slot++) {
+                dest[slot] = load(base + slot);
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * Copies all palettes into one flat array, as used by {@link de.nrq.core.distance.DistanceMatrix}.
+     *
+     * @return Array of 64 colors per palette
+     */
+    public int[] toArray() {
+        int[] colors = new int[count * COLORS];
+        if (layout == Layout.PACKED) {
+            ints.get(0, colors);
+        } else {
+            for (int i = 0; i < colors.length; i++) {
+                colors[i] = load(i);
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Replaces every color by the result of a function, in parallel over chunks of palettes.
+     *
+     * @param operator Function from 0xRRGGBB color to 0xRRGGBB color; called concurrently
+     * @throws java.nio.ReadOnlyBufferException if the store was mapped read-only
+     */
+    public void transform(IntUnaryOperator operator) {
+        forEachChunk((from, to) -> {
+            for (int i = from * COLORS; i < to * COLORS; i++) {
+                store(i, operator.applyAsInt(load(i)));
+            }
+        });
+    }
+
+    /**
+     * Rearranges the colors of every palette in place, in parallel over chunks of palettes.
+     *
+     * @param permutation Permutation of 64 entries, e.g. {@link de.nrq.core.color.ColorArrangement#PAL_TO_VH}
+     * @throws IllegalArgumentException       if the permutation doesn't have 64 entries
+     * @throws java.nio.ReadOnlyBufferException if the store was mapped read-only
+     */
+    public void permute(Permutation permutation) {
+        if (permutation.size() != COLORS) {
+            throw new IllegalArgumentException(String.format("Permutation must have %d entries", COLORS));
+        }
+        forEachChunk((from, to) -> {
+            for (int p = from; p < to; p++) {
+                if (layout == Layout.PACKED) {
+                    permutation.applyInPlace(ints, p * COLORS);
+                } else {
+                    for (ByteBuffer column : columns) {
+                        permutation.applyInPlace(column, p * COLORS);
+                    }
+                }
+            }
+        });
+    }
+
+    private int load(int position) {
+        if (layout == Layout.PACKED) {
+            return ints.get(position);
+        }
+        return (columns[0].get(position) & 0xFF) << 16
+                | (columns[1].get(position) & 0xFF) << 8
+                | (columns[2].get(position) & 0xFF);
+    }
+
+    private void store(int position, int color) {
+        if (layout == Layout.PACKED) {
+            ints.put(position, color & 0xFFFFFF);
+        } else {
+            columns[0].put(position, (byte) (color >> 16));
+            columns[1].put(position, (byte) (color >> 8));
+            columns[2].put(position, (byte) color);
+        }
+    }
+
+    private void store(int index, int[] colors, int offset) {
+        int base = index * COLORS;
+        for (int slot = 0; slot < COLORS; slot++) {
+            store(base + slot, colors[offset + slot]);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= capacity) {
+            return;
+        }
+        int max = layout.getMaxPalettes();
+        if (required > max) {
+            throw new IllegalArgumentException(String.format("Palette store cannot hold more than %d palettes", max));
+        }
+        int newCapacity = (int) Math.min(max, Math.max(required, Math.max(MIN_CAPACITY, capacity * 2L)));
+        ByteBuffer[] grown = allocate(layout, newCapacity);
+        for (int c = 0; c < grown.length; c++) {
+            grown[c].put(0, columns[c], 0, count * layout.columnBytes);
+        }
+        setColumns(grown);
+        capacity = newCapacity;
+    }
+
+    private static ByteBuffer[] allocate(Layout layout, int capacity) {
+        ByteBuffer[] columns = new ByteBuffer[layout.columns];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = ByteBuffer.allocateDirect(capacity * layout.columnBytes);
+        }
+        return columns;
+    }
+
+    private void setColumns(ByteBuffer[] columns) {
+        for (ByteBuffer column : columns) {
+            column.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.columns = columns;
+        this.ints = layout == Layout.PACKED ? columns[0].asIntBuffer() : null;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(String.format("Palette index %d out of range 0-%d", index, count - 1));
+        }
+    }
+
+    private static void checkSlot(int slot) {
+        if (slot < 0 || slot >= COLORS) {
+            throw new IndexOutOfBoundsException(String.format("Color slot %d out of range 0-%d", slot, COLORS - 1));
+        }
+    }
+
+    private interface ChunkTask {
+        void run(int from, int to);
+    }
+
+    /**
+     * Splits the palettes into chunks and runs them in parallel if there is more than one.
+     */
+    private void forEachChunk(ChunkTask task) {
+        int palettes = count;
+        int chunks = (palettes + PALETTES_PER_CHUNK - 1) / PALETTES_PER_CHUNK;
+        if (chunks <= 1) {
+            task.run(0, palettes);
+            return;
+        }
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * PALETTES_PER_CHUNK;
+            task.run(from, Math.min(from + PALETTES_PER_CHUNK, palettes));
+        });
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
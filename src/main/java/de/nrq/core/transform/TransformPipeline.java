@@ -0,0 +1,417 @@
+package de.nrq.core.transform;
+
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.reader.PaletteFiles;
+import de.nrq.core.reader.PaletteReaderFactory;
+import de.nrq.core.writer.PaletteWriterFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A chain of color adjustments compiled into lookup tables.
+ * Operations are evaluated in floating point and rounded only once at the end.
+ * When the chain consists of per-channel operations only (gamma, levels, range
+ * conversions), it is compiled into three 256-entry tables, one per channel.
+ * Cross-channel operations such as saturation make the chain compile into a
+ * 33x33x33 3D table sampled from the whole chain and read with trilinear
+ * interpolation; leading per-channel operations are kept as exact 1D tables in
+ * front of it. Either way, applying the pipeline costs the same for any chain length.
+ * <p>
+ * Pipelines are immutable and can be shared between threads.
+ */
+public final class TransformPipeline {
+    private static final int GRID = 33;
+    private static final int LEVELS = 256;
+
+    /**
+     * Rec. 709 luma weights, used by the saturation adjustment.
+     */
+    private static final double LUMA_R = 0.2126;
+    private static final double LUMA_G = 0.7152;
+    private static final double LUMA_B = 0.0722;
+
+    /**
+     * One step of a chain, working on RGB values in the range 0 to 1.
+     */
+    private sealed interface Operation permits ChannelOperation, ColorOperation {
+    }
+
+    /**
+     * Applies the same function to each channel independently.
+     */
+    private record ChannelOperation(DoubleUnaryOperator function) implements Operation {
+    }
+
+    /**
+     * Mixes channels; modifies the RGB triple in place.
+     */
+    private interface ColorFunction {
+        void apply(double[] rgb);
+    }
+
+    private record ColorOperation(ColorFunction function) implements Operation {
+    }
+
+    private final String description;
+    private final int[] channelTables;   // Per-channel output for each input value, already shifted into place
+    private final double[] gridInput;    // Position on the 3D grid for each input value, or null
+    private final float[] grid;          // Sampled RGB output at each grid point, or null
+
+    private TransformPipeline(String description, int[] channelTables, double[] gridInput, float[] grid) {
+        this.description = description;
+        this.channelTables = channelTables;
+        this.gridInput = gridInput;
+        this.grid = grid;
+    }
+
+    /**
+     * Creates a builder for a new chain.
+     *
+     * @return An empty builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Parses a chain from its textual form, a comma-separated list of operations:
+     * <code>gamma=G</code>, <code>levels=inBlack:inWhite:outBlack:outWhite</code>,
+     * <code>saturation=S</code>, <code>limited</code> and <code>full</code>.
+     * For example <code>gamma=1.1,saturation=0.9,limited</code>.
+     *
+     * @param spec The chain description
+     * @return The compiled pipeline
+     * @throws IllegalArgumentException if the description is invalid
+     */
+    public static TransformPipeline parse(String spec) {
+        Builder builder = builder();
+        for (String step : spec.split(",")) {
+            String trimmed = step.trim();
+            int separator = trimmed.indexOf('=');
+            String name = (separator < 0 ? trimmed : trimmed.substring(0, separator)).toLowerCase();
+            String value = separator < 0 ? "" : trimmed.substring(separator + 1);
+            try {
+                switch (name) {
+                    case "gamma" -> builder.gamma(Double.parseDouble(value));
+                    case "saturation" -> builder.saturation(Double.parseDouble(value));
+                    case "limited" -> builder.limitedRange();
+                    case "full" -> builder.fullRange();
+                    case "levels" -> {
+                        String[] parts = value.split(":");
+                        if (parts.length != 4) {
+                            throw new IllegalArgumentException(
+                                    "levels needs inBlack:inWhite:outBlack:outWhite, got: " + value);
+                        }
+                        builder.levels(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]),
+                                Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+                    }
+                    default -> throw new IllegalArgumentException("Unknown transform operation: " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builder collecting the operations of a chain in order.
+     */
+    public static final class Builder {
+        private final List<Operation> operations = new ArrayList<>();
+        private final List<String> steps = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a gamma adjustment: each channel value v in 0..1 becomes v^(1/gamma),
+         * so values above 1 brighten the midtones and values below 1 darken them.
+         *
+         * @param gamma The gamma value, greater than 0
+         * @return This builder
+         * @throws IllegalArgumentException if gamma is not positive
+         */
+        public Builder gamma(double gamma) {
+            if (!(gamma > 0)) {
+                throw new IllegalArgumentException("Gamma must be greater than 0");
+            }
+            double exponent = 1 / gamma;
+            return add("gamma=" + gamma, new ChannelOperation(v -> Math.pow(v, exponent)));
+        }
+
+        /**
+         * Adds a levels adjustment: the input range is stretched linearly onto the output range,
+         * values outside the input range are clipped.
+         *
+         * @param inBlack  Input value mapped to outBlack (0-255)
+         * @param inWhite  Input value mapped to outWhite (0-255), greater than inBlack
+         * @param outBlack Output value for black (0-255)
+         * @param outWhite Output value for white (0-255)
+         * @return This builder
+         * @throws IllegalArgumentException if a value is out of range
+         */
+        public Builder levels(int inBlack, int inWhite, int outBlack, int outWhite) {
+            if (inBlack < 0 || inWhite > 255 || inBlack >= inWhite || outBlack < 0 || outBlack > 255
+                    || outWhite < 0 || outWhite > 255) {
+                throw new IllegalArgumentException(
+                        "Levels must be within 0-255 with the input black below the input white");
+            }
+            double low = inBlack / 255.0;
+            double range = (inWhite - inBlack) / 255.0;
+            double outLow = outBlack / 255.0;
+            double outRange = (outWhite - outBlack) / 255.0;
+            return add(String.format("levels=%d:%d:%d:%d", inBlack, inWhite, outBlack, outWhite),
+                    new ChannelOperation(v -> outLow + clamp((v - low) / range) * outRange));
+        }
+
+        /**
+         * Adds a conversion from full range (0-255) to limited video range (16-235).
+         *
+         * @return This builder
+         */
+        public Builder limitedRange() {
+            return add("limited", new ChannelOperation(v -> (16 + v * 219) / 255));
+        }
+
+        /**
+         * Adds a conversion from limited video range (16-235) to full range (0-255).
+         * Values outside the limited range are clipped.
+         *
+         * @return This builder
+         */
+        public Builder fullRange() {
+            return add("full", new ChannelOperation(v -> clamp((v * 255 - 16) / 219)));
+        }
+
+        /**
+         * Adds a saturation adjustment: each color is moved away from (or towards) its
+         * Rec. 709 luma gray by the given factor.
+         *
+         * @param factor 0 for grayscale, 1 for no change, above 1 for more saturation
+         * @return This builder
+         * @throws IllegalArgumentException if the factor is negative
+         */
+        public Builder saturation(double factor) {
+            if (!(factor >= 0)) {
+                throw new IllegalArgumentException("Saturation cannot be negative");
+            }
+            return add("saturation=" + factor, new ColorOperation(rgb -> {
+                double luma = LUMA_R * rgb[0] + LUMA_G * rgb[1] + LUMA_B * rgb[2];
+                for (int c = 0; c < 3; c++) {
+                    rgb[c] = luma + (rgb[c] - luma) * factor;
+                }
+            }));
+        }
+
+        /**
+         * Compiles the chain into lookup tables.
+         *
+         * @return The compiled pipeline
+         */
+        public TransformPipeline build() {
+            String description = String.join(",", steps);
+
+            // Leading per-channel operations are composed into exact 1D tables
+            int split = 0;
+            while (split < operations.size() && operations.get(split) instanceof ChannelOperation) {
+                split++;
+            }
+            List<Operation> head = operations.subList(0, split);
+            List<Operation> tail = operations.subList(split, operations.size());
+
+            if (tail.isEmpty()) {
+                int[] tables = new int[3 * LEVELS];
+                for (int v = 0; v < LEVELS; v++) {
+                    int out = quantize(evaluate(head, v / 255.0));
+                    tables[v] = out << 16;
+                    tables[LEVELS + v] = out << 8;
+                    tables[2 * LEVELS + v] = out;
+                }
+                return new TransformPipeline(description, tables, null, null);
+            }
+
+            double[] gridInput = new double[LEVELS];
+            for (int v = 0; v < LEVELS; v++) {
+                gridInput[v] = clamp(evaluate(head, v / 255.0)) * (GRID - 1);
+            }
+
+            // Sample the rest of the chain at the grid points
+            float[] grid = new float[GRID * GRID * GRID * 3];
+            double[] rgb = new double[3];
+            for (int r = 0; r < GRID; r++) {
+                for (int g = 0; g < GRID; g++) {
+                    for (int b = 0; b < GRID; b++) {
+                        rgb[0] = r / (double) (GRID - 1);
+                        rgb[1] = g / (double) (GRID - 1);
+                        rgb[2] = b / (double) (GRID - 1);
+                        evaluate(tail, rgb);
+                        int index = ((r * GRID + g) * GRID + b) * 3;
+                        for (int c = 0; c < 3; c++) {
+                            grid[index + c] = (float) (clamp(rgb[c]) * 255);
+                        }
+                    }
+                }
+            }
+            return new TransformPipeline(description, null, gridInput, grid);
+        }
+
+        private Builder add(String step, Operation operation) {
+            steps.add(step);
+            operations.add(operation);
+            return this;
+        }
+    }
+
+    /**
+     * Checks whether the chain compiled into a 3D table because it mixes channels.
+     *
+     * @return true for a 3D table, false for per-channel tables
+     */
+    public boolean usesColorTable() {
+        return grid != null;
+    }
+
+    /**
+     * Transforms a single color.
+     *
+     * @param color Color in 0xRRGGBB format
+     * @return The transformed color
+     */
+    public int apply(int color) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        if (grid == null) {
+            return channelTables[r] | channelTables[LEVELS + g] | channelTables[2 * LEVELS + b];
+        }
+        return interpolate(gridInput[r], gridInput[g], gridInput[b]);
+    }
+
+    /**
+     * Transforms colors in place in a single pass, e.g. the array returned by a
+     * {@link de.nrq.core.reader.PaletteReader}.
+     *
+     * @param colors Colors in 0xRRGGBB format
+     */
+    public void applyInPlace(int[] colors) {
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = apply(colors[i]);
+        }
+    }
+
+    /**
+     * Transforms a palette file or all palette files below a directory in parallel.
+     * Each file is written in its own format (including the JASC and RIFF .pal variants)
+     * to the same relative path below the output root, which may equal the input root.
+     *
+     * @param input  Directory to scan recursively, or a single palette file
+     * @param output Output directory, or the output file if the input is a single file
+     * @return The number of transformed files
+     * @throws IOException              If a file can't be read or written
+     * @throws IllegalArgumentException if a file is not a valid palette; the message names the file,
+     *                                  or if no palette files are found
+     */
+    public int transformFiles(Path input, Path output) throws IOException {
+        List<Path> files = PaletteFiles.list(input);
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No palette files found in " + input);
+        }
+        boolean single = Files.isRegularFile(input);
+        try {
+            files.parallelStream().forEach(file -> {
+                String filename = file.toString();
+                Path target = single ? output : output.resolve(input.relativize(file));
+                try {
+                    PaletteFormat format = PaletteFiles.detectFormat(file);
+                    int[] colors = PaletteReaderFactory.createReader(format).readColors(filename);
+                    applyInPlace(colors);
+                    if (target.getParent() != null) {
+                        Files.createDirectories(target.getParent());
+                    }
+                    PaletteWriterFactory.createWriter(format).writeColors(colors, target);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(filename + ": " + e.getMessage(), e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return files.size();
+    }
+
+    /**
+     * Reads the 3D table with trilinear interpolation.
+     *
+     * @param r Red grid coordinate, 0 to GRID - 1
+     * @param g Green grid coordinate
+     * @param b Blue grid coordinate
+     * @return The interpolated color
+     */
+    private int interpolate(double r, double g, double b) {
+        int r0 = Math.min((int) r, GRID - 2);
+        int g0 = Math.min((int) g, GRID - 2);
+        int b0 = Math.min((int) b, GRID - 2);
+        double fr = r - r0;
+        double fg = g - g0;
+        double fb = b - b0;
+
+        int base = ((r0 * GRID + g0) * GRID + b0) * 3;
+        int stepR = GRID * GRID * 3;
+        int stepG = GRID * 3;
+        int color = 0;
+        for (int c = 0; c < 3; c++) {
+            int i = base + c;
+            double c00 = grid[i] + (grid[i + stepR] - grid[i]) * fr;
+            double c01 = grid[i + 3] + (grid[i + stepR + 3] - grid[i + 3]) * fr;
+            double c10 = grid[i + stepG] + (grid[i + stepR + stepG] - grid[i + stepG]) * fr;
+            double c11 = grid[i + stepG + 3] + (grid[i + stepR + stepG + 3] - grid[i + stepG + 3]) * fr;
+            double c0 = c00 + (c10 - c00) * fg;
+            double c1 = c01 + (c11 - c01) * fg;
+            int value = (int) Math.round(c0 + (c1 - c0) * fb);
+            color = (color << 8) | Math.max(0, Math.min(255, value));
+        }
+        return color;
+    }
+
+    private static double evaluate(List<Operation> operations, double value) {
+        for (Operation operation : operations) {
+            value = ((ChannelOperation) operation).function().applyAsDouble(clamp(value));
+        }
+        return value;
+    }
+
+    private static void evaluate(List<Operation> operations, double[] rgb) {
+        for (Operation operation : operations) {
+            switch (operation) {
+                case ChannelOperation channel -> {
+                    for (int c = 0; c < 3; c++) {
+                        rgb[c] = channel.function().applyAsDouble(clamp(rgb[c]));
+                    }
+                }
+                case ColorOperation color -> color.function().apply(rgb);
+            }
+        }
+    }
+
+    private static int quantize(double value) {
+        return (int) Math.round(clamp(value) * 255);
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(1, value));
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,205 @@
+package de.nrq.core.verify;
+
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.color.ColorConverter;
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.format.PaletteFormatException;
+import de.nrq.core.reader.ByteBufferPaletteReader;
+import de.nrq.core.reader.PalReader;
+import de.nrq.core.reader.PaletteFiles;
+import de.nrq.core.reader.PaletteReader;
+import de.nrq.core.reader.PaletteReaderFactory;
+import de.nrq.core.reader.VhParser;
+import de.nrq.core.verify.VerificationResult.Issue;
+import de.nrq.core.verify.VerificationResult.Type;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Checks palette files for exact conformance to their format.
+ * Unlike the readers, which stop at the first problem, the verifier collects
+ * every issue it can detect in a file: wrong PAL sizes, VH syntax errors with
+ * their position, missing or surplus (duplicated) entries and non-black colors
+ * in the slots that {@link ColorArrangement} reserves for black.
+ * Repeated colors are not reported: palettes of systems with fewer than 64
+ * colors legitimately use the same color in several slots.
+ */
+public class PaletteVerifier {
+    private static final int TOTAL_COLORS = PaletteReader.TOTAL_COLORS;
+    private static final int VH_BLACK_COLORS = 8;
+    private static final Set<PaletteFormat> VERIFIED_FORMATS =
+            EnumSet.of(PaletteFormat.PAL, PaletteFormat.VH, PaletteFormat.ACT, PaletteFormat.GPL);
+
+    /**
+     * Totals of a tree verification.
+     *
+     * @param files   Number of palette files verified
+     * @param invalid Number of files with at least one issue
+     */
+    public record Summary(int files, int invalid) {
+    }
+
+    /**
+     * Verifies all palette files below a directory in parallel.
+     * Files are matched by their .pal, .vh, .act or .gpl extension; other files are ignored.
+     * If the root is a regular file, only that file is verified.
+     * Results are handed to the sink as soon as they are available, in no
+     * particular order, so the sink must be safe to call from multiple threads.
+     *
+     * @param root Directory to scan recursively, or a single palette file
+     * @param sink Receiver of the per-file results
+     * @return Totals over all verified files
+     * @throws IOException If the directory tree can't be traversed
+     */
+    public Summary verifyTree(Path root, Consumer<VerificationResult> sink) throws IOException {
+        List<Path> files = PaletteFiles.list(root, VERIFIED_FORMATS);
+
+        AtomicInteger invalid = new AtomicInteger();
+        files.parallelStream()
+                .map(this::verify)
+                .forEach(result -> {
+                    if (!result.isValid()) {
+                        invalid.incrementAndGet();
+                    }
+                    sink.accept(result);
+                });
+        return new Summary(files.size(), invalid.get());
+    }
+
+    /**
+     * Verifies a single palette file.
+     * The format is determined from the file extension; .pal files are further
+     * told apart by their header into raw, JASC and RIFF palettes.
+     *
+     * @param file The file to verify
+     * @return The verification result listing all issues found
+     */
+    public VerificationResult verify(Path file) {
+        List<Issue> issues = new ArrayList<>();
+
+        PaletteFormat format;
+        try {
+            format = PaletteFormat.fromFileName(file.getFileName().toString());
+        } catch (IllegalArgumentException e) {
+            issues.add(Issue.of(Type.FORMAT, e.getMessage()));
+            return new VerificationResult(file.toString(), issues);
+        }
+        if (!VERIFIED_FORMATS.contains(format)) {
+            issues.add(Issue.of(Type.FORMAT, "Verification is not supported for " + format + " files"));
+            return new VerificationResult(file.toString(), issues);
+        }
+
+        byte[] data;
+        try {
+            // Oversized files are reported without reading them into memory
+            long size = Files.size(file);
+            if (size > ByteBufferPaletteReader.MAX_FILE_SIZE) {
+                issues.add(Issue.of(Type.SIZE, String.format("File size is %d bytes, at most %d are allowed",
+                        size, ByteBufferPaletteReader.MAX_FILE_SIZE)));
+                return new VerificationResult(file.toString(), issues);
+            }
+            if (format == PaletteFormat.PAL && size != PalReader.EXPECTED_FILE_SIZE
+                    && size > PalReader.MAX_VARIANT_SIZE) {
+                issues.add(Issue.of(Type.SIZE, String.format("File size is %d bytes, expected exactly %d",
+                        size, PalReader.EXPECTED_FILE_SIZE)));
+                return new VerificationResult(file.toString(), issues);
+            }
+            data = Files.readAllBytes(file);
+        } catch (IOException e) {
+            issues.add(Issue.of(Type.IO, "Cannot read file: " + e.getMessage()));
+            return new VerificationResult(file.toString(), issues);
+        }
+
+        if (format == PaletteFormat.PAL) {
+            format = PaletteFormat.detect(ByteBuffer.wrap(data));
+        }
+        switch (format) {
+            case PAL -> verifyPal(data, issues);
+            case VH -> verifyVh(data, issues);
+            default -> verifyParsed(format, data, issues);
+        }
+        return new VerificationResult(file.toString(), issues);
+    }
+
+    /**
+     * Checks the exact size and the black slots of a raw PAL file.
+     */
+    private void verifyPal(byte[] data, List<Issue> issues) {
+        if (data.length != PalReader.EXPECTED_FILE_SIZE) {
+            issues.add(Issue.of(Type.SIZE, String.format("File size is %d bytes, expected exactly %d",
+                    data.length, PalReader.EXPECTED_FILE_SIZE)));
+            return;
+        }
+
+        int[] colors = ColorConverter.rgbBytesToIntArray(data);
+        for (int i = 0; i < colors.length; i++) {
+            if (ColorArrangement.isBlackSlot(i) && colors[i] != 0) {
+                issues.add(blackSlotIssue(i, colors[i]));
+            }
+        }
+    }
+
+    /**
+     * Checks syntax, entry count and the black slots of a VH file.
+     * The black slots are the first 8 entries in VH order.
+     */
+    private void verifyVh(byte[] data, List<Issue> issues) {
+        int[] colors = new int[TOTAL_COLORS];
+        int count;
+        try {
+            count = VhParser.parse(ByteBuffer.wrap(data), colors);
+        } catch (PaletteFormatException e) {
+            issues.add(new Issue(Type.SYNTAX, e.getReason(), e.getLine(), e.getColumn(), -1));
+            return;
+        }
+
+        if (count < TOTAL_COLORS) {
+            issues.add(Issue.of(Type.COUNT, String.format("Missing colors: found %d, expected %d",
+                    count, TOTAL_COLORS)));
+        } else if (count > TOTAL_COLORS) {
+            issues.add(Issue.of(Type.COUNT, String.format("Surplus colors: found %d, expected %d",
+                    count, TOTAL_COLORS)));
+        }
+
+        for (int i = 0; i < Math.min(count, VH_BLACK_COLORS); i++) {
+            if (colors[i] != 0) {
+                issues.add(blackSlotIssue(i, colors[i]));
+            }
+        }
+    }
+
+    /**
+     * Checks the formats that have no dedicated verification by parsing them with their reader.
+     * Parse errors, including a wrong number of colors, are reported as a single syntax issue.
+     */
+    private void verifyParsed(PaletteFormat format, byte[] data, List<Issue> issues) {
+        int[] colors;
+        try {
+            colors = PaletteReaderFactory.createParser(format).parse(ByteBuffer.wrap(data));
+        } catch (PaletteFormatException e) {
+            issues.add(new Issue(Type.SYNTAX, e.getReason(), e.getLine(), e.getColumn(), -1));
+            return;
+        }
+
+        for (int i = 0; i < colors.length; i++) {
+            if (ColorArrangement.isBlackSlot(i) && colors[i] != 0) {
+                issues.add(blackSlotIssue(i, colors[i]));
+            }
+        }
+    }
+
+    private static Issue blackSlotIssue(int slot, int color) {
+        return new Issue(Type.BLACK_SLOT,
+                String.format("Slot %d is reserved for black but holds %06X", slot, color),
+                -1, -1, slot);
+    }
+}
@@ -0,0 +1,105 @@
+package de.nrq.core.verify;
+
+import java.util.List;
+
+/**
+ * Outcome of verifying a single palette file.
+ * A file is valid when no issues were found.
+ *
+ * @param file   The verified file as given to the verifier
+ * @param issues Problems found in the file, in the order they were detected
+ */
+public record VerificationResult(String file, List<Issue> issues) {
+    /**
+     * Categories of problems reported by the verifier.
+     */
+    public enum Type {
+        IO,
+        FORMAT,
+        SIZE,
+        SYNTAX,
+        COUNT,
+        BLACK_SLOT
+    }
+
+    /**
+     * A single problem in a palette file.
+     * Position fields are -1 when they don't apply to the issue type.
+     *
+     * @param type    Category of the problem
+     * @param message Human-readable description
+     * @param line    1-based line of a syntax error, or -1
+     * @param column  1-based column of a syntax error, or -1
+     * @param slot    Index of the offending palette entry in file order, or -1
+     */
+    public record Issue(Type type, String message, int line, int column, int slot) {
+        static Issue of(Type type, String message) {
+            return new Issue(type, message, -1, -1, -1);
+        }
+    }
+
+    /**
+     * Checks whether the file passed all checks.
+     *
+     * @return true if no issues were found
+     */
+    public boolean isValid() {
+        return issues.isEmpty();
+    }
+
+    /**
+     * Formats this result as a single line of JSON.
+     * Example: <code>{"file":"a.vh","valid":false,"issues":[{"type":"syntax","message":"...","line":1,"column":5}]}</code>
+     *
+     * @return The JSON representation without a trailing line break
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(64);
+        json.append("{\"file\":");
+        appendString(json, file);
+        json.append(",\"valid\":").append(isValid());
+        json.append(",\"issues\":[");
+        for (int i = 0; i < issues.size(); i++) {
+            Issue issue = issues.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"type\":");
+            appendString(json, issue.type().name().toLowerCase());
+            json.append(",\"message\":");
+            appendString(json, issue.message());
+            if (issue.line() > 0) {
+                json.append(",\"line\":").append(issue.line());
+                json.append(",\"column\":").append(issue.column());
+            }
+            if (issue.slot() >= 0) {
+                json.append(",\"slot\":").append(issue.slot());
+            }
+            json.append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,30 @@
+package de.nrq.core.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Implementation of PaletteWriter for Adobe color tables.
+ * Writes the 64 colors into a 256-entry table padded with black, followed by
+ * the color count 64 and no transparent index (0xFFFF).
+ */
+public class ActWriter implements PaletteWriter {
+    private static final int SLOTS = 256;
+    private static final int NO_TRANSPARENCY = 0xFFFF;
+
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        PaletteWriters.validateColors(colors);
+
+        // ACT is big-endian, the ByteBuffer default
+        ByteBuffer buffer = ByteBuffer.allocate(SLOTS * 3 + 4);
+        for (int color : colors) {
+            buffer.put((byte) (color >> 16)).put((byte) (color >> 8)).put((byte) color);
+        }
+        buffer.position(SLOTS * 3);
+        buffer.putShort((short) colors.length).putShort((short) NO_TRANSPARENCY);
+
+        out.write(buffer.array());
+    }
+}
@@ -0,0 +1,47 @@
+package de.nrq.core.writer;
+
+import de.nrq.image.BmpEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Implementation of PaletteWriter for BMP previews.
+ * Delegates to a {@link BmpEncoder}, so the encoder's settings apply.
+ * Like the encoder, the writer is stateless and can be shared between threads.
+ */
+public class BmpWriter implements PaletteWriter {
+    private final BmpEncoder encoder;
+
+    /**
+     * Creates a writer using the default settings.
+     */
+    public BmpWriter() {
+        this(BmpEncoder.DEFAULT);
+    }
+
+    /**
+     * Creates a writer using the given encoder.
+     *
+     * @param encoder The encoder rendering the preview
+     */
+    public BmpWriter(BmpEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        encoder.encode(colors, out);
+    }
+
+    @Override
+    public byte[] toBytes(int[] colors) {
+        return encoder.toBytes(colors);
+    }
+
+    @Override
+    public void writeColors(int[] colors, Path file) throws IOException {
+        encoder.encode(colors, file);
+    }
+}
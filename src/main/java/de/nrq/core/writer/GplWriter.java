@@ -0,0 +1,27 @@
+package de.nrq.core.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Implementation of PaletteWriter for GIMP palettes.
+ * Writes 16 columns, so GIMP shows the palette in the same 16x4 layout as the BMP preview.
+ */
+public class GplWriter implements PaletteWriter {
+    private static final int COLUMNS = 16;
+
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        PaletteWriters.validateColors(colors);
+
+        StringBuilder content = new StringBuilder();
+        content.append("GIMP Palette\nColumns: ").append(COLUMNS).append("\n#\n");
+        for (int i = 0; i < colors.length; i++) {
+            content.append(String.format("%3d %3d %3d\tIndex %d\n",
+                    (colors[i] >> 16) & 0xFF, (colors[i] >> 8) & 0xFF, colors[i] & 0xFF, i));
+        }
+
+        out.write(content.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
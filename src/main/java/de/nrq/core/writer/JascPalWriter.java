@@ -0,0 +1,26 @@
+package de.nrq.core.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Implementation of PaletteWriter for JASC (Paint Shop Pro) palettes.
+ * Writes the JASC-PAL header and one decimal <code>R G B</code> line per color, with CR LF line breaks.
+ */
+public class JascPalWriter implements PaletteWriter {
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        PaletteWriters.validateColors(colors);
+
+        StringBuilder content = new StringBuilder();
+        content.append("JASC-PAL\r\n0100\r\n").append(colors.length).append("\r\n");
+        for (int color : colors) {
+            content.append((color >> 16) & 0xFF).append(' ')
+                    .append((color >> 8) & 0xFF).append(' ')
+                    .append(color & 0xFF).append("\r\n");
+        }
+
+        out.write(content.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+}
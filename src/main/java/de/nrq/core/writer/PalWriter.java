@@ -0,0 +1,40 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.buffer.ScratchBuffers;
+import de.nrq.core.color.ColorConverter;
+import de.nrq.core.reader.PalReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Implementation of PaletteWriter for PAL format files.
+ * Writes raw RGB color data with 3 consecutive bytes per color.
+ */
+public class PalWriter implements PaletteWriter {
+    /**
+     * The size of an encoded PAL file in bytes.
+     */
+    public static final int ENCODED_SIZE = PalReader.EXPECTED_FILE_SIZE;
+
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        byte[] data = ScratchBuffers.get().bytes(ENCODED_SIZE).array();
+        out.write(data, 0, encode(colors, data, 0));
+    }
+
+    /**
+     * Encodes colors into a caller-provided array, without allocating.
+     *
+     * @param colors Array of 64 colors in PAL format order
+     * @param dest   Array receiving the {@value #ENCODED_SIZE} bytes of the file
+     * @param offset Index of the first byte to write
+     * @return The number of bytes written
+     * @throws IllegalArgumentException if the colors array is invalid or the destination is too small
+     */
+    public int encode(int[] colors, byte[] dest, int offset) {
+        PaletteWriters.validateColors(colors);
+        ColorConverter.intArrayToRgbBytes(colors, dest, offset);
+        return ENCODED_SIZE;
+    }
+}
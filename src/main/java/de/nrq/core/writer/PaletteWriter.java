@@ -0,0 +1,55 @@
+package de.nrq.core.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Interface for writing color palettes to files.
+ * Counterpart of {@link de.nrq.core.reader.PaletteReader}: takes 64 colors
+ * in PAL format order and encodes them in a specific file format.
+ */
+public interface PaletteWriter {
+    /**
+     * Encodes colors and writes them to a stream.
+     * Each color is expected in 0xRRGGBB format, in PAL order.
+     *
+     * @param colors Array of 64 colors in PAL format order
+     * @param out    The stream to write to; it is not closed
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException if the colors array is invalid
+     */
+    void write(int[] colors, OutputStream out) throws IOException;
+
+    /**
+     * Encodes colors into a new byte array.
+     *
+     * @param colors Array of 64 colors in PAL format order
+     * @return The encoded file content
+     * @throws IllegalArgumentException if the colors array is invalid
+     */
+    default byte[] toBytes(int[] colors) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            write(colors, out);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory stream cannot fail", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes colors and writes them to a file, replacing existing content.
+     *
+     * @param colors Array of 64 colors in PAL format order
+     * @param file   The file to write
+     * @throws IOException If writing fails
+     */
+    default void writeColors(int[] colors, Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(colors, out);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.format.PaletteFormat;
+
+/**
+ * Factory for creating PaletteWriter instances based on file format.
+ * Determines the appropriate writer based on file extension.
+ * <p>
+ * Like the readers, writers are stateless and kept in a table indexed by the
+ * format's ordinal, which the native image initializes at build time.
+ */
+public class PaletteWriterFactory {
+    private static final PaletteWriter[] WRITERS = new PaletteWriter[PaletteFormat.values().length];
+
+    static {
+        for (PaletteFormat format : PaletteFormat.values()) {
+            WRITERS[format.ordinal()] = switch (format) {
+                case PAL -> new PalWriter();
+                case VH -> new VhWriter();
+                case BMP -> new BmpWriter();
+                case JASC -> new JascPalWriter();
+                case RIFF -> new RiffPalWriter();
+                case ACT -> new ActWriter();
+                case GPL -> new GplWriter();
+                case PPK -> new PpkWriter();
+            };
+        }
+    }
+
+    /**
+     * Creates a PaletteWriter for the specified format.
+     *
+     * @param format The palette format to create a writer for
+     * @return A PaletteWriter instance appropriate for the format
+     */
+    public static PaletteWriter createWriter(PaletteFormat format) {
+        return WRITERS[format.ordinal()];
+    }
+
+    /**
+     * Creates a PaletteWriter based on the filename extension.
+     * Files with the .pal extension get the raw PAL writer.
+     *
+     * @param filename The filename to determine the format from
+     * @return A PaletteWriter instance appropriate for the file
+     * @throws IllegalArgumentException if the file extension is not supported
+     */
+    public static PaletteWriter createWriter(String filename) {
+        return createWriter(PaletteFormat.fromFileName(filename));
+    }
+}
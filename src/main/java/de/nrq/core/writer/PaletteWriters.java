@@ -0,0 +1,29 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.reader.PaletteReader;
+
+/**
+ * Helpers shared by the palette writers.
+ */
+final class PaletteWriters {
+    private PaletteWriters() {
+        // Utility class, prevent instantiation
+    }
+
+    /**
+     * Validates the colors array passed to a writer.
+     *
+     * @param colors Array of colors to validate
+     * @throws IllegalArgumentException if array is null or not exactly 64 colors
+     */
+    static void validateColors(int[] colors) {
+        if (colors == null) {
+            throw new IllegalArgumentException("Colors array cannot be null");
+        }
+        if (colors.length != PaletteReader.TOTAL_COLORS) {
+            throw new IllegalArgumentException(
+                    String.format("Colors array must contain exactly %d colors", PaletteReader.TOTAL_COLORS)
+            );
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.store.PaletteArchive;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Implementation of PaletteWriter for compressed palette archives (.ppk).
+ * Writes an archive holding just this palette.
+ */
+public class PpkWriter implements PaletteWriter {
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        PaletteWriters.validateColors(colors);
+        out.write(PaletteArchive.toBytes(colors));
+    }
+}
@@ -0,0 +1,35 @@
+package de.nrq.core.writer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Implementation of PaletteWriter for Microsoft RIFF palettes.
+ * Writes a RIFF container of form type <code>PAL </code> with a single
+ * <code>data</code> chunk holding a LOGPALETTE of 64 entries.
+ */
+public class RiffPalWriter implements PaletteWriter {
+    private static final int VERSION = 0x0300;
+
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        PaletteWriters.validateColors(colors);
+
+        int dataSize = 4 + colors.length * 4;
+        ByteBuffer buffer = ByteBuffer.allocate(20 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(new byte[]{'R', 'I', 'F', 'F'})
+                .putInt(12 + dataSize)       // Form type and data chunk
+                .put(new byte[]{'P', 'A', 'L', ' '})
+                .put(new byte[]{'d', 'a', 't', 'a'})
+                .putInt(dataSize)
+                .putShort((short) VERSION)
+                .putShort((short) colors.length);
+        for (int color : colors) {
+            buffer.put((byte) (color >> 16)).put((byte) (color >> 8)).put((byte) color).put((byte) 0);
+        }
+
+        out.write(buffer.array());
+    }
+}
@@ -0,0 +1,58 @@
+package de.nrq.core.writer;
+
+/**
+ * Memory initialization file formats for FPGA ROMs, written by {@link RomWriter}.
+ * Supported formats:
+ * - MIF: Intel (Quartus) memory initialization file
+ * - COE: Xilinx (Vivado) coefficient file
+ * - HEX: Plain hex words, one per line, as read by Verilog <code>$readmemh</code>
+ */
+public enum RomFormat {
+    MIF,
+    COE,
+    HEX;
+
+    /**
+     * Determines the ROM format from a filename extension.
+     * Case-insensitive matching of .mif, .coe or .hex extensions.
+     *
+     * @param filename The filename to check
+     * @return The detected RomFormat
+     * @throws IllegalArgumentException if the format is not supported
+     */
+    public static RomFormat fromFileName(String filename) {
+        String lowerFilename = filename.toLowerCase();
+        for (RomFormat format : values()) {
+            if (lowerFilename.endsWith(format.getExtension())) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported ROM format. Use .mif, .coe or .hex files.");
+    }
+
+    /**
+     * Determines the ROM format by name, as given on the command line.
+     * Case-insensitive.
+     *
+     * @param name The format name, e.g. "coe"
+     * @return The matching RomFormat
+     * @throws IllegalArgumentException if there is no format of that name
+     */
+    public static RomFormat fromName(String name) {
+        for (RomFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("Unknown ROM format: " + name);
+    }
+
+    /**
+     * Gets the file extension for this format.
+     *
+     * @return The lowercase extension including the dot
+     */
+    public String getExtension() {
+        return "." + name().toLowerCase();
+    }
+}
@@ -0,0 +1,186 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.reader.PaletteReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes palettes as FPGA memory initialization files.
+ * A ROM holds one or more palettes back to back, each as 64 words of 24 bits in
+ * VH order, so palette p occupies the addresses p * 64 to p * 64 + 63.
+ * <p>
+ * The text is encoded directly into a reused byte buffer with a hex digit table
+ * instead of String formatting, and the buffer is flushed to the stream whenever it
+ * fills up, so memory use doesn't depend on the number of palettes.
+ */
+public class RomWriter implements PaletteWriter {
+    private static final int TOTAL_COLORS = PaletteReader.TOTAL_COLORS;
+    private static final int WORD_DIGITS = 6;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+
+    private final RomFormat format;
+
+    /**
+     * Creates a writer for the given format.
+     *
+     * @param format The memory initialization format
+     */
+    public RomWriter(RomFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Writes a ROM holding a single palette.
+     *
+     * @param colors Array of 64 colors in PAL format order
+     * @param out    The stream to write to; it is not closed
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException if the colors array is invalid
+     */
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        PaletteWriters.validateColors(colors);
+        writeRom(colors, out);
+    }
+
+    /**
+     * Writes a ROM holding many palettes to a file.
+     *
+     * @param palettes Flat array of whole palettes, 64 colors each in PAL order, as returned by
+     *                 {@link de.nrq.core.reader.PaletteFiles#readAll}
+     * @param output   The file to create or overwrite
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException if the array doesn't hold whole palettes
+     */
+    public void writeRom(int[] palettes, Path output) throws IOException {
+        try (OutputStream out = Files.newOutputStream(output)) {
+            writeRom(palettes, out);
+        }
+    }
+
+    /**
+     * Writes a ROM holding many palettes.
+     * Each palette is rearranged to VH order on the fly.
+     *
+     * @param palettes Flat array of whole palettes, 64 colors each in PAL order
+     * @param out      The stream to write to; it is not closed
+     * @throws IOException              If writing fails
+     * @throws IllegalArgumentException if the array is empty or doesn't hold whole palettes
+     */
+    public void writeRom(int[] palettes, OutputStream out) throws IOException {
+        if (palettes.length == 0 || palettes.length % TOTAL_COLORS != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Buffer must hold whole palettes of %d colors", TOTAL_COLORS));
+        }
+        int count = palettes.length / TOTAL_COLORS;
+        int depth = palettes.length;
+        int addressDigits = Math.max(1, (32 - Integer.numberOfLeadingZeros(depth - 1) + 3) / 4);
+
+        Encoder encoder = new Encoder(out);
+        writeHeader(encoder, depth, count);
+
+        int[] vhColors = new int[TOTAL_COLORS];
+        int address = 0;
+        for (int p = 0; p < count; p++) {
+            ColorArrangement.palToVhOrder(IntBuffer.wrap(palettes, p * TOTAL_COLORS, TOTAL_COLORS), vhColors);
+            writePaletteComment(encoder, p);
+            for (int i = 0; i < TOTAL_COLORS; i++, address++) {
+                writeWord(encoder, address, addressDigits, vhColors[i], address == depth - 1);
+            }
+        }
+
+        writeFooter(encoder);
+        encoder.flush();
+    }
+
+    private void writeHeader(Encoder encoder, int depth, int count) throws IOException {
+        switch (format) {
+            case MIF -> {
+                encoder.ascii("-- ").decimal(count).ascii(" palette(s) of 64 colors in VH order\n");
+                encoder.ascii("DEPTH = ").decimal(depth).ascii(";\n");
+                encoder.ascii("WIDTH = 24;\nADDRESS_RADIX = HEX;\nDATA_RADIX = HEX;\nCONTENT\nBEGIN\n");
+            }
+            case COE -> {
+                encoder.ascii("; ").decimal(count).ascii(" palette(s) of 64 colors in VH order\n");
+                encoder.ascii("memory_initialization_radix=16;\nmemory_initialization_vector=\n");
+            }
+            case HEX -> encoder.ascii("// ").decimal(count).ascii(" palette(s) of 64 colors in VH order\n");
+        }
+    }
+
+    private void writePaletteComment(Encoder encoder, int palette) throws IOException {
+        // COE files only allow comments before the vector
+        switch (format) {
+            case MIF -> encoder.ascii("-- Palette ").decimal(palette).ascii("\n");
+            case HEX -> encoder.ascii("// Palette ").decimal(palette).ascii("\n");
+            case COE -> {
+            }
+        }
+    }
+
+    private void writeWord(Encoder encoder, int address, int addressDigits, int color, boolean last)
+            throws IOException {
+        switch (format) {
+            case MIF -> encoder.hex(address, addressDigits).ascii(" : ").hex(color, WORD_DIGITS).ascii(";\n");
+            case COE -> encoder.hex(color, WORD_DIGITS).ascii(last ? ";\n" : ",\n");
+            case HEX -> encoder.hex(color, WORD_DIGITS).ascii("\n");
+        }
+    }
+
+    private void writeFooter(Encoder encoder) throws IOException {
+        if (format == RomFormat.MIF) {
+            encoder.ascii("END;\n");
+        }
+    }
+
+    /**
+     * Encodes ASCII text into a fixed buffer that is flushed to the stream when full.
+     */
+    private static final class Encoder {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+
+        Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        Encoder ascii(String text) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                put((byte) text.charAt(i));
+            }
+            return this;
+        }
+
+        Encoder hex(int value, int digits) throws IOException {
+            for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+                put(HEX_DIGITS[(value >>> shift) & 0xF]);
+            }
+            return this;
+        }
+
+        Encoder decimal(int value) throws IOException {
+            return ascii(Integer.toString(value));
+        }
+
+        private void put(byte b) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = b;
+        }
+
+        void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
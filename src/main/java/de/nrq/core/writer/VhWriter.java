@@ -0,0 +1,82 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.buffer.ScratchBuffers;
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.reader.PaletteReader;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Implementation of PaletteWriter for VH format files.
+ * Writes the Verilog array <code>lumacode_data_3s</code> with 64 colors in 24'hRRGGBB format,
+ * converting the PAL color order to VH order.
+ */
+public class VhWriter implements PaletteWriter {
+    /**
+     * Declaration preceding the array initializer.
+     */
+    public static final String DECLARATION = "wire [23:0] lumacode_data_3s[0:63] = ";
+
+    private static final byte[] PREFIX = (DECLARATION + "'{ ").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX_DIGITS = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'
+    };
+    private static final int LITERAL_LENGTH = 10;    // 24'hRRGGBB
+    private static final int SEPARATOR_LENGTH = 2;   // ", "
+    private static final int TOTAL_COLORS = PaletteReader.TOTAL_COLORS;
+
+    /**
+     * The size of an encoded VH file in bytes; every file has the same size.
+     */
+    public static final int ENCODED_SIZE = PREFIX.length + TOTAL_COLORS * LITERAL_LENGTH
+            + (TOTAL_COLORS - 1) * SEPARATOR_LENGTH + 2;
+
+    @Override
+    public void write(int[] colors, OutputStream out) throws IOException {
+        byte[] data = ScratchBuffers.get().bytes(ENCODED_SIZE).array();
+        out.write(data, 0, encode(colors, data, 0));
+    }
+
+    /**
+     * Encodes colors into a caller-provided array, without allocating.
+     * The colors are rearranged to VH order and written as hex literals with a digit table.
+     *
+     * @param colors Array of 64 colors in PAL format order
+     * @param dest   Array receiving the {@link #ENCODED_SIZE} bytes of the file
+     * @param offset Index of the first byte to write
+     * @return The number of bytes written
+     * @throws IllegalArgumentException if the colors array is invalid or the destination is too small
+     */
+    public int encode(int[] colors, byte[] dest, int offset) {
+        PaletteWriters.validateColors(colors);
+        if (offset < 0 || dest.length - offset < ENCODED_SIZE) {
+            throw new IllegalArgumentException(
+                    String.format("Destination must have room for %d bytes from offset %d", ENCODED_SIZE, offset));
+        }
+
+        // Convert to VH format
+        int[] vhColors = ScratchBuffers.get().colors();
+        ColorArrangement.palToVhOrder(colors, vhColors);
+
+        System.arraycopy(PREFIX, 0, dest, offset, PREFIX.length);
+        int pos = offset + PREFIX.length;
+        for (int i = 0; i < TOTAL_COLORS; i++) {
+            if (i > 0) {
+                dest[pos++] = ',';
+                dest[pos++] = ' ';
+            }
+            dest[pos++] = '2';
+            dest[pos++] = '4';
+            dest[pos++] = '\'';
+            dest[pos++] = 'h';
+            for (int shift = 20; shift >= 0; shift -= 4) {
+                dest[pos++] = HEX_DIGITS[(vhColors[i] >>> shift) & 0xF];
+            }
+        }
+        dest[pos++] = '}';
+        dest[pos++] = ';';
+        return pos - offset;
+    }
+}
@@ -0,0 +1,213 @@
+package de.nrq.image;
+
+import de.nrq.core.reader.PaletteReaderFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Renders a contact sheet of many palettes into a single 24-bit BMP image.
+ * Palettes are laid out in a grid, each as 16x4 squares like {@link BmpBuilder} draws them.
+ * <p>
+ * The image is streamed band by band, one band per grid row, so only the palettes of
+ * the bands currently being rendered are held in memory. Bands are rendered in parallel
+ * and written in file order through a channel; the number of bands in flight is bounded.
+ */
+public class AtlasRenderer {
+    private static final int COLORS_PER_ROW = 16;
+    private static final int NUM_ROWS = 4;
+    private static final int TOTAL_COLORS = COLORS_PER_ROW * NUM_ROWS;
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int BACKGROUND = 0x808080;
+
+    private final int squareSize;
+    private final int columns;
+    private final int gap;
+
+    /**
+     * Creates a renderer.
+     *
+     * @param squareSize Size of each color square in pixels
+     * @param columns    Number of palettes per grid row, or 0 to choose a roughly square layout
+     * @param gap        Spacing between palettes in pixels
+     * @throws IllegalArgumentException if a parameter is out of range
+     */
+    public AtlasRenderer(int squareSize, int columns, int gap) {
+        if (squareSize < 1) {
+            throw new IllegalArgumentException("Square size must be at least 1 pixel");
+        }
+        if (columns < 0 || gap < 0) {
+            throw new IllegalArgumentException("Columns and gap cannot be negative");
+        }
+        this.squareSize = squareSize;
+        this.columns = columns;
+        this.gap = gap;
+    }
+
+    /**
+     * Renders the palettes into a BMP file.
+     *
+     * @param palettes   Palette files in grid order (left to right, top to bottom)
+     * @param outputFile The BMP file to create
+     * @throws IOException              If a palette can't be read or the image can't be written
+     * @throws IllegalArgumentException if the list is empty, a palette is invalid, or the image is too large
+     */
+    public void render(List<Path> palettes, Path outputFile) throws IOException {
+        if (palettes.isEmpty()) {
+            throw new IllegalArgumentException("No palettes to render");
+        }
+
+        int cols = getColumns(palettes.size());
+        int gridRows = (palettes.size() + cols - 1) / cols;
+        int cellHeight;
+        BmpHeader header;
+        try {
+            int cellWidth = Math.addExact(Math.multiplyExact(COLORS_PER_ROW, squareSize), gap);
+            cellHeight = Math.addExact(Math.multiplyExact(NUM_ROWS, squareSize), gap);
+            header = BmpHeader.of(Math.addExact(Math.multiplyExact(cols, cellWidth), gap),
+                    Math.addExact(Math.multiplyExact(gridRows, cellHeight), gap));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Atlas is too large", e);
+        }
+        int rowSize = header.getRowSize();
+        if ((long) cellHeight * rowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Atlas rows are too large, reduce the number of columns");
+        }
+
+        int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+        try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(header.toBytes()));
+
+            // BMP rows are stored bottom-up: first the bottom gap, then the grid rows from the last one
+            ByteBuffer bottomGap = ByteBuffer.allocate(gap * rowSize);
+            for (int y = 0; y < gap; y++) {
+                bottomGap.put(backgroundRow(rowSize, header.getWidth()));
+            }
+            writeFully(channel, bottomGap.flip());
+
+            Deque<CompletableFuture<ByteBuffer>> inFlight = new ArrayDeque<>();
+            for (int gridRow = gridRows - 1; gridRow >= 0; gridRow--) {
+                int bandRow = gridRow;
+                inFlight.add(CompletableFuture.supplyAsync(
+                        () -> renderBand(palettes, bandRow, cols, cellHeight, rowSize, header.getWidth())));
+                if (inFlight.size() >= maxInFlight) {
+                    writeFully(channel, join(inFlight.poll()));
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                writeFully(channel, join(inFlight.poll()));
+            }
+        }
+    }
+
+    /**
+     * Gets the number of palettes per grid row for a library of the given size.
+     *
+     * @param count Number of palettes
+     * @return The configured number of columns, or a layout that is roughly square
+     */
+    public int getColumns(int count) {
+        if (columns > 0) {
+            return Math.min(columns, count);
+        }
+        // A palette is four times as wide as high, so use half the square root as columns
+        return Math.max(1, (int) Math.ceil(Math.sqrt(count) / 2));
+    }
+
+    /**
+     * Renders one grid row of palettes, with its top gap, in BMP row order.
+     */
+    private ByteBuffer renderBand(List<Path> palettes, int gridRow, int cols, int cellHeight, int rowSize, int width) {
+        int first = gridRow * cols;
+        int count = Math.min(cols, palettes.size() - first);
+
+        // One scanline per palette row; every square row repeats it squareSize times
+        byte[][] lines = new byte[NUM_ROWS][];
+        for (int r = 0; r < NUM_ROWS; r++) {
+            lines[r] = backgroundRow(rowSize, width);
+        }
+        for (int p = 0; p < count; p++) {
+            int[] colors = readPalette(palettes.get(first + p));
+            int left = gap + p * (COLORS_PER_ROW * squareSize + gap);
+            for (int r = 0; r < NUM_ROWS; r++) {
+                for (int c = 0; c < COLORS_PER_ROW; c++) {
+                    fill(lines[r], left + c * squareSize, squareSize, colors[r * COLORS_PER_ROW + c]);
+                }
+            }
+        }
+        byte[] gapLine = backgroundRow(rowSize, width);
+
+        byte[] band = new byte[cellHeight * rowSize];
+        for (int y = 0; y < cellHeight; y++) {
+            byte[] line = y < gap ? gapLine : lines[(y - gap) / squareSize];
+            System.arraycopy(line, 0, band, (cellHeight - 1 - y) * rowSize, rowSize);
+        }
+        return ByteBuffer.wrap(band);
+    }
+
+    private static int[] readPalette(Path file) {
+        String filename = file.toString();
+        try {
+            int[] colors = PaletteReaderFactory.createReader(filename).readColors(filename);
+            if (colors.length != TOTAL_COLORS) {
+                throw new IllegalArgumentException("Colors array must contain exactly 64 colors");
+            }
+            return colors;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(filename + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] backgroundRow(int rowSize, int width) {
+        byte[] row = new byte[rowSize];
+        fill(row, 0, width, BACKGROUND);
+        return row;
+    }
+
+    /**
+     * Fills a run of pixels in a BGR scanline with one color.
+     */
+    private static void fill(byte[] row, int x, int length, int color) {
+        int from = x * BYTES_PER_PIXEL;
+        int to = from + length * BYTES_PER_PIXEL;
+        row[from] = (byte) (color & 0xFF);              // Blue
+        row[from + 1] = (byte) ((color >> 8) & 0xFF);   // Green
+        row[from + 2] = (byte) ((color >> 16) & 0xFF);  // Red
+        // Double the filled run with each copy
+        for (int filled = BYTES_PER_PIXEL; from + filled < to; filled *= 2) {
+            System.arraycopy(row, from, row, from + filled, Math.min(filled, to - from - filled));
+        }
+    }
+
+    private static ByteBuffer join(CompletableFuture<ByteBuffer> band) throws IOException {
+        try {
+            return band.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
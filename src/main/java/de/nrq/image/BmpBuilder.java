@@ -1,40 +1,60 @@
 package de.nrq.image;
 
 import java.io.*;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
 
 /**
  * Builder for creating BMP images from color palettes.
  * Implements the BMP file format directly without AWT dependencies.
+ * <p>
+ * The builder is a mutable convenience front end to {@link BmpEncoder}: changing the square
+ * size swaps in an encoder for the new settings. It is not meant to be reconfigured while
+ * other threads use it; concurrent renderers should share a {@link BmpEncoder} instead.
  */
 public class BmpBuilder {
-    private static final int COLORS_PER_ROW = 16;
-    private static final int NUM_ROWS = 4;
-    private static final int TOTAL_COLORS = COLORS_PER_ROW * NUM_ROWS;
-    private static final int HEADER_SIZE = 54;  // BMP header size
-    private static final int BITS_PER_PIXEL = 24;
-    private static final int BYTES_PER_PIXEL = BITS_PER_PIXEL / 8;
-    private int squareSize = 50;  // Default size
+    private BmpEncoder encoder;
+
+    /**
+     * Creates a builder with the default settings, 50 pixel squares in 16x4 layout.
+     */
+    public BmpBuilder() {
+        this(BmpConfig.DEFAULT);
+    }
+
+    /**
+     * Creates a builder with the given settings.
+     *
+     * @param config The preview settings
+     */
+    public BmpBuilder(BmpConfig config) {
+        this.encoder = new BmpEncoder(config);
+    }
 
     /**
      * Sets the size of each color square in pixels.
-     * The image will contain 16x4 squares of this size.
+     * The layout and color depth are kept.
      *
      * @param size The size in pixels for each side of the square
      * @throws IllegalArgumentException if size is less than 1 pixel
      */
     public void setSquareSize(int size) {
-        if (size < 1) {
-            throw new IllegalArgumentException("Square size must be at least 1 pixel");
-        }
-        this.squareSize = size;
+        this.encoder = new BmpEncoder(encoder.getConfig().withSquareSize(size));
+    }
+
+    /**
+     * Gets the encoder for the current settings.
+     *
+     * @return An immutable encoder that can be shared between threads
+     */
+    public BmpEncoder getEncoder() {
+        return encoder;
     }
 
     /**
      * Creates a Windows Bitmap (BMP) file from the given colors.
-     * The image will contain 16x4 squares, each filled with one color.
-     * The BMP is written in 24-bit color depth with no compression.
+     * The image will contain 16x4 squares by default, each filled with one color.
+     * The BMP is written in 24-bit color depth by default, with no compression.
      *
      * @param colors     Array of colors in integer RGB format
      * @param outputFile The file path where the BMP will be saved
@@ -54,132 +74,67 @@ public class BmpBuilder {
      * @throws IllegalArgumentException if colors array is invalid
      */
     public void createBmpFile(int[] colors, File outputFile) throws IOException {
-        validateColors(colors);
-
-        int width = getImageWidth();
-        int height = getImageHeight();
-        int rowSize = ((width * BITS_PER_PIXEL + 31) / 32) * 4; // BMP rows are padded to multiples of 4 bytes
-        int imageSize = rowSize * height;
-        int fileSize = HEADER_SIZE + imageSize;
-
-        try (FileOutputStream fos = new FileOutputStream(outputFile);
-             BufferedOutputStream bos = new BufferedOutputStream(fos)) {
-
-            // Write BMP header
-            writeHeader(bos, fileSize, width, height, rowSize);
-
-            // Write pixel data (bottom-up, padded rows)
-            byte[] row = new byte[rowSize];
-            for (int y = height - 1; y >= 0; y--) {
-                fillRow(row, colors, y, width);
-                bos.write(row);
-            }
-        }
+        encoder.encode(colors, outputFile.toPath());
     }
 
     /**
-     * Writes the BMP file header and DIB header.
-     * Creates a standard 24-bit BMP header with no compression.
+     * Writes a BMP image of the given colors to a stream.
      *
-     * @param os       Output stream to write headers to
-     * @param fileSize Total size of the BMP file in bytes
-     * @param width    Width of the image in pixels
-     * @param height   Height of the image in pixels
-     * @param rowSize  Size of each row in bytes (padded to 4-byte boundary)
-     * @throws IOException If writing to the output stream fails
+     * @param colors Array of colors in integer format
+     * @param out    The stream to write to; it is not closed
+     * @throws IOException              if there's an error writing to the stream
+     * @throws IllegalArgumentException if colors array is invalid
      */
-    private void writeHeader(OutputStream os, int fileSize, int width, int height, int rowSize) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-        // Bitmap file header (14 bytes)
-        buffer.put((byte) 'B');                // Signature
-        buffer.put((byte) 'M');                // Signature
-        buffer.putInt(fileSize);               // File size
-        buffer.putInt(0);                // Reserved
-        buffer.putInt(HEADER_SIZE);            // Offset to pixel data
-
-        // DIB header (40 bytes)
-        buffer.putInt(40);                     // Header size
-        buffer.putInt(width);                        // Image width
-        buffer.putInt(height);                       // Image height
-        buffer.putShort((short) 1);                  // Number of color planes
-        buffer.putShort((short) BITS_PER_PIXEL);     // Bits per pixel
-        buffer.putInt(0);                      // Compression (none)
-        buffer.putInt(rowSize * height);       // Image size
-        buffer.putInt(2835);                   // Horizontal resolution (72 DPI)
-        buffer.putInt(2835);                   // Vertical resolution (72 DPI)
-        buffer.putInt(0);                      // Number of colors in palette
-        buffer.putInt(0);                      // Number of important colors
-
-        os.write(buffer.array());
+    public void writeBmp(int[] colors, OutputStream out) throws IOException {
+        encoder.encode(colors, out);
     }
 
     /**
-     * Fills a row of pixel data in the BMP format.
-     * Handles the BGR color order required by BMP format and row padding.
+     * Writes a BMP image of the colors in a buffer to a stream.
+     * Accepts views into a {@link de.nrq.core.store.PaletteStore} without copying.
+     * The colors are read from the buffer's position; the position is not modified.
      *
-     * @param row    Byte array to fill with pixel data
-     * @param colors Source array of colors in RGB format
-     * @param y      Current row being processed
-     * @param width  Width of the image in pixels
+     * @param colors Buffer with exactly 64 remaining colors in integer format
+     * @param out    The stream to write to; it is not closed
+     * @throws IOException              if there's an error writing to the stream
+     * @throws IllegalArgumentException if the buffer doesn't hold exactly 64 colors
      */
-    private void fillRow(byte[] row, int[] colors, int y, int width) {
-        int squareY = y / squareSize;
-
-        for (int x = 0; x < width; x++) {
-            int squareX = x / squareSize;
-
-            if (squareX < COLORS_PER_ROW && squareY < NUM_ROWS) {
-                int colorIndex = squareY * COLORS_PER_ROW + squareX;
-                int color = colors[colorIndex];
-
-                // Write BGR (BMP uses BGR color order)
-                int pos = x * BYTES_PER_PIXEL;
-                row[pos] = (byte) (color & 0xFF);          // Blue
-                row[pos + 1] = (byte) ((color >> 8) & 0xFF);  // Green
-                row[pos + 2] = (byte) ((color >> 16) & 0xFF); // Red
-            }
-        }
-
-        // Remaining bytes in row (if any) are already zero from array initialization
+    public void writeBmp(IntBuffer colors, OutputStream out) throws IOException {
+        encoder.encode(colors, out);
     }
 
     /**
-     * Validates the input colors array for BMP creation.
-     * Ensures the array contains exactly 64 colors and is not null.
+     * Updates a BMP preview previously written by this builder in place.
+     * Only the squares whose color differs are rewritten, see {@link BmpEncoder#update(int[], Path)}.
      *
-     * @param colors Array of colors to validate
-     * @throws IllegalArgumentException if array is null or not exactly 64 colors
+     * @param colors Array of the new colors in integer format
+     * @param file   An existing preview with this builder's square size
+     * @return The number of squares that were rewritten
+     * @throws IOException              if the file can't be read or written
+     * @throws IllegalArgumentException if colors array is invalid, or the file is not an
+     *                                  uncompressed preview of this builder's size and depth
      */
-    private void validateColors(int[] colors) {
-        if (colors == null) {
-            throw new IllegalArgumentException("Colors array cannot be null");
-        }
-        if (colors.length != TOTAL_COLORS) {
-            throw new IllegalArgumentException(
-                    String.format("Colors array must contain exactly %d colors", TOTAL_COLORS)
-            );
-        }
+    public int updateBmpFile(int[] colors, Path file) throws IOException {
+        return encoder.update(colors, file);
     }
 
     /**
      * Gets the current width of the image that would be created.
-     * Width is calculated as COLORS_PER_ROW (16) × squareSize.
+     * Width is calculated as the layout's columns (16 by default) × squareSize.
      *
      * @return The width in pixels
      */
     public int getImageWidth() {
-        return COLORS_PER_ROW * squareSize;
+        return encoder.getConfig().getImageWidth();
     }
 
     /**
      * Gets the current height of the image that would be created.
-     * Height is calculated as NUM_ROWS (4) × squareSize.
+     * Height is calculated as the layout's rows (4 by default) × squareSize.
      *
      * @return The height in pixels
      */
     public int getImageHeight() {
-        return NUM_ROWS * squareSize;
+        return encoder.getConfig().getImageHeight();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package de.nrq.image;
+
+/**
+ * Immutable settings of a BMP palette preview: the size of the color squares, how the
+ * 64 squares are arranged, and the color depth. Instances can be shared freely between
+ * threads; {@link BmpEncoder} renders previews with them.
+ *
+ * @param squareSize   Size of each color square in pixels
+ * @param layout       Arrangement of the squares
+ * @param bitsPerPixel Color depth, 24 or 32
+ */
+public record BmpConfig(int squareSize, Layout layout, int bitsPerPixel) {
+    /**
+     * The default preview: 50 pixel squares in 16x4 layout, 24 bits per pixel.
+     */
+    public static final BmpConfig DEFAULT = new BmpConfig(50, Layout.GRID_16X4, 24);
+
+    /**
+     * Arrangements of the 64 color squares. Colors are placed in PAL order,
+     * row by row from the top left.
+     */
+    public enum Layout {
+        /**
+         * 16 columns and 4 rows, the classic preview.
+         */
+        GRID_16X4(16, 4),
+        /**
+         * 8 columns and 8 rows, a square image.
+         */
+        GRID_8X8(8, 8);
+
+        private final int columns;
+        private final int rows;
+
+        Layout(int columns, int rows) {
+            this.columns = columns;
+            this.rows = rows;
+        }
+
+        /**
+         * Gets the number of squares per row.
+         *
+         * @return The column count
+         */
+        public int getColumns() {
+            return columns;
+        }
+
+        /**
+         * Gets the number of square rows.
+         *
+         * @return The row count
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Determines the layout by name, as given on the command line.
+         * Accepts "16x4" and "8x8", case-insensitive.
+         *
+         * @param name The layout name
+         * @return The matching layout
+         * @throws IllegalArgumentException if there is no layout of that name
+         */
+        public static Layout fromName(String name) {
+            for (Layout layout : values()) {
+                if (name.equalsIgnoreCase(layout.columns + "x" + layout.rows)) {
+                    return layout;
+                }
+            }
+            throw new IllegalArgumentException("Unknown BMP layout: " + name + ". Supported: 16x4, 8x8");
+        }
+    }
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if the square size is less than 1 pixel, the layout is null
+     *                                  or the color depth is not 24 or 32
+     */
+    public BmpConfig {
+        if (squareSize < 1) {
+            throw new IllegalArgumentException("Square size must be at least 1 pixel");
+        }
+        if (layout == null) {
+            throw new IllegalArgumentException("Layout cannot be null");
+        }
+        if (bitsPerPixel != 24 && bitsPerPixel != 32) {
+            throw new IllegalArgumentException(String.format(
+                    "Unsupported BMP color depth %d. Only 24-bit and 32-bit images are supported.", bitsPerPixel));
+        }
+    }
+
+    /**
+     * Creates settings with another square size.
+     *
+     * @param size The size in pixels for each side of the square
+     * @return New settings
+     * @throws IllegalArgumentException if size is less than 1 pixel
+     */
+    public BmpConfig withSquareSize(int size) {
+        return new BmpConfig(size, layout, bitsPerPixel);
+    }
+
+    /**
+     * Creates settings with another layout.
+     *
+     * @param layout The arrangement of the squares
+     * @return New settings
+     */
+    public BmpConfig withLayout(Layout layout) {
+        return new BmpConfig(squareSize, layout, bitsPerPixel);
+    }
+
+    /**
+     * Creates settings with another color depth.
+     *
+     * @param bits 24 or 32
+     * @return New settings
+     * @throws IllegalArgumentException if the depth is unsupported
+     */
+    public BmpConfig withBitsPerPixel(int bits) {
+        return new BmpConfig(squareSize, layout, bits);
+    }
+
+    /**
+     * Gets the width of the image.
+     *
+     * @return The number of columns times the square size, in pixels
+     */
+    public int getImageWidth() {
+        return layout.getColumns() * squareSize;
+    }
+
+    /**
+     * Gets the height of the image.
+     *
+     * @return The number of rows times the square size, in pixels
+     */
+    public int getImageHeight() {
+        return layout.getRows() * squareSize;
+    }
+}
@@ -0,0 +1,366 @@
+package de.nrq.image;
+
+import de.nrq.core.buffer.ScratchBuffers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Renders BMP palette previews for a fixed {@link BmpConfig}.
+ * Encoders hold no mutable state, so one instance can be shared by any number of threads;
+ * rows are assembled in the calling thread's {@link ScratchBuffers}. All pixel rows of a
+ * square row are identical, so each is filled once and then copied.
+ */
+public final class BmpEncoder {
+    /**
+     * Encoder for {@link BmpConfig#DEFAULT}.
+     */
+    public static final BmpEncoder DEFAULT = new BmpEncoder(BmpConfig.DEFAULT);
+
+    private static final int TOTAL_COLORS = 64;
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final BmpConfig config;
+    private final BmpHeader header;
+    private final int bytesPerPixel;
+    private final int rowSize;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param config The preview settings
+     * @throws IllegalArgumentException if the image would be too large for the BMP format
+     */
+    public BmpEncoder(BmpConfig config) {
+        this.config = config;
+        this.header = BmpHeader.of(config.getImageWidth(), config.getImageHeight(), config.bitsPerPixel());
+        this.bytesPerPixel = header.getBytesPerPixel();
+        this.rowSize = header.getRowSize();
+        if (header.getFileSize() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Square size " + config.squareSize() + " is too large for a preview");
+        }
+    }
+
+    /**
+     * Gets the settings of this encoder.
+     *
+     * @return The preview settings
+     */
+    public BmpConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Gets the size of the encoded image.
+     *
+     * @return The BMP file size in bytes
+     */
+    public int getEncodedSize() {
+        return (int) header.getFileSize();
+    }
+
+    /**
+     * Encodes a preview into a new byte array.
+     *
+     * @param colors Array of 64 colors in integer format
+     * @return The BMP file content
+     * @throws IllegalArgumentException if colors array is invalid
+     */
+    public byte[] toBytes(int[] colors) {
+        byte[] data = new byte[getEncodedSize()];
+        encode(colors, ByteBuffer.wrap(data));
+        return data;
+    }
+
+    /**
+     * Encodes a preview into a buffer at its position, advancing the position past the image.
+     *
+     * @param colors Array of 64 colors in integer format
+     * @param target Buffer with at least {@link #getEncodedSize()} bytes remaining
+     * @throws IllegalArgumentException if colors array is invalid or the buffer is too small
+     */
+    public void encode(int[] colors, ByteBuffer target) {
+        encode(wrap(colors), target);
+    }
+
+    /**
+     * Encodes a preview of the colors in a buffer into another buffer at its position,
+     * advancing the target's position past the image. The colors are read from the
+     * color buffer's position; that position is not modified.
+     *
+     * @param colors Buffer with exactly 64 remaining colors in integer format
+     * @param target Buffer with at least {@link #getEncodedSize()} bytes remaining
+     * @throws IllegalArgumentException if the color buffer doesn't hold exactly 64 colors or the target is too small
+     */
+    public void encode(IntBuffer colors, ByteBuffer target) {
+        validateColors(colors);
+        if (target.remaining() < getEncodedSize()) {
+            throw new IllegalArgumentException(String.format(
+                    "Buffer has %d bytes remaining, the image needs %d", target.remaining(), getEncodedSize()));
+        }
+
+        header.write(target);
+        int squareSize = config.squareSize();
+        // Write pixel data (bottom-up, padded rows)
+        for (int squareRow = config.layout().getRows() - 1; squareRow >= 0; squareRow--) {
+            int first = target.position();
+            if (target.hasArray()) {
+                fillRow(target.array(), target.arrayOffset() + first, colors, squareRow);
+            } else {
+                byte[] row = ScratchBuffers.get().bytes(rowSize).array();
+                fillRow(row, 0, colors, squareRow);
+                target.put(first, row, 0, rowSize);
+            }
+            for (int y = 1; y < squareSize; y++) {
+                target.put(first + y * rowSize, target, first, rowSize);
+            }
+            target.position(first + squareSize * rowSize);
+        }
+    }
+
+    /**
+     * Encodes a preview to a channel.
+     *
+     * @param colors Array of 64 colors in integer format
+     * @param out    The channel to write to; it is not closed
+     * @throws IOException              if there's an error writing to the channel
+     * @throws IllegalArgumentException if colors array is invalid
+     */
+    public void encode(int[] colors, WritableByteChannel out) throws IOException {
+        encode(wrap(colors), out);
+    }
+
+    /**
+     * Encodes a preview of the colors in a buffer to a channel.
+     * The colors are read from the buffer's position; the position is not modified.
+     *
+     * @param colors Buffer with exactly 64 remaining colors in integer format
+     * @param out    The channel to write to; it is not closed
+     * @throws IOException              if there's an error writing to the channel
+     * @throws IllegalArgumentException if the buffer doesn't hold exactly 64 colors
+     */
+    public void encode(IntBuffer colors, WritableByteChannel out) throws IOException {
+        validateColors(colors);
+        ByteBuffer chunk = ScratchBuffers.get().bytes(Math.max(BmpHeader.SIZE, getChunkRows() * rowSize));
+        header.write(chunk);
+        writeFully(out, chunk.flip());
+
+        int squareSize = config.squareSize();
+        for (int squareRow = config.layout().getRows() - 1; squareRow >= 0; squareRow--) {
+            int rows = fillChunk(chunk.array(), colors, squareRow);
+            for (int y = 0; y < squareSize; y += rows) {
+                chunk.clear().limit(Math.min(rows, squareSize - y) * rowSize);
+                writeFully(out, chunk);
+            }
+        }
+    }
+
+    /**
+     * Encodes a preview to a stream.
+     *
+     * @param colors Array of 64 colors in integer format
+     * @param out    The stream to write to; it is not closed
+     * @throws IOException              if there's an error writing to the stream
+     * @throws IllegalArgumentException if colors array is invalid
+     */
+    public void encode(int[] colors, OutputStream out) throws IOException {
+        encode(wrap(colors), out);
+    }
+
+    /**
+     * Encodes a preview of the colors in a buffer to a stream.
+     * Accepts views into a {@link de.nrq.core.store.PaletteStore} without copying.
+     * The colors are read from the buffer's position; the position is not modified.
+     *
+     * @param colors Buffer with exactly 64 remaining colors in integer format
+     * @param out    The stream to write to; it is not closed
+     * @throws IOException              if there's an error writing to the stream
+     * @throws IllegalArgumentException if the buffer doesn't hold exactly 64 colors
+     */
+    public void encode(IntBuffer colors, OutputStream out) throws IOException {
+        validateColors(colors);
+        byte[] chunk = ScratchBuffers.get().bytes(Math.max(BmpHeader.SIZE, getChunkRows() * rowSize)).array();
+        header.write(ByteBuffer.wrap(chunk));
+        out.write(chunk, 0, BmpHeader.SIZE);
+
+        int squareSize = config.squareSize();
+        for (int squareRow = config.layout().getRows() - 1; squareRow >= 0; squareRow--) {
+            int rows = fillChunk(chunk, colors, squareRow);
+            for (int y = 0; y < squareSize; y += rows) {
+                out.write(chunk, 0, Math.min(rows, squareSize - y) * rowSize);
+            }
+        }
+    }
+
+    /**
+     * Encodes a preview to a file, replacing existing content.
+     *
+     * @param colors Array of 64 colors in integer format
+     * @param file   The file to write
+     * @throws IOException              if there's an error writing the file
+     * @throws IllegalArgumentException if colors array is invalid
+     */
+    public void encode(int[] colors, Path file) throws IOException {
+        validateColors(wrap(colors));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            encode(colors, channel);
+        }
+    }
+
+    /**
+     * Updates a BMP preview previously written with these settings in place.
+     * The header is validated, the current color of each square is sampled from its
+     * center pixel, and only the squares whose color differs are rewritten, one row
+     * segment at a time with positional writes. The cost depends on the number of
+     * changed colors, not on the image size.
+     *
+     * @param colors Array of the new colors in integer format
+     * @param file   An existing preview with this encoder's settings
+     * @return The number of squares that were rewritten
+     * @throws IOException              if the file can't be read or written
+     * @throws IllegalArgumentException if colors array is invalid, or the file is not an
+     *                                  uncompressed preview of this encoder's size and depth
+     */
+    public int update(int[] colors, Path file) throws IOException {
+        validateColors(wrap(colors));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer headerData = ByteBuffer.allocate(BmpHeader.SIZE);
+            readFully(channel, headerData, 0);
+            BmpHeader existing = BmpHeader.read(headerData.flip());
+            if (existing.getBitsPerPixel() != config.bitsPerPixel() || existing.getWidth() != config.getImageWidth()
+                    || existing.getHeight() != config.getImageHeight()) {
+                throw new IllegalArgumentException(String.format(
+                        "Cannot update %s in place: expected a %dx%d %d-bit preview, found %dx%d with %d bits",
+                        file, config.getImageWidth(), config.getImageHeight(), config.bitsPerPixel(),
+                        existing.getWidth(), existing.getHeight(), existing.getBitsPerPixel()));
+            }
+            if (channel.size() < existing.getFileSize()) {
+                throw new IllegalArgumentException("Cannot update " + file + " in place: pixel data is truncated");
+            }
+
+            int squareSize = config.squareSize();
+            int columns = config.layout().getColumns();
+            ByteBuffer pixel = ByteBuffer.allocate(3);
+            byte[] segment = new byte[squareSize * bytesPerPixel];
+            int changed = 0;
+            for (int i = 0; i < TOTAL_COLORS; i++) {
+                int left = (i % columns) * squareSize;
+                int top = (i / columns) * squareSize;
+
+                pixel.clear();
+                readFully(channel, pixel, existing.getRowOffset(top + squareSize / 2)
+                        + (long) (left + squareSize / 2) * bytesPerPixel);
+                int current = ((pixel.get(2) & 0xFF) << 16) | ((pixel.get(1) & 0xFF) << 8) | (pixel.get(0) & 0xFF);
+                if (current == (colors[i] & 0xFFFFFF)) {
+                    continue;
+                }
+
+                for (int pos = 0; pos < segment.length; pos += bytesPerPixel) {
+                    putPixel(segment, pos, colors[i]);
+                }
+                ByteBuffer data = ByteBuffer.wrap(segment);
+                for (int y = top; y < top + squareSize; y++) {
+                    writeFully(channel, data.clear(), existing.getRowOffset(y) + (long) left * bytesPerPixel);
+                }
+                changed++;
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Gets the number of identical rows assembled at once for stream and channel output.
+     */
+    private int getChunkRows() {
+        return Math.max(1, Math.min(config.squareSize(), CHUNK_SIZE / rowSize));
+    }
+
+    /**
+     * Fills the start of a chunk with copies of the pixel rows of one square row.
+     *
+     * @return The number of rows in the chunk
+     */
+    private int fillChunk(byte[] chunk, IntBuffer colors, int squareRow) {
+        int rows = getChunkRows();
+        fillRow(chunk, 0, colors, squareRow);
+        for (int y = 1; y < rows; y++) {
+            System.arraycopy(chunk, 0, chunk, y * rowSize, rowSize);
+        }
+        return rows;
+    }
+
+    /**
+     * Fills one pixel row of a square row, including the padding.
+     * Handles the BGR color order required by BMP format.
+     */
+    private void fillRow(byte[] row, int offset, IntBuffer colors, int squareRow) {
+        int base = colors.position() + squareRow * config.layout().getColumns();
+        int squareBytes = config.squareSize() * bytesPerPixel;
+        int pos = offset;
+        for (int column = 0; column < config.layout().getColumns(); column++) {
+            int color = colors.get(base + column);
+            int end = pos + squareBytes;
+            for (; pos < end; pos += bytesPerPixel) {
+                putPixel(row, pos, color);
+            }
+        }
+        // The row buffer may hold older content, so the padding is cleared explicitly
+        for (; pos < offset + rowSize; pos++) {
+            row[pos] = 0;
+        }
+    }
+
+    private void putPixel(byte[] data, int pos, int color) {
+        data[pos] = (byte) (color & 0xFF);              // Blue
+        data[pos + 1] = (byte) ((color >> 8) & 0xFF);   // Green
+        data[pos + 2] = (byte) ((color >> 16) & 0xFF);  // Red
+        if (bytesPerPixel == 4) {
+            data[pos + 3] = 0;
+        }
+    }
+
+    private static IntBuffer wrap(int[] colors) {
+        if (colors == null) {
+            throw new IllegalArgumentException("Colors array cannot be null");
+        }
+        return IntBuffer.wrap(colors);
+    }
+
+    private static void validateColors(IntBuffer colors) {
+        if (colors.remaining() != TOTAL_COLORS) {
+            throw new IllegalArgumentException(
+                    String.format("Colors array must contain exactly %d colors", TOTAL_COLORS)
+            );
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IllegalArgumentException("Invalid BMP file: unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
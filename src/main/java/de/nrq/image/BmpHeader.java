@@ -0,0 +1,245 @@
+package de.nrq.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The file and DIB header of an uncompressed BMP image.
+ * Used both for writing the images produced by {@link BmpBuilder} and for
+ * reading 24-bit or 32-bit bitmaps without decoding their pixel data.
+ */
+public final class BmpHeader {
+    /**
+     * Size of the file header plus the 40-byte BITMAPINFOHEADER written by this tool.
+     */
+    public static final int SIZE = 54;
+
+    private static final int FILE_HEADER_SIZE = 14;
+    private static final int INFO_HEADER_SIZE = 40;
+    private static final int PIXELS_PER_METER = 2835;  // 72 DPI
+
+    private final int width;
+    private final int height;
+    private final boolean topDown;
+    private final int bitsPerPixel;
+    private final int pixelOffset;
+
+    private BmpHeader(int width, int height, boolean topDown, int bitsPerPixel, int pixelOffset) {
+        this.width = width;
+        this.height = height;
+        this.topDown = topDown;
+        this.bitsPerPixel = bitsPerPixel;
+        this.pixelOffset = pixelOffset;
+    }
+
+    /**
+     * Creates the header of a bottom-up 24-bit image as written by this tool.
+     *
+     * @param width  Image width in pixels
+     * @param height Image height in pixels
+     * @return The header
+     * @throws IllegalArgumentException if a dimension is not positive or the file would exceed 4 GB
+     */
+    public static BmpHeader of(int width, int height) {
+        return of(width, height, 24);
+    }
+
+    /**
+     * Creates the header of a bottom-up image with the given color depth.
+     * 32-bit pixels are stored as BGRX with an unused fourth byte.
+     *
+     * @param width        Image width in pixels
+     * @param height       Image height in pixels
+     * @param bitsPerPixel 24 or 32
+     * @return The header
+     * @throws IllegalArgumentException if a dimension is not positive, the depth is unsupported
+     *                                  or the file would exceed 4 GB
+     */
+    public static BmpHeader of(int width, int height, int bitsPerPixel) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Image dimensions must be at least 1 pixel");
+        }
+        if (bitsPerPixel != 24 && bitsPerPixel != 32) {
+            throw new IllegalArgumentException(String.format(
+                    "Unsupported BMP color depth %d. Only 24-bit and 32-bit images are supported.", bitsPerPixel));
+        }
+        BmpHeader header = new BmpHeader(width, height, false, bitsPerPixel, SIZE);
+        if (header.getFileSize() > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Image is too large for the BMP format");
+        }
+        return header;
+    }
+
+    /**
+     * Reads a header from the start of a BMP file.
+     * Accepts uncompressed 24-bit and 32-bit images with any DIB header version
+     * of at least 40 bytes, stored bottom-up or top-down.
+     *
+     * @param buffer Buffer holding at least the first {@value #SIZE} bytes of the file, starting at its position
+     * @return The parsed header
+     * @throws IllegalArgumentException if the data is not a supported BMP image
+     */
+    public static BmpHeader read(ByteBuffer buffer) {
+        if (buffer.remaining() < SIZE) {
+            throw new IllegalArgumentException("Invalid BMP file: header is truncated");
+        }
+        ByteBuffer header = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        if (header.get(0) != 'B' || header.get(1) != 'M') {
+            throw new IllegalArgumentException("Invalid BMP file: missing BM signature");
+        }
+        int pixelOffset = header.getInt(10);
+        int infoSize = header.getInt(14);
+        int width = header.getInt(18);
+        int height = header.getInt(22);
+        int planes = header.getShort(26);
+        int bitsPerPixel = header.getShort(28);
+        int compression = header.getInt(30);
+
+        if (infoSize < INFO_HEADER_SIZE || planes != 1) {
+            throw new IllegalArgumentException("Invalid BMP file: unsupported DIB header");
+        }
+        if (bitsPerPixel != 24 && bitsPerPixel != 32) {
+            throw new IllegalArgumentException(
+                    String.format("Unsupported BMP color depth %d. Only 24-bit and 32-bit images are supported.", bitsPerPixel)
+            );
+        }
+        if (compression != 0) {
+            throw new IllegalArgumentException("Unsupported BMP compression. Only uncompressed images are supported.");
+        }
+        if (width < 1 || height == 0 || height == Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Invalid BMP file: image has no pixels");
+        }
+        if (pixelOffset < FILE_HEADER_SIZE + infoSize) {
+            throw new IllegalArgumentException("Invalid BMP file: pixel data overlaps header");
+        }
+        return new BmpHeader(width, Math.abs(height), height < 0, bitsPerPixel, pixelOffset);
+    }
+
+    /**
+     * Writes this header in the 54-byte layout with a BITMAPINFOHEADER.
+     *
+     * @param buffer Buffer to write to at its current position; its byte order is left unchanged
+     */
+    public void write(ByteBuffer buffer) {
+        ByteBuffer out = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+
+        // Bitmap file header (14 bytes)
+        out.put((byte) 'B');                         // Signature
+        out.put((byte) 'M');                         // Signature
+        out.putInt((int) getFileSize());             // File size
+        out.putInt(0);                               // Reserved
+        out.putInt(pixelOffset);                     // Offset to pixel data
+
+        // DIB header (40 bytes)
+        out.putInt(INFO_HEADER_SIZE);                // Header size
+        out.putInt(width);                           // Image width
+        out.putInt(topDown ? -height : height);      // Image height
+        out.putShort((short) 1);                     // Number of color planes
+        out.putShort((short) bitsPerPixel);          // Bits per pixel
+        out.putInt(0);                               // Compression (none)
+        out.putInt((int) getImageSize());            // Image size
+        out.putInt(PIXELS_PER_METER);                // Horizontal resolution (72 DPI)
+        out.putInt(PIXELS_PER_METER);                // Vertical resolution (72 DPI)
+        out.putInt(0);                               // Number of colors in palette
+        out.putInt(0);                               // Number of important colors
+
+        buffer.position(buffer.position() + SIZE);
+    }
+
+    /**
+     * Creates the header bytes.
+     *
+     * @return A new array of {@value #SIZE} bytes
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        write(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Gets the image width.
+     *
+     * @return The width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the image height, regardless of the row order.
+     *
+     * @return The height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the color depth.
+     *
+     * @return 24 or 32
+     */
+    public int getBitsPerPixel() {
+        return bitsPerPixel;
+    }
+
+    /**
+     * Gets the number of bytes per pixel in a row.
+     *
+     * @return 3 or 4
+     */
+    public int getBytesPerPixel() {
+        return bitsPerPixel / 8;
+    }
+
+    /**
+     * Gets the offset of the pixel data from the start of the file.
+     *
+     * @return The byte offset of the first stored row
+     */
+    public int getPixelOffset() {
+        return pixelOffset;
+    }
+
+    /**
+     * Gets the size of one pixel row in bytes.
+     * BMP rows are padded to multiples of 4 bytes.
+     *
+     * @return The padded row size
+     */
+    public int getRowSize() {
+        return (int) (((long) width * bitsPerPixel + 31) / 32 * 4);
+    }
+
+    /**
+     * Gets the size of the pixel data in bytes.
+     *
+     * @return The row size times the height
+     */
+    public long getImageSize() {
+        return (long) getRowSize() * height;
+    }
+
+    /**
+     * Gets the total file size in bytes.
+     *
+     * @return The pixel offset plus the image size
+     */
+    public long getFileSize() {
+        return pixelOffset + getImageSize();
+    }
+
+    /**
+     * Gets the file offset of an image row, counting rows from the top of the image.
+     * Takes care of the bottom-up row order of regular bitmaps.
+     *
+     * @param y Row index from the top (0 to height - 1)
+     * @return Byte offset of the row's first pixel in the file
+     */
+    public long getRowOffset(int y) {
+        int storedRow = topDown ? y : height - 1 - y;
+        return pixelOffset + (long) storedRow * getRowSize();
+    }
+}
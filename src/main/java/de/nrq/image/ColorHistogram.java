@@ -0,0 +1,169 @@
+package de.nrq.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+/**
+ * Histogram of the colors of an image, quantized to 5 or 6 bits per channel.
+ * Built in a single pass over the pixel data, reading the file in bands of rows
+ * so memory stays bounded regardless of image size. Each band is counted in
+ * parallel stripes, every stripe owning a private histogram that is merged at the end.
+ */
+public final class ColorHistogram {
+    private static final int BAND_BYTES = 4 * 1024 * 1024;
+
+    private final int bitsPerChannel;
+    private final int[] counts;
+
+    private ColorHistogram(int bitsPerChannel, int[] counts) {
+        this.bitsPerChannel = bitsPerChannel;
+        this.counts = counts;
+    }
+
+    /**
+     * Counts the colors of a 24-bit or 32-bit BMP image.
+     *
+     * @param bmpFile        The image to read
+     * @param bitsPerChannel Quantization per channel, 5 (15-bit) or 6 (18-bit)
+     * @return The histogram
+     * @throws IOException              If the file can't be read
+     * @throws IllegalArgumentException if the image format or bit depth is not supported
+     */
+    public static ColorHistogram fromBmp(Path bmpFile, int bitsPerChannel) throws IOException {
+        if (bitsPerChannel != 5 && bitsPerChannel != 6) {
+            throw new IllegalArgumentException("Histogram resolution must be 15 or 18 bits");
+        }
+
+        try (FileChannel channel = FileChannel.open(bmpFile, StandardOpenOption.READ)) {
+            ByteBuffer headerBuffer = ByteBuffer.allocate(BmpHeader.SIZE);
+            readFully(channel, headerBuffer, 0);
+            BmpHeader header = BmpHeader.read(headerBuffer.flip());
+
+            int rowSize = header.getRowSize();
+            if (channel.size() < header.getFileSize()) {
+                throw new IllegalArgumentException("Invalid BMP file: pixel data is truncated");
+            }
+
+            int stripes = Runtime.getRuntime().availableProcessors();
+            int[][] stripeCounts = new int[stripes][1 << (3 * bitsPerChannel)];
+            int bandRows = Math.max(1, BAND_BYTES / rowSize);
+            ByteBuffer band = ByteBuffer.allocate(bandRows * rowSize);
+
+            // Row order doesn't matter for a histogram, so the file is read front to back
+            for (int firstRow = 0; firstRow < header.getHeight(); firstRow += bandRows) {
+                int rows = Math.min(bandRows, header.getHeight() - firstRow);
+                band.clear().limit(rows * rowSize);
+                readFully(channel, band, header.getPixelOffset() + (long) firstRow * rowSize);
+
+                byte[] data = band.array();
+                IntStream.range(0, stripes).parallel().forEach(stripe -> {
+                    int from = (int) ((long) rows * stripe / stripes);
+                    int to = (int) ((long) rows * (stripe + 1) / stripes);
+                    countRows(data, from, to, rowSize, header, bitsPerChannel, stripeCounts[stripe]);
+                });
+            }
+
+            return new ColorHistogram(bitsPerChannel, merge(stripeCounts));
+        }
+    }
+
+    /**
+     * Gets the number of bins along each channel.
+     *
+     * @return 32 for 15-bit or 64 for 18-bit histograms
+     */
+    public int getLevels() {
+        return 1 << bitsPerChannel;
+    }
+
+    /**
+     * Gets the number of pixels that fell into a bin.
+     *
+     * @param bin Bin index as returned by {@link #binOf(int)}
+     * @return The pixel count
+     */
+    public int count(int bin) {
+        return counts[bin];
+    }
+
+    /**
+     * Gets the total number of bins.
+     *
+     * @return The number of bins
+     */
+    public int size() {
+        return counts.length;
+    }
+
+    /**
+     * Gets the bin a color falls into.
+     *
+     * @param color Color in 0xRRGGBB format
+     * @return The bin index
+     */
+    public int binOf(int color) {
+        return quantize((color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF, bitsPerChannel);
+    }
+
+    /**
+     * Gets the color at the center of a bin.
+     *
+     * @param bin Bin index
+     * @return Color in 0xRRGGBB format
+     */
+    public int colorOf(int bin) {
+        int mask = getLevels() - 1;
+        int shift = 8 - bitsPerChannel;
+        int half = 1 << (shift - 1);
+        int r = ((bin >> (2 * bitsPerChannel)) & mask) << shift | half;
+        int g = ((bin >> bitsPerChannel) & mask) << shift | half;
+        int b = (bin & mask) << shift | half;
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static void countRows(byte[] data, int fromRow, int toRow, int rowSize, BmpHeader header,
+                                  int bitsPerChannel, int[] counts) {
+        int bytesPerPixel = header.getBytesPerPixel();
+        int rowBytes = header.getWidth() * bytesPerPixel;
+        for (int row = fromRow; row < toRow; row++) {
+            int end = row * rowSize + rowBytes;
+            for (int pos = row * rowSize; pos < end; pos += bytesPerPixel) {
+                // BMP stores BGR
+                int b = data[pos] & 0xFF;
+                int g = data[pos + 1] & 0xFF;
+                int r = data[pos + 2] & 0xFF;
+                counts[quantize(r, g, b, bitsPerChannel)]++;
+            }
+        }
+    }
+
+    private static int quantize(int r, int g, int b, int bitsPerChannel) {
+        int shift = 8 - bitsPerChannel;
+        return ((r >> shift) << (2 * bitsPerChannel)) | ((g >> shift) << bitsPerChannel) | (b >> shift);
+    }
+
+    private static int[] merge(int[][] stripeCounts) {
+        int[] merged = stripeCounts[0];
+        for (int s = 1; s < stripeCounts.length; s++) {
+            int[] counts = stripeCounts[s];
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += counts[i];
+            }
+        }
+        return merged;
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IllegalArgumentException("Invalid BMP file: unexpected end of file");
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package de.nrq.image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+/**
+ * Maps images to the colors of a palette with dithering, to judge how a palette renders
+ * gradients. Two methods are supported:
+ * - Floyd-Steinberg error diffusion, parallelized with a diagonal wavefront: rows are dealt
+ *   out round-robin to the workers, and a row advances in blocks of columns as soon as the
+ *   row above is two pixels ahead, which is all the diffusion kernel depends on.
+ * - Ordered dithering with an 8x8 Bayer matrix, where every pixel is independent, so rows
+ *   are simply processed in parallel.
+ * <p>
+ * Errors are kept as integers in sixteenths, in two scanline buffers per worker: one
+ * receiving the errors for the worker's current row and one for its next row.
+ */
+public class PaletteDitherer {
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int BLOCK = 64;
+    private static final int SPINS = 100;
+    private static final int[] BAYER = createBayer();
+    private static final int ORDERED_SPREAD = 32;
+
+    /**
+     * Dithering methods.
+     */
+    public enum Method {
+        FLOYD_STEINBERG,
+        ORDERED;
+
+        /**
+         * Determines the method by name, as given on the command line.
+         * Accepts "floyd", "fs" and "ordered", case-insensitive.
+         *
+         * @param name The method name
+         * @return The matching method
+         * @throws IllegalArgumentException if there is no method of that name
+         */
+        public static Method fromName(String name) {
+            return switch (name.toLowerCase()) {
+                case "floyd", "fs", "floyd_steinberg", "floyd-steinberg" -> FLOYD_STEINBERG;
+                case "ordered", "bayer" -> ORDERED;
+                default -> throw new IllegalArgumentException("Unknown dithering method: " + name);
+            };
+        }
+    }
+
+    private final int[] colors;
+    private final Method method;
+    private final int threads;
+
+    /**
+     * Creates a ditherer for a palette.
+     *
+     * @param palette Colors in 0xRRGGBB format to map to; duplicates are ignored
+     * @param method  The dithering method
+     * @param threads Number of worker threads, at least 1
+     * @throws IllegalArgumentException if the palette is empty or the thread count is out of range
+     */
+    public PaletteDitherer(int[] palette, Method method, int threads) {
+        if (palette == null || palette.length == 0) {
+            throw new IllegalArgumentException("Palette cannot be empty");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        }
+        this.colors = Arrays.stream(palette).map(color -> color & 0xFFFFFF).distinct().toArray();
+        this.method = method;
+        this.threads = threads;
+    }
+
+    /**
+     * Dithers a BMP image and writes the result as a 24-bit BMP in the format of {@link BmpBuilder}.
+     *
+     * @param inputFile  An uncompressed 24-bit or 32-bit BMP image
+     * @param outputFile The BMP file to create or overwrite
+     * @throws IOException              If the files can't be read or written
+     * @throws IllegalArgumentException if the input is not a supported BMP image
+     */
+    public void dither(Path inputFile, Path outputFile) throws IOException {
+        BmpHeader header;
+        int[] pixels;
+        try (FileChannel channel = FileChannel.open(inputFile, StandardOpenOption.READ)) {
+            ByteBuffer headerData = ByteBuffer.allocate(BmpHeader.SIZE);
+            readFully(channel, headerData, 0);
+            header = BmpHeader.read(headerData.flip());
+            if (channel.size() < header.getFileSize()) {
+                throw new IllegalArgumentException("Invalid BMP file: pixel data is truncated");
+            }
+            if ((long) header.getWidth() * header.getHeight() > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Image is too large to dither");
+            }
+            pixels = readPixels(channel, header);
+        }
+
+        int width = header.getWidth();
+        int height = header.getHeight();
+        int[] result = dither(pixels, width, height);
+
+        BmpHeader output = BmpHeader.of(width, height);
+        int rowSize = output.getRowSize();
+        try (FileChannel channel = FileChannel.open(outputFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.wrap(output.toBytes()));
+            ByteBuffer row = ByteBuffer.allocate(rowSize);
+            // Write pixel data (bottom-up, padded rows)
+            for (int y = height - 1; y >= 0; y--) {
+                byte[] data = row.clear().array();
+                for (int x = 0; x < width; x++) {
+                    int color = result[y * width + x];
+                    data[x * BYTES_PER_PIXEL] = (byte) (color & 0xFF);              // Blue
+                    data[x * BYTES_PER_PIXEL + 1] = (byte) ((color >> 8) & 0xFF);   // Green
+                    data[x * BYTES_PER_PIXEL + 2] = (byte) ((color >> 16) & 0xFF);  // Red
+                }
+                writeFully(channel, row);
+            }
+        }
+    }
+
+    /**
+     * Dithers an image in memory.
+     *
+     * @param pixels Colors in 0xRRGGBB format, row by row from the top
+     * @param width  Image width in pixels
+     * @param height Image height in pixels
+     * @return A new array of palette colors in the same layout
+     * @throws IllegalArgumentException if the array doesn't match the dimensions
+     */
+    public int[] dither(int[] pixels, int width, int height) {
+        if (width < 1 || height < 1 || (long) width * height != pixels.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Pixel array of %d entries doesn't match %dx%d", pixels.length, width, height));
+        }
+        return switch (method) {
+            case FLOYD_STEINBERG -> diffuse(pixels, width, height);
+            case ORDERED -> order(pixels, width, height);
+        };
+    }
+
+    /**
+     * Floyd-Steinberg error diffusion on a diagonal wavefront.
+     * Pixel (x, y) receives error from (x - 1, y) and from (x - 1 .. x + 1, y - 1), so row y
+     * may process pixel x once row y - 1 has finished pixel x + 1.
+     */
+    private int[] diffuse(int[] pixels, int width, int height) {
+        int[] result = new int[pixels.length];
+        int workers = Math.min(threads, height);
+        AtomicIntegerArray progress = new AtomicIntegerArray(height);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Two scanlines per worker, with a border entry on each side; rows alternate between them
+        int[][] errors = new int[workers * 2][BYTES_PER_PIXEL * (width + 2)];
+
+        Runnable[] tasks = new Runnable[workers];
+        for (int w = 0; w < workers; w++) {
+            int worker = w;
+            tasks[w] = () -> {
+                try {
+                    for (int y = worker; y < height; y += workers) {
+                        int[] current = errors[buffer(y, workers)];
+                        int[] next = y + 1 < height ? errors[buffer(y + 1, workers)] : null;
+                        if (!diffuseRow(pixels, result, width, y, current, next, progress, failure)) {
+                            return;
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            };
+        }
+        runAll(tasks);
+
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException runtime) {
+            throw runtime;
+        } else if (error != null) {
+            throw new IllegalStateException("Dithering failed", error);
+        }
+        return result;
+    }
+
+    private static int buffer(int y, int workers) {
+        return (y % workers) * 2 + (y / workers) % 2;
+    }
+
+    /**
+     * Diffuses one row.
+     *
+     * @return false if another worker failed and the row was abandoned
+     */
+    private boolean diffuseRow(int[] pixels, int[] result, int width, int y, int[] current, int[] next,
+                               AtomicIntegerArray progress, AtomicReference<Throwable> failure) {
+        int carryR = 0;
+        int carryG = 0;
+        int carryB = 0;
+        for (int blockStart = 0; blockStart < width; blockStart += BLOCK) {
+            int blockEnd = Math.min(width, blockStart + BLOCK);
+            if (y > 0) {
+                int needed = Math.min(width, blockEnd + 1);
+                for (int spins = 0; progress.get(y - 1) < needed; spins++) {
+                    if (failure.get() != null) {
+                        return false;
+                    }
+                    // Rows run nearly in lockstep, so spin briefly before giving up the core
+                    if (spins < SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }
+
+            for (int x = blockStart; x < blockEnd; x++) {
+                int i = BYTES_PER_PIXEL * (x + 1);
+                int pixel = pixels[y * width + x];
+                int r = clamp(((pixel >> 16) & 0xFF) + ((current[i] + carryR + 8) >> 4));
+                int g = clamp(((pixel >> 8) & 0xFF) + ((current[i + 1] + carryG + 8) >> 4));
+                int b = clamp((pixel & 0xFF) + ((current[i + 2] + carryB + 8) >> 4));
+                // Consume the incoming error, so the buffer is clean when it is reused
+                current[i] = 0;
+                current[i + 1] = 0;
+                current[i + 2] = 0;
+
+                int color = nearest(r, g, b);
+                result[y * width + x] = color;
+                int errorR = r - ((color >> 16) & 0xFF);
+                int errorG = g - ((color >> 8) & 0xFF);
+                int errorB = b - (color & 0xFF);
+
+                carryR = errorR * 7;
+                carryG = errorG * 7;
+                carryB = errorB * 7;
+                if (next != null) {
+                    spread(next, i - BYTES_PER_PIXEL, errorR * 3, errorG * 3, errorB * 3);
+                    spread(next, i, errorR * 5, errorG * 5, errorB * 5);
+                    spread(next, i + BYTES_PER_PIXEL, errorR, errorG, errorB);
+                }
+            }
+            progress.set(y, blockEnd);
+        }
+
+        // The border entries are written by the row above but never read
+        Arrays.fill(current, 0, BYTES_PER_PIXEL, 0);
+        Arrays.fill(current, current.length - BYTES_PER_PIXEL, current.length, 0);
+        return true;
+    }
+
+    private static void spread(int[] errors, int i, int r, int g, int b) {
+        errors[i] += r;
+        errors[i + 1] += g;
+        errors[i + 2] += b;
+    }
+
+    /**
+     * Ordered dithering; every pixel only depends on its position, so rows run in parallel.
+     */
+    private int[] order(int[] pixels, int width, int height) {
+        int[] result = new int[pixels.length];
+        IntStream.range(0, height).parallel().forEach(y -> {
+            for (int x = 0; x < width; x++) {
+                // Threshold from -ORDERED_SPREAD / 2 to just below ORDERED_SPREAD / 2
+                int offset = (BAYER[(y & 7) * 8 + (x & 7)] * ORDERED_SPREAD + ORDERED_SPREAD / 2) / 64
+                        - ORDERED_SPREAD / 2;
+                int pixel = pixels[y * width + x];
+                result[y * width + x] = nearest(clamp(((pixel >> 16) & 0xFF) + offset),
+                        clamp(((pixel >> 8) & 0xFF) + offset), clamp((pixel & 0xFF) + offset));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Finds the palette color closest to an RGB value by squared Euclidean distance.
+     */
+    private int nearest(int r, int g, int b) {
+        int best = colors[0];
+        int bestDistance = Integer.MAX_VALUE;
+        for (int color : colors) {
+            int dr = r - ((color >> 16) & 0xFF);
+            int dg = g - ((color >> 8) & 0xFF);
+            int db = b - (color & 0xFF);
+            int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = color;
+            }
+        }
+        return best;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+
+    /**
+     * Runs the tasks on their own threads, since every worker may wait for the others.
+     */
+    private static void runAll(Runnable[] tasks) {
+        Thread[] workers = new Thread[tasks.length - 1];
+        for (int w = 0; w < workers.length; w++) {
+            workers[w] = Thread.ofPlatform().name("dither-" + (w + 1)).start(tasks[w + 1]);
+        }
+        tasks[0].run();
+        for (Thread worker : workers) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int[] readPixels(FileChannel channel, BmpHeader header) throws IOException {
+        int width = header.getWidth();
+        int height = header.getHeight();
+        int bytesPerPixel = header.getBytesPerPixel();
+        int[] pixels = new int[width * height];
+        ByteBuffer row = ByteBuffer.allocate(width * bytesPerPixel);
+        for (int y = 0; y < height; y++) {
+            row.clear();
+            readFully(channel, row, header.getRowOffset(y));
+            byte[] data = row.array();
+            for (int x = 0, pos = 0; x < width; x++, pos += bytesPerPixel) {
+                // BMP stores BGR
+                pixels[y * width + x] = ((data[pos + 2] & 0xFF) << 16) | ((data[pos + 1] & 0xFF) << 8)
+                        | (data[pos] & 0xFF);
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Builds the 8x8 Bayer threshold matrix with values from 0 to 63.
+     */
+    private static int[] createBayer() {
+        int[] matrix = new int[64];
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int value = 0;
+                for (int bit = 0; bit < 3; bit++) {
+                    int xBit = (x >> bit) & 1;
+                    int yBit = (y >> bit) & 1;
+                    value |= ((xBit ^ yBit) << (5 - 2 * bit)) | (yBit << (4 - 2 * bit));
+                }
+                matrix[y * 8 + x] = value;
+            }
+        }
+        return matrix;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IllegalArgumentException("Invalid BMP file: unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package de.nrq.image;
+
+import de.nrq.core.color.ColorArrangement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Derives a 64-color palette from an image.
+ * Colors are counted into a {@link ColorHistogram}, reduced to 56 representatives by
+ * median cut and then refined with a few weighted k-means passes over the histogram bins.
+ * The result is in PAL order with the 8 slots reserved by {@link ColorArrangement} set to black.
+ */
+public class PaletteExtractor {
+    private static final int TOTAL_COLORS = 64;
+    private static final int EXTRACTED_COLORS = 56;  // Everything except the 8 black slots
+    private static final int KMEANS_PASSES = 4;
+    private static final int BINS_PER_CHUNK = 4096;
+
+    private final int bitsPerChannel;
+
+    /**
+     * Creates an extractor with the given histogram resolution.
+     *
+     * @param histogramBits Total bits of the color histogram, 15 or 18
+     * @throws IllegalArgumentException if the resolution is not supported
+     */
+    public PaletteExtractor(int histogramBits) {
+        if (histogramBits != 15 && histogramBits != 18) {
+            throw new IllegalArgumentException("Histogram resolution must be 15 or 18 bits");
+        }
+        this.bitsPerChannel = histogramBits / 3;
+    }
+
+    /**
+     * Extracts a palette from a 24-bit or 32-bit BMP image.
+     *
+     * @param bmpFile The image to analyze
+     * @return Array of 64 colors in PAL order
+     * @throws IOException              If the image can't be read
+     * @throws IllegalArgumentException if the image format is not supported
+     */
+    public int[] extract(Path bmpFile) throws IOException {
+        return extract(ColorHistogram.fromBmp(bmpFile, bitsPerChannel));
+    }
+
+    /**
+     * Extracts a palette from a color histogram.
+     * If the histogram has fewer distinct colors than palette slots, the remaining slots are black.
+     *
+     * @param histogram The color histogram
+     * @return Array of 64 colors in PAL order
+     */
+    public int[] extract(ColorHistogram histogram) {
+        // Collect the occupied bins
+        int[] bins = IntStream.range(0, histogram.size()).filter(bin -> histogram.count(bin) > 0).toArray();
+        int[] colors = new int[bins.length];
+        long[] weights = new long[bins.length];
+        for (int i = 0; i < bins.length; i++) {
+            colors[i] = histogram.colorOf(bins[i]);
+            weights[i] = histogram.count(bins[i]);
+        }
+
+        int[] centroids = medianCut(colors, weights);
+        for (int pass = 0; pass < KMEANS_PASSES; pass++) {
+            centroids = refine(centroids, colors, weights);
+        }
+
+        return toPalOrder(centroids);
+    }
+
+    /**
+     * A box of histogram bins, referring to a range of the shared bin index array.
+     */
+    private record Box(int from, int to, int channel, int extent) {
+        int size() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Splits the color space into boxes along the longest channel at the weighted median.
+     *
+     * @return The weighted mean color of each box
+     */
+    private int[] medianCut(int[] colors, long[] weights) {
+        Integer[] order = new Integer[colors.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        List<Box> boxes = new ArrayList<>();
+        if (colors.length > 0) {
+            boxes.add(createBox(order, colors, 0, colors.length));
+        }
+
+        while (boxes.size() < EXTRACTED_COLORS) {
+            // Split the box with the widest channel range
+            Box widest = null;
+            for (Box box : boxes) {
+                if (box.size() > 1 && (widest == null || box.extent() > widest.extent())) {
+                    widest = box;
+                }
+            }
+            if (widest == null) {
+                break;  // Every box holds a single bin
+            }
+
+            int shift = 16 - 8 * widest.channel();
+            Arrays.sort(order, widest.from(), widest.to(),
+                    Comparator.comparingInt(i -> (colors[i] >> shift) & 0xFF));
+
+            long total = 0;
+            for (int i = widest.from(); i < widest.to(); i++) {
+                total += weights[order[i]];
+            }
+            int split = widest.from() + 1;
+            long cumulative = weights[order[widest.from()]];
+            while (split < widest.to() - 1 && cumulative * 2 < total) {
+                cumulative += weights[order[split++]];
+            }
+
+            boxes.remove(widest);
+            boxes.add(createBox(order, colors, widest.from(), split));
+            boxes.add(createBox(order, colors, split, widest.to()));
+        }
+
+        int[] centroids = new int[boxes.size()];
+        for (int b = 0; b < boxes.size(); b++) {
+            Box box = boxes.get(b);
+            long[] sums = new long[4];
+            for (int i = box.from(); i < box.to(); i++) {
+                accumulate(sums, colors[order[i]], weights[order[i]]);
+            }
+            centroids[b] = mean(sums, 0);
+        }
+        return centroids;
+    }
+
+    private static Box createBox(Integer[] order, int[] colors, int from, int to) {
+        int[] min = {255, 255, 255};
+        int[] max = {0, 0, 0};
+        for (int i = from; i < to; i++) {
+            int color = colors[order[i]];
+            for (int c = 0; c < 3; c++) {
+                int value = (color >> (16 - 8 * c)) & 0xFF;
+                min[c] = Math.min(min[c], value);
+                max[c] = Math.max(max[c], value);
+            }
+        }
+        int channel = 0;
+        for (int c = 1; c < 3; c++) {
+            if (max[c] - min[c] > max[channel] - min[channel]) {
+                channel = c;
+            }
+        }
+        return new Box(from, to, channel, max[channel] - min[channel]);
+    }
+
+    /**
+     * Runs one weighted k-means pass: assigns every bin to its nearest centroid and
+     * moves each centroid to the mean of its bins. Bins are processed in parallel chunks,
+     * each with private sums that are merged afterwards.
+     *
+     * @return The updated centroids; centroids without bins keep their position
+     */
+    private int[] refine(int[] centroids, int[] colors, long[] weights) {
+        int k = centroids.length;
+        int chunks = (colors.length + BINS_PER_CHUNK - 1) / BINS_PER_CHUNK;
+
+        long[] sums = IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+            long[] chunkSums = new long[k * 4];
+            int to = Math.min(colors.length, (chunk + 1) * BINS_PER_CHUNK);
+            for (int i = chunk * BINS_PER_CHUNK; i < to; i++) {
+                int nearest = nearest(centroids, colors[i]);
+                accumulate(chunkSums, colors[i], weights[i], nearest * 4);
+            }
+            return chunkSums;
+        }).reduce(new long[k * 4], (a, b) -> {
+            long[] merged = new long[a.length];
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] = a[i] + b[i];
+            }
+            return merged;
+        });
+
+        int[] refined = new int[k];
+        for (int c = 0; c < k; c++) {
+            refined[c] = sums[c * 4 + 3] > 0 ? mean(sums, c * 4) : centroids[c];
+        }
+        return refined;
+    }
+
+    private static int nearest(int[] centroids, int color) {
+        int r = (color >> 16) & 0xFF;
+        int g = (color >> 8) & 0xFF;
+        int b = color & 0xFF;
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int c = 0; c < centroids.length; c++) {
+            int dr = r - ((centroids[c] >> 16) & 0xFF);
+            int dg = g - ((centroids[c] >> 8) & 0xFF);
+            int db = b - (centroids[c] & 0xFF);
+            int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private static void accumulate(long[] sums, int color, long weight) {
+        accumulate(sums, color, weight, 0);
+    }
+
+    private static void accumulate(long[] sums, int color, long weight, int offset) {
+        sums[offset] += ((color >> 16) & 0xFF) * weight;
+        sums[offset + 1] += ((color >> 8) & 0xFF) * weight;
+        sums[offset + 2] += (color & 0xFF) * weight;
+        sums[offset + 3] += weight;
+    }
+
+    private static int mean(long[] sums, int offset) {
+        long weight = sums[offset + 3];
+        int r = (int) ((sums[offset] + weight / 2) / weight);
+        int g = (int) ((sums[offset + 1] + weight / 2) / weight);
+        int b = (int) ((sums[offset + 2] + weight / 2) / weight);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Sorts the colors by luminance and places them into the non-black PAL slots.
+     */
+    private static int[] toPalOrder(int[] centroids) {
+        int[] sorted = Arrays.stream(centroids).boxed()
+                .sorted(Comparator.comparingInt(PaletteExtractor::luminance))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        int[] palColors = new int[TOTAL_COLORS];
+        int next = 0;
+        for (int i = 0; i < TOTAL_COLORS && next < sorted.length; i++) {
+            if (!ColorArrangement.isBlackSlot(i)) {
+                palColors[i] = sorted[next++];
+            }
+        }
+        return palColors;
+    }
+
+    private static int luminance(int color) {
+        return 299 * ((color >> 16) & 0xFF) + 587 * ((color >> 8) & 0xFF) + 114 * (color & 0xFF);
+    }
+}
@@ -0,0 +1,378 @@
+package de.nrq.service;
+
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.reader.PaletteReader;
+import de.nrq.core.reader.PaletteReaderFactory;
+import de.nrq.core.writer.BmpWriter;
+import de.nrq.core.writer.PaletteWriter;
+import de.nrq.core.writer.PaletteWriterFactory;
+import de.nrq.image.BmpConfig;
+import de.nrq.image.BmpEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous library entry point for reading, converting and rendering palettes,
+ * for embedding the tool in other applications such as a preview web service.
+ * <p>
+ * Every operation returns a {@link CompletableFuture} and runs on the service's executor,
+ * by default one virtual thread per task. At most {@code maxConcurrency} tasks run at once;
+ * further tasks wait in a queue of at most {@code maxPending} entries, and tasks beyond that
+ * are rejected right away with a future failed by a {@link RejectedExecutionException}, so
+ * callers notice overload instead of piling up work. Waiting tasks don't occupy a thread.
+ * <p>
+ * The service holds no global state: readers, writers and BMP encoders are stateless and
+ * shared, and files are accessed directly. Separate instances don't interact.
+ */
+public final class PaletteService implements AutoCloseable {
+    /**
+     * Default number of queued tasks before new tasks are rejected.
+     */
+    public static final int DEFAULT_MAX_PENDING = 1024;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int maxConcurrency;
+    private final int maxPending;
+    private final Queue<Job<?>> pending = new ArrayDeque<>();
+    private int running;
+    private boolean closed;
+
+    /**
+     * Creates a service on a caller-provided executor.
+     * The executor is not shut down by {@link #close()}.
+     *
+     * @param executor       Executor running the tasks
+     * @param maxConcurrency Maximum number of tasks running at once
+     * @param maxPending     Maximum number of tasks waiting for a slot before new ones are rejected
+     * @throws IllegalArgumentException if a limit is out of range
+     */
+    public PaletteService(Executor executor, int maxConcurrency, int maxPending) {
+        this(executor, null, maxConcurrency, maxPending);
+    }
+
+    private PaletteService(Executor executor, ExecutorService ownedExecutor, int maxConcurrency, int maxPending) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Concurrency limit must be at least 1");
+        }
+        if (maxPending < 0) {
+            throw new IllegalArgumentException("Pending limit cannot be negative");
+        }
+        this.executor = executor;
+        this.ownedExecutor = ownedExecutor;
+        this.maxConcurrency = maxConcurrency;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Creates a service running each task on a new virtual thread,
+     * with one running task per available processor.
+     *
+     * @return A new service; close it to release its executor
+     */
+    public static PaletteService create() {
+        return create(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Creates a service running each task on a new virtual thread.
+     *
+     * @param maxConcurrency Maximum number of tasks running at once
+     * @param maxPending     Maximum number of tasks waiting for a slot before new ones are rejected
+     * @return A new service; close it to release its executor
+     * @throws IllegalArgumentException if a limit is out of range
+     */
+    public static PaletteService create(int maxConcurrency, int maxPending) {
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        return new PaletteService(executor, executor, maxConcurrency, maxPending);
+    }
+
+    /**
+     * Reads a palette file. The format is determined by the file extension,
+     * and .pal files are detected by content.
+     *
+     * @param file The palette file
+     * @return Future of 64 colors in 0xRRGGBB format, in PAL order
+     */
+    public CompletableFuture<int[]> read(Path file) {
+        return submit(() -> readFile(file));
+    }
+
+    /**
+     * Parses a palette from file content in memory.
+     *
+     * @param data   The file content
+     * @param format Format of the content
+     * @return Future of 64 colors in 0xRRGGBB format, in PAL order
+     */
+    public CompletableFuture<int[]> read(byte[] data, PaletteFormat format) {
+        return read(ByteBuffer.wrap(data), format);
+    }
+
+    /**
+     * Parses a palette from the remaining bytes of a buffer.
+     * The buffer must not be modified until the future completes; its position is not changed.
+     *
+     * @param data   Buffer holding the file content
+     * @param format Format of the content
+     * @return Future of 64 colors in 0xRRGGBB format, in PAL order
+     */
+    public CompletableFuture<int[]> read(ByteBuffer data, PaletteFormat format) {
+        return submit(() -> PaletteReaderFactory.createParser(format).parse(data));
+    }
+
+    /**
+     * Converts a palette file to the format given by the output file's extension.
+     *
+     * @param input  The palette file to read
+     * @param output The file to create or overwrite
+     * @return Future completing when the output is written
+     */
+    public CompletableFuture<Void> convert(Path input, Path output) {
+        return submit(() -> {
+            int[] colors = readFile(input);
+            PaletteWriterFactory.createWriter(output.getFileName().toString()).writeColors(colors, output);
+            return null;
+        });
+    }
+
+    /**
+     * Converts palette file content in memory to another format.
+     *
+     * @param data   The file content
+     * @param source Format of the content
+     * @param target Format to convert to
+     * @return Future of the converted file content
+     */
+    public CompletableFuture<byte[]> convert(byte[] data, PaletteFormat source, PaletteFormat target) {
+        return convert(ByteBuffer.wrap(data), source, target);
+    }
+
+    /**
+     * Converts palette file content in a buffer to another format.
+     * The buffer must not be modified until the future completes; its position is not changed.
+     *
+     * @param data   Buffer holding the file content
+     * @param source Format of the content
+     * @param target Format to convert to
+     * @return Future of the converted file content
+     */
+    public CompletableFuture<byte[]> convert(ByteBuffer data, PaletteFormat source, PaletteFormat target) {
+        return submit(() -> PaletteWriterFactory.createWriter(target)
+                .toBytes(PaletteReaderFactory.createParser(source).parse(data)));
+    }
+
+    /**
+     * Renders a BMP preview of a palette.
+     *
+     * @param colors     Array of 64 colors in PAL order; it must not be modified until the future completes
+     * @param squareSize Size of each color square in pixels
+     * @return Future of the BMP file content
+     */
+    public CompletableFuture<byte[]> render(int[] colors, int squareSize) {
+        return submit(() -> createBmpWriter(squareSize).toBytes(colors));
+    }
+
+    /**
+     * Renders a BMP preview of a palette file.
+     *
+     * @param file       The palette file
+     * @param squareSize Size of each color square in pixels
+     * @return Future of the BMP file content
+     */
+    public CompletableFuture<byte[]> render(Path file, int squareSize) {
+        return submit(() -> createBmpWriter(squareSize).toBytes(readFile(file)));
+    }
+
+    /**
+     * Renders a BMP preview of palette file content in memory.
+     *
+     * @param data       The file content
+     * @param format     Format of the content
+     * @param squareSize Size of each color square in pixels
+     * @return Future of the BMP file content
+     */
+    public CompletableFuture<byte[]> render(byte[] data, PaletteFormat format, int squareSize) {
+        return render(ByteBuffer.wrap(data), format, squareSize);
+    }
+
+    /**
+     * Renders a BMP preview of palette file content in a buffer.
+     * The buffer must not be modified until the future completes; its position is not changed.
+     *
+     * @param data       Buffer holding the file content
+     * @param format     Format of the content
+     * @param squareSize Size of each color square in pixels
+     * @return Future of the BMP file content
+     */
+    public CompletableFuture<byte[]> render(ByteBuffer data, PaletteFormat format, int squareSize) {
+        return submit(() -> createBmpWriter(squareSize)
+                .toBytes(PaletteReaderFactory.createParser(format).parse(data)));
+    }
+
+    /**
+     * Gets the number of tasks currently running.
+     *
+     * @return Running tasks, at most the concurrency limit
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the number of tasks waiting for a slot.
+     *
+     * @return Waiting tasks, at most the pending limit
+     */
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Stops accepting tasks, waits until all submitted tasks, including waiting ones, have
+     * finished, and then shuts down the executor if the service created it.
+     * A caller-provided executor is left running. Tasks submitted after closing are rejected.
+     * If the calling thread is interrupted while waiting, it stops waiting with its interrupt
+     * status set.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            try {
+                while (running > 0 || !pending.isEmpty()) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ownedExecutor != null) {
+            ownedExecutor.close();
+        }
+    }
+
+    /**
+     * Reads a palette from the path itself, so files on any file system can be read.
+     */
+    private static int[] readFile(Path file) throws IOException {
+        PaletteReader reader = PaletteReaderFactory.createReader(file.getFileName().toString());
+        int[] colors = new int[PaletteReader.TOTAL_COLORS];
+        reader.readColors(file, colors);
+        return colors;
+    }
+
+    private static PaletteWriter createBmpWriter(int squareSize) {
+        BmpEncoder encoder = squareSize == BmpConfig.DEFAULT.squareSize()
+                ? BmpEncoder.DEFAULT
+                : new BmpEncoder(BmpConfig.DEFAULT.withSquareSize(squareSize));
+        return new BmpWriter(encoder);
+    }
+
+    /**
+     * Runs a task when a slot is free, queues it, or rejects it if the queue is full.
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> task) {
+        Job<T> job = new Job<>(task);
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Palette service is closed"));
+            }
+            if (running >= maxConcurrency) {
+                if (pending.size() >= maxPending) {
+                    return CompletableFuture.failedFuture(new RejectedExecutionException(String.format(
+                            "Palette service is overloaded: %d running, %d pending", running, pending.size())));
+                }
+                pending.add(job);
+                return job.future;
+            }
+            running++;
+        }
+        dispatch(job);
+        return job.future;
+    }
+
+    /**
+     * Hands the next waiting task to the executor, or frees the slot of a finished task.
+     */
+    private void finished() {
+        Job<?> next;
+        synchronized (this) {
+            next = pending.poll();
+            if (next == null) {
+                running--;
+                if (running == 0) {
+                    notifyAll();
+                }
+            }
+        }
+        if (next != null) {
+            dispatch(next);
+        }
+    }
+
+    private void dispatch(Job<?> job) {
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            rejected(job, e);
+        }
+    }
+
+    /**
+     * Fails a job the executor refused, together with all waiting jobs, which it would refuse as well.
+     * Only the refused job holds a slot, so the slot count drops by one.
+     */
+    private void rejected(Job<?> job, RejectedExecutionException e) {
+        List<Job<?>> drained;
+        synchronized (this) {
+            drained = new ArrayList<>(pending);
+            pending.clear();
+            running--;
+            notifyAll();
+        }
+        job.future.completeExceptionally(e);
+        for (Job<?> waiting : drained) {
+            waiting.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * A task together with the future receiving its result.
+     */
+    private final class Job<T> implements Runnable {
+        private final Callable<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        Job(Callable<T> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            T result;
+            try {
+                result = task.call();
+            } catch (Throwable e) {
+                finished();
+                future.completeExceptionally(e);
+                return;
+            }
+            // Free the slot first, so callbacks running on completion don't hold it
+            finished();
+            future.complete(result);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package de.nrq.core.archive;
+
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.reader.PalReader;
+import de.nrq.core.reader.VhReader;
+import de.nrq.core.writer.PalWriter;
+import de.nrq.core.writer.VhWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveConverterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testParallelZipWriter() throws IOException {
+        Path zipFile = tempDir.resolve("test.zip");
+        List<String> names = List.of("a.txt", "dir/b.txt", "random.bin");
+        byte[] random = new byte[1000];
+        new Random(1).nextBytes(random);
+        ParallelZipWriter.write(zipFile, names, index -> switch (index) {
+            case 0 -> "aaaa".repeat(100).getBytes(StandardCharsets.UTF_8);
+            case 1 -> "b".getBytes(StandardCharsets.UTF_8);
+            default -> random;
+        });
+
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(3, zip.size());
+            ZipEntry compressed = zip.getEntry("a.txt");
+            assertEquals(ZipEntry.DEFLATED, compressed.getMethod());
+            assertEquals("aaaa".repeat(100), new String(zip.getInputStream(compressed).readAllBytes(), StandardCharsets.UTF_8));
+            assertEquals("b", new String(zip.getInputStream(zip.getEntry("dir/b.txt")).readAllBytes(), StandardCharsets.UTF_8));
+            ZipEntry stored = zip.getEntry("random.bin");
+            assertEquals(ZipEntry.STORED, stored.getMethod());
+            assertArrayEquals(random, zip.getInputStream(stored).readAllBytes());
+        }
+    }
+
+    @Test
+    void testZip64EntryCount() throws IOException {
+        Path zipFile = tempDir.resolve("many.zip");
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 70000; i++) {
+            names.add("e" + i);
+        }
+        ParallelZipWriter.write(zipFile, names, index -> new byte[]{(byte) index});
+
+        try (ZipFile zip = new ZipFile(zipFile.toFile())) {
+            assertEquals(70000, zip.size());
+            assertArrayEquals(new byte[]{(byte) 69999}, zip.getInputStream(zip.getEntry("e69999")).readAllBytes());
+        }
+    }
+
+    @Test
+    void testConvertArchive() throws IOException {
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 0x010203;
+        }
+        Path input = tempDir.resolve("input.zip");
+        ParallelZipWriter.write(input, List.of("one.vh", "sub/two.vh", "readme.txt"), index -> index < 2
+                ? new VhWriter().toBytes(colors)
+                : "not a palette".getBytes(StandardCharsets.UTF_8));
+
+        Path output = tempDir.resolve("output.zip");
+        assertTrue(ArchiveConverter.isArchive(input.toString()));
+        assertFalse(ArchiveConverter.isArchive(input + "!/one.vh"));
+        int count = ArchiveConverter.convert(input, output, PaletteFormat.PAL, new PalWriter());
+        assertEquals(2, count);
+
+        assertArrayEquals(colors, new PalReader().readColors(output + "!/sub/two.pal"));
+        assertArrayEquals(colors, new VhReader().readColors(input + "!/one.vh"));
+    }
+}
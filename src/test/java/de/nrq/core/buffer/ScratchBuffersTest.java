@@ -0,0 +1,100 @@
+package de.nrq.core.buffer;
+
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.reader.PalReader;
+import de.nrq.core.reader.VhReader;
+import de.nrq.core.writer.PalWriter;
+import de.nrq.core.writer.VhWriter;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ScratchBuffersTest {
+    @Test
+    void testBuffersArePerThreadAndGrow() throws InterruptedException {
+        ScratchBuffers scratch = ScratchBuffers.get();
+        assertSame(scratch, ScratchBuffers.get());
+
+        ByteBuffer small = scratch.bytes(10);
+        assertEquals(0, small.position());
+        assertEquals(10, small.limit());
+        assertSame(small, scratch.bytes(100));
+
+        ByteBuffer large = scratch.bytes(100_000);
+        assertEquals(100_000, large.remaining());
+        assertSame(large, scratch.bytes(5));
+        assertEquals(64, scratch.colors().length);
+
+        // Requests beyond the retained maximum don't replace the thread's buffer
+        ByteBuffer huge = scratch.bytes(ScratchBuffers.MAX_RETAINED_BYTES + 1);
+        assertEquals(ScratchBuffers.MAX_RETAINED_BYTES + 1, huge.remaining());
+        assertNotSame(huge, scratch.bytes(5));
+        assertTrue(scratch.bytes(ScratchBuffers.MAX_RETAINED_BYTES).capacity() <= ScratchBuffers.MAX_RETAINED_BYTES);
+
+        ScratchBuffers[] other = new ScratchBuffers[1];
+        Thread thread = new Thread(() -> other[0] = ScratchBuffers.get());
+        thread.start();
+        thread.join();
+        assertNotSame(scratch, other[0]);
+    }
+
+    @Test
+    void testRoundTripDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "Allocation counters are not available");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation counters are not supported");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 0x030507;
+        }
+        PalReader palReader = new PalReader();
+        VhReader vhReader = new VhReader();
+        PalWriter palWriter = new PalWriter();
+        VhWriter vhWriter = new VhWriter();
+
+        byte[] pal = palWriter.toBytes(colors);
+        ByteBuffer palBuffer = ByteBuffer.wrap(pal);
+        byte[] vh = new byte[VhWriter.ENCODED_SIZE];
+        ByteBuffer vhBuffer = ByteBuffer.wrap(vh);
+        byte[] result = new byte[PalWriter.ENCODED_SIZE];
+        int[] palColors = new int[64];
+        int[] vhColors = new int[64];
+        int[] roundTrip = new int[64];
+
+        Runnable pipeline = () -> {
+            // PAL file -> colors -> VH order -> VH file -> colors -> PAL file
+            palReader.parse(palBuffer, palColors);
+            ColorArrangement.palToVhOrder(palColors, vhColors);
+            ColorArrangement.vhToPalOrder(vhColors, roundTrip);
+            int length = vhWriter.encode(roundTrip, vh, 0);
+            vhBuffer.clear().limit(length);
+            vhReader.parse(vhBuffer, roundTrip);
+            palWriter.encode(roundTrip, result, 0);
+        };
+
+        // Warm up, so the thread's scratch buffers exist and the code is compiled
+        for (int i = 0; i < 20_000; i++) {
+            pipeline.run();
+        }
+        assertArrayEquals(pal, result);
+
+        int iterations = 10_000;
+        long threadId = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            pipeline.run();
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // The counter itself may allocate a few bytes, but even one object per round trip would show
+        assertArrayEquals(pal, result);
+        assertTrue(allocated < iterations, "Allocated " + allocated + " bytes in " + iterations + " round trips");
+    }
+}
@@ -0,0 +1,83 @@
+package de.nrq.core.color;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PermutationTest {
+    private static int[] uniqueColors(int palettes) {
+        int[] colors = new int[palettes * 64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 7919 & 0xFFFFFF;  // Distinct color per entry
+        }
+        return colors;
+    }
+
+    @Test
+    void testApplyMatchesTable() {
+        Permutation permutation = Permutation.of(2, 0, 1);
+        assertArrayEquals(new int[]{30, 10, 20}, permutation.apply(new int[]{10, 20, 30}));
+    }
+
+    @Test
+    void testInverseAndComposition() {
+        Permutation permutation = ColorArrangement.PAL_TO_VH;
+        assertEquals(Permutation.identity(64), permutation.andThen(permutation.inverse()));
+        assertEquals(ColorArrangement.VH_TO_PAL, permutation.inverse());
+
+        int[] colors = uniqueColors(1);
+        Permutation shift = Permutation.of(1, 2, 0);
+        assertArrayEquals(shift.apply(shift.apply(new int[]{1, 2, 3})),
+                shift.andThen(shift).apply(new int[]{1, 2, 3}));
+        assertArrayEquals(ColorArrangement.VH_TO_PAL.apply(permutation.apply(colors)), colors);
+    }
+
+    @Test
+    void testApplyInPlace() {
+        int[] colors = uniqueColors(1);
+        int[] expected = ColorArrangement.PAL_TO_VH.apply(colors);
+
+        ColorArrangement.PAL_TO_VH.applyInPlace(colors);
+        assertArrayEquals(expected, colors);
+    }
+
+    @Test
+    void testApplyInPlaceRgb() {
+        int[] colors = uniqueColors(1);
+        byte[] rgb = ColorConverter.intArrayToRgbBytes(colors);
+
+        ColorArrangement.PAL_TO_VH.applyInPlaceRgb(rgb, 0);
+        assertArrayEquals(ColorArrangement.palToVhOrder(colors), ColorConverter.rgbBytesToIntArray(rgb));
+    }
+
+    @Test
+    void testApplyBulk() {
+        int palettes = 10_000;  // Enough for several parallel chunks
+        int[] colors = uniqueColors(palettes);
+        byte[] rgb = ColorConverter.intArrayToRgbBytes(colors);
+        int[] original = colors.clone();
+
+        ColorArrangement.PAL_TO_VH.applyBulk(colors);
+        ColorArrangement.PAL_TO_VH.applyBulkRgb(rgb);
+
+        for (int p = 0; p < palettes; p++) {
+            int[] palette = new int[64];
+            System.arraycopy(original, p * 64, palette, 0, 64);
+            int[] expected = ColorArrangement.palToVhOrder(palette);
+            for (int i = 0; i < 64; i++) {
+                assertEquals(expected[i], colors[p * 64 + i]);
+            }
+        }
+        assertArrayEquals(colors, ColorConverter.rgbBytesToIntArray(rgb));
+    }
+
+    @Test
+    void testInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> Permutation.of(0, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> Permutation.of(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> Permutation.of());
+        assertThrows(IllegalArgumentException.class, () -> ColorArrangement.PAL_TO_VH.applyBulk(new int[65]));
+        assertThrows(IllegalArgumentException.class,
+                () -> ColorArrangement.PAL_TO_VH.andThen(Permutation.identity(3)));
+    }
+}
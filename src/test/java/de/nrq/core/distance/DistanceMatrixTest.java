@@ -0,0 +1,94 @@
+package de.nrq.core.distance;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceMatrixTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Creates a library of palettes filled with a single gray level each.
+     */
+    private static int[] grayPalettes(int... levels) {
+        int[] colors = new int[levels.length * 64];
+        for (int p = 0; p < levels.length; p++) {
+            for (int i = 0; i < 64; i++) {
+                colors[p * 64 + i] = levels[p] * 0x010101;
+            }
+        }
+        return colors;
+    }
+
+    @Test
+    void testWriteMatrix() throws IOException {
+        // Enough palettes for several tiles
+        int[] levels = new int[150];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = i;
+        }
+        int[] colors = grayPalettes(levels);
+        float[] lab = LabPalettes.toLab(colors);
+
+        Path matrixFile = tempDir.resolve("test.pdm");
+        new DistanceMatrix(colors).write(matrixFile);
+
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(matrixFile)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals('P', data.get(0));
+        assertEquals(150, data.getInt(4));
+        assertEquals(DistanceMatrix.HEADER_SIZE + 150 * 150 * 4, data.capacity());
+        for (int i = 0; i < 150; i++) {
+            for (int j = 0; j < 150; j++) {
+                float value = data.getFloat(DistanceMatrix.HEADER_SIZE + (i * 150 + j) * 4);
+                assertEquals(i == j ? 0 : LabPalettes.distance(lab, i, j), value, 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void testNearest() throws IOException {
+        int[] colors = grayPalettes(0, 200, 10, 190);
+        List<int[]> results = new ArrayList<>();
+        new DistanceMatrix(colors).nearest(2, (index, neighbors, distances) -> {
+            assertEquals(results.size(), index);  // Called in index order
+            assertTrue(distances[0] <= distances[1]);
+            results.add(neighbors.clone());
+        });
+
+        assertEquals(4, results.size());
+        assertArrayEquals(new int[]{2, 3}, results.get(0));
+        assertArrayEquals(new int[]{3, 2}, results.get(1));
+        assertEquals(1, results.get(3)[0]);
+    }
+
+    @Test
+    void testCluster() throws IOException {
+        int[] colors = grayPalettes(0, 200, 2, 198, 100);
+        Path matrixFile = tempDir.resolve("cluster.pdm");
+        new DistanceMatrix(colors).write(matrixFile);
+
+        assertArrayEquals(new int[]{0, 1, 0, 1, 2}, DistanceMatrix.cluster(matrixFile, 3));
+        assertThrows(IllegalArgumentException.class, () -> {
+            Path other = tempDir.resolve("other.pdm");
+            Files.write(other, new byte[16]);
+            DistanceMatrix.cluster(other, 1);
+        });
+    }
+
+    @Test
+    void testIdenticalPalettes() {
+        float[] lab = LabPalettes.toLab(grayPalettes(42, 42, 43));
+        assertEquals(0, LabPalettes.distance(lab, 0, 1));
+        assertTrue(LabPalettes.distance(lab, 0, 2) > 0);
+    }
+}
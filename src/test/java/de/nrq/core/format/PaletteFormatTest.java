@@ -2,6 +2,9 @@ package de.nrq.core.format;
 
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -12,6 +15,24 @@ class PaletteFormatTest {
         assertEquals(PaletteFormat.PAL, PaletteFormat.fromFileName("test.PAL"));
         assertEquals(PaletteFormat.VH, PaletteFormat.fromFileName("test.vh"));
         assertEquals(PaletteFormat.VH, PaletteFormat.fromFileName("test.VH"));
+        assertEquals(PaletteFormat.BMP, PaletteFormat.fromFileName("test.bmp"));
+        assertEquals(PaletteFormat.ACT, PaletteFormat.fromFileName("test.act"));
+        assertEquals(PaletteFormat.GPL, PaletteFormat.fromFileName("test.gpl"));
+    }
+
+    @Test
+    void testDetect() {
+        assertEquals(PaletteFormat.RIFF, PaletteFormat.detect(ByteBuffer.wrap("RIFF....PAL ".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(PaletteFormat.JASC, PaletteFormat.detect(ByteBuffer.wrap("JASC-PAL\r\n".getBytes(StandardCharsets.US_ASCII))));
+        assertEquals(PaletteFormat.PAL, PaletteFormat.detect(ByteBuffer.wrap(new byte[192])));
+        assertEquals(PaletteFormat.PAL, PaletteFormat.detect(ByteBuffer.wrap(new byte[2])));
+    }
+
+    @Test
+    void testFromName() {
+        assertEquals(PaletteFormat.JASC, PaletteFormat.fromName("jasc"));
+        assertEquals(PaletteFormat.RIFF, PaletteFormat.fromName("RIFF"));
+        assertThrows(IllegalArgumentException.class, () -> PaletteFormat.fromName("png"));
     }
 
     @Test
@@ -25,6 +46,11 @@ class PaletteFormatTest {
     void testGetExtension() {
         assertEquals(".pal", PaletteFormat.PAL.getExtension());
         assertEquals(".vh", PaletteFormat.VH.getExtension());
+        assertEquals(".bmp", PaletteFormat.BMP.getExtension());
+        assertEquals(".pal", PaletteFormat.JASC.getExtension());
+        assertEquals(".pal", PaletteFormat.RIFF.getExtension());
+        assertEquals(".act", PaletteFormat.ACT.getExtension());
+        assertEquals(".gpl", PaletteFormat.GPL.getExtension());
     }
 
     @Test
@@ -0,0 +1,195 @@
+package de.nrq.core.patch;
+
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.reader.VhParser;
+import de.nrq.core.writer.VhWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VhPatcherTest {
+    @TempDir
+    Path tempDir;
+
+    private static final FileTime OLD_TIME = FileTime.fromMillis(1_000_000_000_000L);
+
+    private static int[] palette(int seed) {
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = ColorArrangement.isBlackSlot(i) ? 0 : (i * 0x030507 + seed * 0x110000) & 0xFFFFFF;
+        }
+        return colors;
+    }
+
+    /**
+     * A module with the array as VhWriter writes it, split over lines and surrounded by other code.
+     */
+    private static String module(int[] colors, boolean lowerCase) {
+        byte[] vh = new byte[VhWriter.ENCODED_SIZE];
+        new VhWriter().encode(colors, vh, 0);
+        String array = new String(vh, StandardCharsets.US_ASCII).replace(", ", ",\n    ");
+        if (lowerCase) {
+            array = array.toLowerCase();
+        }
+        return "module lumacode(input [5:0] idx, output [23:0] rgb);\n"
+                + "// lumacode_data_3s = '{ 24'h000000 } in a comment is ignored\n"
+                + array + "\n"
+                + "assign rgb = lumacode_data_3s[idx];\n"
+                + "endmodule\n";
+    }
+
+    private static int[] readVh(Path file) throws IOException {
+        return ColorArrangement.vhToPalOrder(VhParser.parse(ByteBuffer.wrap(Files.readAllBytes(file))));
+    }
+
+    @Test
+    void testPatchRewritesOnlyChangedLiterals() throws IOException {
+        int[] original = palette(1);
+        int[] target = original.clone();
+        target[20] = 0xABCDEF;
+        target[40] = 0x123456;
+        Path file = tempDir.resolve("lumacode.v");
+        String source = module(original, false);
+        Files.writeString(file, source);
+
+        VhPatcher.Result result = new VhPatcher(target, false).patch(file);
+        assertNull(result.error());
+        assertEquals(1, result.arrays());
+        assertEquals(2, result.changed());
+
+        String patched = Files.readString(file);
+        assertEquals(source.length(), patched.length());
+        assertArrayEquals(target, readVh(file));
+        int differences = 0;
+        for (int i = 0; i < source.length(); i++) {
+            if (source.charAt(i) != patched.charAt(i)) {
+                differences++;
+            }
+        }
+        assertTrue(differences <= 12, "Only the digits of two literals may change");
+    }
+
+    @Test
+    void testPatchKeepsLowerCaseDigits() throws IOException {
+        int[] target = palette(1);
+        target[20] = 0xABCDEF;
+        Path file = tempDir.resolve("lower.v");
+        Files.writeString(file, module(palette(1), true));
+
+        new VhPatcher(target, false).patch(file);
+        String patched = Files.readString(file);
+        assertTrue(patched.contains("24'habcdef"));
+        assertEquals(patched.toLowerCase(), patched);
+    }
+
+    @Test
+    void testIdenticalFileIsNotWritten() throws IOException {
+        int[] colors = palette(2);
+        Path file = tempDir.resolve("same.v");
+        Files.writeString(file, module(colors, true));
+        Files.setLastModifiedTime(file, OLD_TIME);
+
+        VhPatcher.Result result = new VhPatcher(colors, false).patch(file);
+        assertNull(result.error());
+        assertFalse(result.isPatched());
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(file));
+    }
+
+    @Test
+    void testDryRunDoesNotWrite() throws IOException {
+        Path file = tempDir.resolve("dry.v");
+        String source = module(palette(1), false);
+        Files.writeString(file, source);
+
+        VhPatcher.Result result = new VhPatcher(palette(3), true).patch(file);
+        assertTrue(result.isPatched());
+        assertEquals(source, Files.readString(file));
+    }
+
+    @Test
+    void testMultipleArraysInOneFile() throws IOException {
+        Path file = tempDir.resolve("variants.sv");
+        Files.writeString(file, module(palette(1), false) + module(palette(2), false));
+
+        VhPatcher.Result result = new VhPatcher(palette(3), false).patch(file);
+        assertEquals(2, result.arrays());
+        String patched = Files.readString(file);
+        assertEquals(module(palette(3), false) + module(palette(3), false), patched);
+    }
+
+    @Test
+    void testArraysInCommentsAreSkipped() throws IOException {
+        Path file = tempDir.resolve("commented.v");
+        String disabled = "/* Previous palette, kept for reference:\n" + module(palette(1), false) + "*/\n";
+        Files.writeString(file, disabled + module(palette(2), false));
+
+        VhPatcher.Result result = new VhPatcher(palette(3), false).patch(file);
+        assertNull(result.error());
+        assertEquals(1, result.arrays());
+        assertEquals(disabled + module(palette(3), false), Files.readString(file));
+
+        Path unterminated = tempDir.resolve("unterminated.v");
+        String source = module(palette(2), false) + "/* lumacode_data_3s = '{ 24'h000000 };\n";
+        Files.writeString(unterminated, source);
+        assertTrue(new VhPatcher(palette(3), false).patch(unterminated).isFailed());
+        assertEquals(source, Files.readString(unterminated));
+    }
+
+    @Test
+    void testInvalidArrayIsLeftUnchanged() throws IOException {
+        Path shortFile = tempDir.resolve("short.v");
+        String shortSource = "wire [23:0] lumacode_data_3s[0:63] = '{ 24'h000000, 24'h123456 };\n";
+        Files.writeString(shortFile, shortSource);
+        Path brokenFile = tempDir.resolve("broken.v");
+        String brokenSource = module(palette(1), false).replace("'{ 24'h000000", "'{ 24'h00G000");
+        Files.writeString(brokenFile, brokenSource);
+
+        VhPatcher patcher = new VhPatcher(palette(3), false);
+        VhPatcher.Result shortResult = patcher.patch(shortFile);
+        assertTrue(shortResult.isFailed());
+        assertTrue(shortResult.error().contains("line 1"));
+        assertTrue(shortResult.error().contains("2 colors"));
+        assertEquals(shortSource, Files.readString(shortFile));
+
+        VhPatcher.Result brokenResult = patcher.patch(brokenFile);
+        assertTrue(brokenResult.isFailed());
+        assertTrue(brokenResult.error().contains("line 3"));
+        assertEquals(brokenSource, Files.readString(brokenFile));
+    }
+
+    @Test
+    void testPatchTree() throws IOException {
+        int[] target = palette(3);
+        for (int i = 0; i < 50; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("variant" + (i % 5)));
+            Files.writeString(dir.resolve("top" + i + ".v"), "module top" + i + ";\nendmodule\n");
+            Files.writeString(dir.resolve("lumacode" + i + ".vh"), module(i % 2 == 0 ? target : palette(1), false));
+        }
+        Path hidden = Files.createDirectories(tempDir.resolve(".git"));
+        Files.writeString(hidden.resolve("stale.v"), module(palette(1), false));
+        Files.writeString(tempDir.resolve("notes.txt"), module(palette(1), false));
+        Files.setLastModifiedTime(tempDir.resolve("variant0").resolve("lumacode0.vh"), OLD_TIME);
+
+        ConcurrentLinkedQueue<VhPatcher.Result> collected = new ConcurrentLinkedQueue<>();
+        VhPatcher.Summary summary = new VhPatcher(target, false).patchTree(tempDir, collected::add);
+
+        assertEquals(100, summary.files());
+        assertEquals(50, summary.arrays());
+        assertEquals(25, summary.patched());
+        assertEquals(0, summary.failed());
+        assertEquals(50, collected.size());
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(tempDir.resolve("variant0").resolve("lumacode0.vh")));
+        assertArrayEquals(target, readVh(tempDir.resolve("variant1").resolve("lumacode1.vh")));
+        assertEquals(module(palette(1), false), Files.readString(hidden.resolve("stale.v")));
+        assertEquals(module(palette(1), false), Files.readString(tempDir.resolve("notes.txt")));
+    }
+}
@@ -0,0 +1,48 @@
+package de.nrq.core.reader;
+
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.writer.BmpWriter;
+import de.nrq.core.writer.PalWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteFilesTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testListSkipsPreviewsAndArchives() throws IOException {
+        int[] colors = new int[64];
+        colors[1] = 0x123456;
+        Path palFile = tempDir.resolve("p0.pal");
+        new PalWriter().writeColors(colors, palFile);
+        new BmpWriter().writeColors(colors, tempDir.resolve("p0.bmp"));
+        Files.write(tempDir.resolve("shot.bmp"), new byte[]{'B', 'M', 0, 0});
+        Files.write(tempDir.resolve("library.ppk"), new byte[16]);
+
+        List<Path> files = PaletteFiles.list(tempDir);
+        assertEquals(List.of(palFile), files);
+        assertArrayEquals(colors, PaletteFiles.readAll(files));
+
+        List<Path> previews = PaletteFiles.list(tempDir, EnumSet.of(PaletteFormat.BMP));
+        assertEquals(List.of(tempDir.resolve("p0.bmp"), tempDir.resolve("shot.bmp")), previews);
+    }
+
+    @Test
+    void testListOfRegularFile() throws IOException {
+        Path shot = tempDir.resolve("shot.png");
+        Files.write(shot, new byte[16]);
+
+        assertEquals(List.of(shot), PaletteFiles.list(shot));
+        assertThrows(IllegalArgumentException.class, () -> PaletteFiles.readAll(List.of(shot)));
+        assertEquals(List.of(), PaletteFiles.list(tempDir, EnumSet.of(PaletteFormat.BMP)));
+    }
+}
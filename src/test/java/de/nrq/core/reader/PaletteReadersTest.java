@@ -1,11 +1,21 @@
 package de.nrq.core.reader;
 
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.format.PaletteFormatException;
+import de.nrq.core.writer.PaletteWriterFactory;
+import de.nrq.image.BmpBuilder;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -97,10 +107,209 @@ class PaletteReadersTest {
         });
     }
 
+    @Test
+    void testPalReaderOversizedFile() throws IOException {
+        Path palFile = tempDir.resolve("oversized.pal");
+        Files.write(palFile, new byte[195]);
+
+        PaletteReader reader = new PalReader();
+        assertThrows(IllegalArgumentException.class, () -> {
+            reader.readColors(palFile.toString());
+        });
+    }
+
+    @Test
+    void testLargeFilesAreRejectedBeforeReading() throws IOException {
+        Path palFile = tempDir.resolve("large.pal");
+        Files.write(palFile, new byte[1024 * 1024]);
+        PaletteFormatException palError = assertThrows(PaletteFormatException.class,
+                () -> new PalReader().readColors(palFile.toString()));
+        assertTrue(palError.getMessage().contains("Invalid .pal file size 1048576"));
+
+        Path gplFile = tempDir.resolve("large.gpl");
+        Files.write(gplFile, new byte[ByteBufferPaletteReader.MAX_FILE_SIZE + 1]);
+        PaletteFormatException gplError = assertThrows(PaletteFormatException.class,
+                () -> new GplReader().readColors(gplFile.toString()));
+        assertTrue(gplError.getMessage().contains("too large"));
+    }
+
+    @Test
+    void testVhReaderReportsPosition() throws IOException {
+        Path vhFile = tempDir.resolve("position.vh");
+        Files.writeString(vhFile, "wire [23:0] lumacode_data_3s[0:63] = '{\n  24'h000000;\n};");
+
+        PaletteReader reader = new VhReader();
+        PaletteFormatException e = assertThrows(PaletteFormatException.class, () -> {
+            reader.readColors(vhFile.toString());
+        });
+        assertEquals(2, e.getLine());
+        assertEquals(13, e.getColumn());
+    }
+
+    @Test
+    void testBmpReader() throws IOException {
+        int[] original = new int[64];
+        for (int i = 0; i < 64; i++) {
+            original[i] = 0x010203 * i;  // Unique color for each position
+        }
+
+        // Odd square size, so the sampled center is not on a square boundary
+        BmpBuilder builder = new BmpBuilder();
+        builder.setSquareSize(7);
+        Path bmpFile = tempDir.resolve("preview.bmp");
+        builder.createBmpFile(original, bmpFile.toFile());
+
+        PaletteReader reader = new BmpReader();
+        assertArrayEquals(original, reader.readColors(bmpFile.toString()));
+    }
+
+    @Test
+    void testBmpReaderInvalidFile() throws IOException {
+        Path bmpFile = tempDir.resolve("invalid.bmp");
+        Files.write(bmpFile, new byte[100]);
+
+        PaletteReader reader = new BmpReader();
+        assertThrows(IllegalArgumentException.class, () -> {
+            reader.readColors(bmpFile.toString());
+        });
+    }
+
+    @Test
+    void testReadFromArchive() throws IOException {
+        byte[] palData = new byte[192];
+        palData[0] = (byte) 255;
+
+        Path zipFile = tempDir.resolve("palettes.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+            zip.putNextEntry(new ZipEntry("nested/test.pal"));
+            zip.write(palData);
+            zip.closeEntry();
+        }
+
+        String entry = zipFile + "!/nested/test.pal";
+        assertTrue(PalettePaths.isArchiveEntry(entry));
+        int[] colors = PaletteReaderFactory.createReader(entry).readColors(entry);
+        assertEquals(64, colors.length);
+        assertEquals(0xFF0000, colors[0]);
+
+        // Reading a missing entry fails like a missing file
+        assertThrows(IOException.class, () -> new PalReader().readColors(zipFile + "!/missing.pal"));
+    }
+
+    @Test
+    void testRewrittenArchiveIsReadAfresh() throws IOException {
+        Path zipFile = tempDir.resolve("rewritten.zip");
+        String entry = zipFile + "!/test.pal";
+        for (int value = 1; value <= 2; value++) {
+            byte[] palData = new byte[192];
+            palData[0] = (byte) value;
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(zipFile))) {
+                zip.putNextEntry(new ZipEntry("test.pal"));
+                zip.write(palData);
+                zip.closeEntry();
+            }
+            assertEquals(value << 16, new PalReader().readColors(entry)[0]);
+        }
+    }
+
+    @Test
+    void testAdditionalFormatsRoundTrip() throws IOException {
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 0x040302;
+        }
+
+        for (PaletteFormat format : List.of(PaletteFormat.JASC, PaletteFormat.RIFF, PaletteFormat.ACT, PaletteFormat.GPL)) {
+            Path file = tempDir.resolve("test-" + format.name().toLowerCase() + format.getExtension());
+            PaletteWriterFactory.createWriter(format).writeColors(colors, file);
+
+            // JASC and RIFF are read through the .pal reader, which detects them by header
+            assertArrayEquals(colors, PaletteReaderFactory.createReader(file.toString()).readColors(file.toString()), format.name());
+        }
+    }
+
+    @Test
+    void testReadIntoDestination() throws IOException {
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 0x010203;
+        }
+
+        // Every format, including BMP previews, can be read into a reused array
+        int[] dest = new int[64];
+        for (PaletteFormat format : PaletteFormat.values()) {
+            Path file = tempDir.resolve("dest-" + format.name().toLowerCase() + format.getExtension());
+            PaletteWriterFactory.createWriter(format).writeColors(colors, file);
+            Arrays.fill(dest, -1);
+            PaletteReaderFactory.createReader(file.toString()).readColors(file, dest);
+            assertArrayEquals(colors, dest, format.name());
+        }
+
+        Path palFile = tempDir.resolve("dest-pal.pal");
+        assertThrows(IllegalArgumentException.class, () -> new PalReader().readColors(palFile, new int[63]));
+    }
+
+    @Test
+    void testJascReader() {
+        StringBuilder jasc = new StringBuilder("JASC-PAL\n0100\n64\n");
+        jasc.append("255 0 0\n");
+        for (int i = 1; i < 64; i++) {
+            jasc.append("0 0 0\n");
+        }
+        int[] colors = new JascPalReader().parse(ascii(jasc.toString()));
+        assertEquals(0xFF0000, colors[0]);
+
+        PaletteFormatException e = assertThrows(PaletteFormatException.class,
+                () -> new JascPalReader().parse(ascii("JASC-PAL\r\n0100\r\n64\r\n255 0 x\r\n")));
+        assertEquals(4, e.getLine());
+        assertEquals(7, e.getColumn());
+
+        assertThrows(PaletteFormatException.class, () -> new JascPalReader().parse(ascii("JASC-PAL\n0100\n16\n")));
+        assertThrows(PaletteFormatException.class, () -> new JascPalReader().parse(ascii("JASC-PAL\n0100\n64\n256 0 0\n")));
+    }
+
+    @Test
+    void testGplReader() {
+        StringBuilder gpl = new StringBuilder("GIMP Palette\nName: Test\nColumns: 16\n#\n");
+        for (int i = 0; i < 64; i++) {
+            gpl.append(i == 0 ? "  0 255   0\tGreen\n" : "0 0 0\n");
+        }
+        int[] colors = new GplReader().parse(ascii(gpl.toString()));
+        assertEquals(0x00FF00, colors[0]);
+
+        PaletteFormatException e = assertThrows(PaletteFormatException.class,
+                () -> new GplReader().parse(ascii("GIMP Palette\n0 0 0\nName: late\n")));
+        assertEquals(3, e.getLine());
+        assertThrows(PaletteFormatException.class, () -> new GplReader().parse(ascii("GIMP Palette\n0 0 0\n")));
+    }
+
+    @Test
+    void testActReader() {
+        byte[] act = new byte[768];
+        act[0] = (byte) 255;
+        assertEquals(0xFF0000, new ActReader().parse(ByteBuffer.wrap(act))[0]);
+
+        byte[] extended = new byte[772];
+        extended[769] = 16;
+        assertThrows(PaletteFormatException.class, () -> new ActReader().parse(ByteBuffer.wrap(extended)));
+        assertThrows(PaletteFormatException.class, () -> new ActReader().parse(ByteBuffer.wrap(new byte[192])));
+    }
+
+    @Test
+    void testRiffReaderInvalid() {
+        assertThrows(PaletteFormatException.class, () -> new RiffPalReader().parse(ascii("RIFF\0\0\0\0WAVE")));
+        assertThrows(PaletteFormatException.class, () -> new RiffPalReader().parse(ascii("RIFF\4\0\0\0PAL ")));
+    }
+
+    private static ByteBuffer ascii(String content) {
+        return ByteBuffer.wrap(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
     @Test
     void testPaletteReaderFactory() {
         assertInstanceOf(PalReader.class, PaletteReaderFactory.createReader("test.pal"));
         assertInstanceOf(VhReader.class, PaletteReaderFactory.createReader("test.vh"));
+        assertInstanceOf(BmpReader.class, PaletteReaderFactory.createReader("test.bmp"));
         assertThrows(IllegalArgumentException.class, () -> {
             PaletteReaderFactory.createReader("test.txt");
         });
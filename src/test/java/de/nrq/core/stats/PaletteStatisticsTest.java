@@ -0,0 +1,106 @@
+package de.nrq.core.stats;
+
+import de.nrq.core.store.PaletteStore;
+import de.nrq.core.writer.PalWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteStatisticsTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Palette p: slot i gets a gray level depending on the slot, with every
+     * fourth palette shifted so colors repeat across the library.
+     */
+    private static void fill(int palette, int[] dest) {
+        for (int i = 0; i < dest.length; i++) {
+            int level = (i * 4 + palette % 4) & 0xFF;
+            dest[i] = level << 16 | level << 8 | level;
+        }
+    }
+
+    @Test
+    void testCountsMatchNaiveHistogram() throws IOException {
+        int count = 10_000;
+        PaletteStatistics statistics = PaletteStatistics.collect(count, PaletteStatisticsTest::fill);
+
+        Map<Integer, Integer> expected = new HashMap<>();
+        int[] colors = new int[64];
+        for (int p = 0; p < count; p++) {
+            fill(p, colors);
+            for (int color : colors) {
+                expected.merge(color, 1, Integer::sum);
+            }
+        }
+
+        assertEquals(count, statistics.getPalettes());
+        assertEquals(expected.size(), statistics.getDistinctColors());
+        expected.forEach((color, n) -> assertEquals(n, statistics.getCount(color)));
+
+        int[] top = statistics.getTopColors(3);
+        assertEquals(3, top.length);
+        int topCount = expected.values().stream().max(Integer::compare).orElseThrow();
+        assertEquals(topCount, statistics.getCount(top[0]));
+        assertTrue(statistics.getCount(top[1]) <= statistics.getCount(top[0]));
+    }
+
+    @Test
+    void testSlotAndRowLuminance() throws IOException {
+        PaletteStatistics statistics = PaletteStatistics.collect(4, PaletteStatisticsTest::fill);
+
+        // Slot 1 holds the levels 4 to 7 over the four palettes
+        assertEquals(0x060606, statistics.getMeanColor(1));
+        long[] luma = statistics.getLumaHistogram(1);
+        assertEquals(1, luma[4]);
+        assertEquals(1, luma[7]);
+        assertEquals(4, Arrays.stream(luma).sum());
+
+        // Each row spans 15 slots of 4 levels
+        for (int row = 0; row < 4; row++) {
+            assertEquals(60, statistics.getMaxRowSpread(row));
+            assertEquals(60.0, statistics.getMeanRowSpread(row), 1e-9);
+        }
+    }
+
+    @Test
+    void testFilesAndStore() throws IOException {
+        List<Path> files = new ArrayList<>();
+        int[] flat = new int[20 * 64];
+        int[] colors = new int[64];
+        for (int p = 0; p < 20; p++) {
+            fill(p, colors);
+            System.arraycopy(colors, 0, flat, p * 64, 64);
+            Path file = tempDir.resolve("p" + p + ".pal");
+            new PalWriter().writeColors(colors, file);
+            files.add(file);
+        }
+
+        PaletteStatistics fromFiles = PaletteStatistics.of(files);
+        PaletteStatistics fromStore = PaletteStatistics.of(PaletteStore.of(flat, PaletteStore.Layout.PLANAR));
+        assertEquals(fromFiles.getDistinctColors(), fromStore.getDistinctColors());
+        assertArrayEquals(fromFiles.getTopColors(5), fromStore.getTopColors(5));
+
+        StringWriter json = new StringWriter();
+        fromFiles.writeJson(json, 2);
+        assertTrue(json.toString().startsWith("{\"palettes\":20,\"colors\":1280,\"distinctColors\":"));
+        assertTrue(json.toString().contains("\"rows\":[{\"row\":0,"));
+        assertTrue(json.toString().contains("{\"slot\":63,\"meanColor\":\"#FEFEFE\""));
+
+        StringWriter csv = new StringWriter();
+        fromFiles.writeHistogramCsv(csv);
+        assertEquals(fromFiles.getDistinctColors() + 1, csv.toString().lines().count());
+        assertTrue(csv.toString().contains("#000000,5\n"));
+    }
+}
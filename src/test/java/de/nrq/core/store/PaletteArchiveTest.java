@@ -0,0 +1,141 @@
+package de.nrq.core.store;
+
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.core.format.PaletteFormatException;
+import de.nrq.core.reader.PaletteReaderFactory;
+import de.nrq.core.writer.PaletteWriterFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteArchiveTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Palettes like real ones: rows of smooth ramps with some noise, black slots mostly black.
+     */
+    private static int[] createPalettes(int count, long seed) {
+        Random random = new Random(seed);
+        int[] colors = new int[count * PaletteStore.COLORS];
+        for (int p = 0; p < count; p++) {
+            for (int row = 0; row < 4; row++) {
+                int r = random.nextInt(256);
+                int g = random.nextInt(256);
+                int b = random.nextInt(256);
+                int step = random.nextInt(9) - 4;
+                for (int col = 0; col < 16; col++) {
+                    int slot = row * 16 + col;
+                    int value = ((r + step * col) & 0xFF) << 16 | ((g + step * col + random.nextInt(3)) & 0xFF) << 8
+                            | ((b - step * col) & 0xFF);
+                    boolean black = ColorArrangement.isBlackSlot(slot) && random.nextInt(8) != 0;
+                    colors[p * PaletteStore.COLORS + slot] = black ? 0 : value;
+                }
+            }
+        }
+        return colors;
+    }
+
+    private static int[] randomPalettes(int count, long seed) {
+        Random random = new Random(seed);
+        int[] colors = new int[count * PaletteStore.COLORS];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt(0x1000000);
+        }
+        return colors;
+    }
+
+    private static int[] palette(int[] colors, int index) {
+        return Arrays.copyOfRange(colors, index * PaletteStore.COLORS, (index + 1) * PaletteStore.COLORS);
+    }
+
+    @Test
+    void testCodecRoundTrip() {
+        byte[] buffer = new byte[PaletteCodec.MAX_ENCODED_SIZE + PaletteCodec.PADDING];
+        int[] decoded = new int[PaletteStore.COLORS];
+        int[][] samples = {new int[PaletteStore.COLORS], palette(randomPalettes(1, 1), 0),
+                palette(createPalettes(1, 2), 0)};
+        Arrays.fill(samples[0], 0xFFFFFF);
+        for (int[] colors : samples) {
+            int size = PaletteCodec.encode(colors, 0, buffer, 0);
+            assertTrue(size <= PaletteCodec.MAX_ENCODED_SIZE);
+            assertEquals(size, PaletteCodec.decode(buffer, 0, decoded));
+            assertArrayEquals(colors, decoded);
+        }
+
+        // A single repeated color with black slots takes only the header
+        int[] flat = new int[PaletteStore.COLORS];
+        for (int slot = 0; slot < flat.length; slot++) {
+            flat[slot] = ColorArrangement.isBlackSlot(slot) ? 0 : 0x204060;
+        }
+        int size = PaletteCodec.encode(flat, 0, buffer, 0);
+        assertTrue(size < 16, "Flat palette takes " + size + " bytes");
+        PaletteCodec.decode(buffer, 0, decoded);
+        assertArrayEquals(flat, decoded);
+    }
+
+    @Test
+    void testArchiveRoundTrip() throws IOException {
+        for (int count : new int[]{0, 1, 255, 256, 257, 1000}) {
+            int[] colors = count % 2 == 0 ? createPalettes(count, count) : randomPalettes(count, count);
+            Path file = tempDir.resolve("library" + count + ".ppk");
+            PaletteArchive.write(colors, file);
+
+            PaletteArchive archive = PaletteArchive.open(file);
+            assertEquals(count, archive.size());
+            assertArrayEquals(colors, archive.toArray(), count + " palettes");
+            int[] dest = new int[PaletteStore.COLORS];
+            for (int i = count - 1; i >= 0; i -= 7) {
+                assertArrayEquals(palette(colors, i), archive.read(i, dest), "Palette " + i);
+            }
+            assertArrayEquals(PaletteArchive.toBytes(colors), java.nio.file.Files.readAllBytes(file));
+        }
+    }
+
+    @Test
+    void testCompression() {
+        int[] colors = createPalettes(2000, 3);
+        byte[] archive = PaletteArchive.toBytes(colors);
+        long raw = colors.length * 3L;
+        assertTrue(archive.length < raw * 0.6, String.format("%d of %d bytes", archive.length, raw));
+
+        // Random colors can't be compressed, but don't grow much either
+        int[] noise = randomPalettes(2000, 4);
+        assertTrue(PaletteArchive.toBytes(noise).length < noise.length * 3L * 1.08);
+    }
+
+    @Test
+    void testInvalidArchives() {
+        byte[] archive = PaletteArchive.toBytes(createPalettes(300, 5));
+        assertThrows(IllegalArgumentException.class, () -> PaletteArchive.wrap(ByteBuffer.wrap(new byte[10])));
+        assertThrows(IllegalArgumentException.class,
+                () -> PaletteArchive.wrap(ByteBuffer.wrap(Arrays.copyOf(archive, archive.length - 20))));
+        byte[] corrupt = archive.clone();
+        corrupt[0] = 'X';
+        assertThrows(IllegalArgumentException.class, () -> PaletteArchive.wrap(ByteBuffer.wrap(corrupt)));
+
+        PaletteArchive opened = PaletteArchive.wrap(ByteBuffer.wrap(archive));
+        assertThrows(IndexOutOfBoundsException.class, () -> opened.read(300));
+        assertThrows(IllegalArgumentException.class, () -> PaletteArchive.toBytes(new int[65]));
+    }
+
+    @Test
+    void testSinglePaletteFormat() throws IOException {
+        int[] colors = palette(createPalettes(1, 6), 0);
+        Path file = tempDir.resolve("single.ppk");
+        PaletteWriterFactory.createWriter(file.toString()).writeColors(colors, file);
+        assertArrayEquals(colors, PaletteReaderFactory.createReader(file.toString()).readColors(file.toString()));
+
+        Path library = tempDir.resolve("library.ppk");
+        PaletteArchive.write(createPalettes(3, 7), library);
+        assertThrows(PaletteFormatException.class,
+                () -> PaletteReaderFactory.createReader(library.toString()).readColors(library.toString()));
+    }
+}
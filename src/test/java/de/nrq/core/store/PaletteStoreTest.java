@@ -0,0 +1,116 @@
+package de.nrq.core.store;
+
+import de.nrq.core.color.ColorArrangement;
+import de.nrq.image.BmpBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private static int[] createPalettes(int count) {
+        int[] colors = new int[count * PaletteStore.COLORS];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = (int) ((i * 2654435761L) & 0xFFFFFF);
+        }
+        return colors;
+    }
+
+    private static int[] palette(int[] colors, int index) {
+        int[] palette = new int[PaletteStore.COLORS];
+        System.arraycopy(colors, index * PaletteStore.COLORS, palette, 0, PaletteStore.COLORS);
+        return palette;
+    }
+
+    @Test
+    void testAppendAndGrow() {
+        int[] colors = createPalettes(100);
+        for (PaletteStore.Layout layout : PaletteStore.Layout.values()) {
+            PaletteStore store = PaletteStore.create(layout, 1);
+            for (int p = 0; p < 100; p++) {
+                assertEquals(p, store.append(palette(colors, p)));
+            }
+            assertEquals(100, store.size());
+            assertArrayEquals(colors, store.toArray(), layout.name());
+            assertArrayEquals(palette(colors, 42), store.read(42, new int[64]));
+            assertEquals(colors[42 * 64 + 7], store.get(42, 7));
+        }
+        assertThrows(IllegalArgumentException.class, () -> PaletteStore.create(PaletteStore.Layout.PACKED).append(new int[10]));
+        assertThrows(IndexOutOfBoundsException.class, () -> PaletteStore.create(PaletteStore.Layout.PACKED).get(0, 0));
+    }
+
+    @Test
+    void testViewsAreConsumedWithoutCopy() throws IOException {
+        int[] colors = createPalettes(3);
+        PaletteStore store = PaletteStore.of(colors, PaletteStore.Layout.PACKED);
+
+        IntBuffer view = store.view(1);
+        assertEquals(64, view.remaining());
+        int[] vhColors = new int[64];
+        ColorArrangement.palToVhOrder(view, vhColors);
+        assertArrayEquals(ColorArrangement.palToVhOrder(palette(colors, 1)), vhColors);
+
+        ByteArrayOutputStream fromView = new ByteArrayOutputStream();
+        ByteArrayOutputStream fromArray = new ByteArrayOutputStream();
+        new BmpBuilder().writeBmp(view, fromView);
+        new BmpBuilder().writeBmp(palette(colors, 1), fromArray);
+        assertArrayEquals(fromArray.toByteArray(), fromView.toByteArray());
+
+        // The view reflects changes to the store
+        store.set(1, 0, 0x123456);
+        assertEquals(0x123456, view.get(0));
+        assertThrows(IllegalStateException.class, () -> PaletteStore.of(colors, PaletteStore.Layout.PLANAR).view(0));
+    }
+
+    @Test
+    void testBulkOperations() {
+        int[] colors = createPalettes(5000);
+        for (PaletteStore.Layout layout : PaletteStore.Layout.values()) {
+            PaletteStore store = PaletteStore.of(colors, layout);
+            store.permute(ColorArrangement.PAL_TO_VH);
+            assertArrayEquals(ColorArrangement.palToVhOrder(palette(colors, 4321)), store.read(4321, new int[64]));
+
+            store.transform(color -> color ^ 0xFFFFFF);
+            assertEquals(ColorArrangement.palToVhOrder(palette(colors, 17))[3] ^ 0xFFFFFF, store.get(17, 3));
+        }
+    }
+
+    @Test
+    void testSaveAndMap() throws IOException {
+        int[] colors = createPalettes(10);
+        for (PaletteStore.Layout layout : PaletteStore.Layout.values()) {
+            Path file = tempDir.resolve(layout.name() + ".pst");
+            PaletteStore.of(colors, layout).save(file);
+            assertEquals(PaletteStore.HEADER_SIZE + 10L * 64 * (layout == PaletteStore.Layout.PACKED ? 4 : 3),
+                    Files.size(file));
+
+            PaletteStore readOnly = PaletteStore.map(file, false);
+            assertEquals(layout, readOnly.getLayout());
+            assertArrayEquals(colors, readOnly.toArray());
+            assertThrows(ReadOnlyBufferException.class, () -> readOnly.set(0, 0, 0));
+
+            // Writes through a writable mapping reach the file
+            PaletteStore.map(file, true).set(9, 63, 0xABCDEF);
+            assertEquals(0xABCDEF, PaletteStore.map(file, false).get(9, 63));
+
+            // Appending detaches the store from the file
+            readOnly.append(palette(colors, 0));
+            assertEquals(11, readOnly.size());
+            assertEquals(10, PaletteStore.map(file, false).size());
+        }
+
+        Path invalid = tempDir.resolve("invalid.pst");
+        Files.write(invalid, new byte[20]);
+        assertThrows(IllegalArgumentException.class, () -> PaletteStore.map(invalid, false));
+    }
+}
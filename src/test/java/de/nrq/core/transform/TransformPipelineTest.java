@@ -0,0 +1,113 @@
+package de.nrq.core.transform;
+
+import de.nrq.core.reader.JascPalReader;
+import de.nrq.core.reader.PalReader;
+import de.nrq.core.writer.JascPalWriter;
+import de.nrq.core.writer.PalWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransformPipelineTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testChannelTables() {
+        TransformPipeline limited = TransformPipeline.builder().limitedRange().build();
+        assertFalse(limited.usesColorTable());
+        assertEquals(0x101010, limited.apply(0x000000));
+        assertEquals(0xEBEBEB, limited.apply(0xFFFFFF));
+
+        // Converting to limited and back is the identity up to rounding
+        TransformPipeline roundTrip = TransformPipeline.parse("limited,full");
+        for (int v = 0; v < 256; v++) {
+            int channel = roundTrip.apply(v) & 0xFF;
+            assertTrue(Math.abs(channel - v) <= 1, "value " + v);
+        }
+
+        TransformPipeline levels = TransformPipeline.parse("levels=16:235:0:255");
+        assertEquals(0x00FF80, levels.apply(0x10EB7E) & 0xFFFFFF, "levels stretch");
+        assertEquals(0xBABABA, TransformPipeline.parse("gamma=2").apply(0x888888));
+    }
+
+    @Test
+    void testFusedChainMatchesSequentialSteps() {
+        TransformPipeline gamma = TransformPipeline.parse("gamma=1.3");
+        TransformPipeline limited = TransformPipeline.parse("limited");
+        TransformPipeline fused = TransformPipeline.parse("gamma=1.3,limited");
+        for (int v = 0; v < 256; v++) {
+            int sequential = limited.apply(gamma.apply(v));
+            assertTrue(Math.abs((fused.apply(v) & 0xFF) - (sequential & 0xFF)) <= 1, "value " + v);
+        }
+    }
+
+    @Test
+    void testColorTable() {
+        TransformPipeline gray = TransformPipeline.parse("saturation=0");
+        assertTrue(gray.usesColorTable());
+        int color = gray.apply(0xFF0000);
+        assertEquals(color >> 16, (color >> 8) & 0xFF);
+        assertEquals(color >> 16, color & 0xFF);
+        assertTrue(Math.abs((color >> 16) - 54) <= 1, "Rec. 709 luma of red");
+
+        // Neutral saturation keeps every color within rounding
+        TransformPipeline neutral = TransformPipeline.parse("gamma=1.2,saturation=1");
+        TransformPipeline gammaOnly = TransformPipeline.parse("gamma=1.2");
+        for (int c = 0; c < 0x1000000; c += 0x010307) {
+            int expected = gammaOnly.apply(c);
+            int actual = neutral.apply(c);
+            for (int shift = 0; shift < 24; shift += 8) {
+                assertTrue(Math.abs(((expected >> shift) & 0xFF) - ((actual >> shift) & 0xFF)) <= 1,
+                        String.format("color %06X", c));
+            }
+        }
+    }
+
+    @Test
+    void testInvalidChains() {
+        assertThrows(IllegalArgumentException.class, () -> TransformPipeline.parse("sharpen=2"));
+        assertThrows(IllegalArgumentException.class, () -> TransformPipeline.parse("gamma=0"));
+        assertThrows(IllegalArgumentException.class, () -> TransformPipeline.parse("gamma=x"));
+        assertThrows(IllegalArgumentException.class, () -> TransformPipeline.parse("levels=1:2"));
+    }
+
+    @Test
+    void testTransformFiles() throws IOException {
+        int[] colors = new int[64];
+        colors[0] = 0xFFFFFF;
+        Path input = tempDir.resolve("in");
+        Files.createDirectories(input.resolve("sub"));
+        new PalWriter().writeColors(colors, input.resolve("raw.pal"));
+        new JascPalWriter().writeColors(colors, input.resolve("sub/jasc.pal"));
+
+        Path output = tempDir.resolve("out");
+        assertEquals(2, TransformPipeline.parse("limited").transformFiles(input, output));
+
+        int[] raw = new PalReader().readColors(output.resolve("raw.pal").toString());
+        assertEquals(0xEBEBEB, raw[0]);
+        assertEquals(0x101010, raw[1]);
+        // The JASC variant is kept
+        byte[] jasc = Files.readAllBytes(output.resolve("sub/jasc.pal"));
+        assertEquals(0xEBEBEB, new JascPalReader().parse(ByteBuffer.wrap(jasc))[0]);
+    }
+
+    @Test
+    void testTransformFilesRejectsEmptyInput() throws IOException {
+        Path input = Files.createDirectories(tempDir.resolve("empty"));
+        Files.write(input.resolve("shot.bmp"), new byte[16]);
+        TransformPipeline pipeline = TransformPipeline.parse("limited");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> pipeline.transformFiles(input, tempDir.resolve("out")));
+        assertTrue(e.getMessage().contains("No palette files found"));
+        assertThrows(IllegalArgumentException.class,
+                () -> pipeline.transformFiles(input.resolve("shot.bmp"), tempDir.resolve("out.bmp")));
+    }
+}
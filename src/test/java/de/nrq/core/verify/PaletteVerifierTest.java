@@ -0,0 +1,154 @@
+package de.nrq.core.verify;
+
+import de.nrq.core.reader.PalReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteVerifierTest {
+    @TempDir
+    Path tempDir;
+
+    private final PaletteVerifier verifier = new PaletteVerifier();
+
+    private static String vhContent(int count) {
+        StringBuilder vhContent = new StringBuilder();
+        vhContent.append("wire [23:0] lumacode_data_3s[0:63] = '{ ");
+        for (int i = 0; i < count; i++) {
+            vhContent.append(i < 8 ? "24'h000000" : "24'h123456");
+            if (i < count - 1) vhContent.append(", ");
+        }
+        vhContent.append("};");
+        return vhContent.toString();
+    }
+
+    @Test
+    void testValidFiles() throws IOException {
+        Path palFile = tempDir.resolve("valid.pal");
+        Files.write(palFile, new byte[192]);
+        Path vhFile = tempDir.resolve("valid.vh");
+        Files.writeString(vhFile, vhContent(64));
+
+        assertTrue(verifier.verify(palFile).isValid());
+        assertTrue(verifier.verify(vhFile).isValid());
+    }
+
+    @Test
+    void testOversizedPal() throws IOException {
+        Path palFile = tempDir.resolve("big.pal");
+        Files.write(palFile, new byte[195]);
+
+        List<VerificationResult.Issue> issues = verifier.verify(palFile).issues();
+        assertEquals(1, issues.size());
+        assertEquals(VerificationResult.Type.SIZE, issues.get(0).type());
+    }
+
+    @Test
+    void testHugeFilesAreNotRead() throws IOException {
+        // Sparse files, so the sizes don't cost disk space
+        Path palFile = tempDir.resolve("huge.pal");
+        Path vhFile = tempDir.resolve("huge.vh");
+        for (Path file : List.of(palFile, vhFile)) {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(1L << 32);
+            }
+        }
+        Path variantFile = tempDir.resolve("variant.pal");
+        Files.write(variantFile, new byte[PalReader.MAX_VARIANT_SIZE + 1]);
+
+        for (Path file : List.of(palFile, vhFile, variantFile)) {
+            List<VerificationResult.Issue> issues = verifier.verify(file).issues();
+            assertEquals(1, issues.size());
+            assertEquals(VerificationResult.Type.SIZE, issues.get(0).type());
+        }
+    }
+
+    @Test
+    void testPalBlackSlot() throws IOException {
+        byte[] palData = new byte[192];
+        palData[15 * 3] = (byte) 0xFF; // Last color of first row is reserved for black
+        Path palFile = tempDir.resolve("slot.pal");
+        Files.write(palFile, palData);
+
+        List<VerificationResult.Issue> issues = verifier.verify(palFile).issues();
+        assertEquals(1, issues.size());
+        assertEquals(VerificationResult.Type.BLACK_SLOT, issues.get(0).type());
+        assertEquals(15, issues.get(0).slot());
+    }
+
+    @Test
+    void testVhSyntaxErrorPosition() throws IOException {
+        Path vhFile = tempDir.resolve("syntax.vh");
+        Files.writeString(vhFile, "wire [23:0] lumacode_data_3s[0:63] = '{\n  24'h000000,\n  24'h00G000\n};");
+
+        List<VerificationResult.Issue> issues = verifier.verify(vhFile).issues();
+        assertEquals(1, issues.size());
+        VerificationResult.Issue issue = issues.get(0);
+        assertEquals(VerificationResult.Type.SYNTAX, issue.type());
+        assertEquals(3, issue.line());
+        assertEquals(9, issue.column());
+    }
+
+    @Test
+    void testVhCount() throws IOException {
+        Path missing = tempDir.resolve("missing.vh");
+        Files.writeString(missing, vhContent(63));
+        Path surplus = tempDir.resolve("surplus.vh");
+        Files.writeString(surplus, vhContent(65));
+
+        assertEquals(VerificationResult.Type.COUNT, verifier.verify(missing).issues().get(0).type());
+        assertEquals(VerificationResult.Type.COUNT, verifier.verify(surplus).issues().get(0).type());
+    }
+
+    @Test
+    void testVerifyTree() throws IOException {
+        Path subDir = Files.createDirectories(tempDir.resolve("a/b"));
+        Files.write(tempDir.resolve("one.pal"), new byte[192]);
+        Files.write(subDir.resolve("two.pal"), new byte[10]);
+        Files.writeString(subDir.resolve("three.vh"), vhContent(64));
+        Files.writeString(subDir.resolve("notes.txt"), "ignored");
+
+        ConcurrentLinkedQueue<VerificationResult> results = new ConcurrentLinkedQueue<>();
+        PaletteVerifier.Summary summary = verifier.verifyTree(tempDir, results::add);
+
+        assertEquals(3, summary.files());
+        assertEquals(1, summary.invalid());
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    void testToJson() {
+        VerificationResult result = new VerificationResult("dir/\"x\".vh", List.of(
+                new VerificationResult.Issue(VerificationResult.Type.SYNTAX, "Bad", 2, 7, -1)));
+
+        assertEquals("{\"file\":\"dir/\\\"x\\\".vh\",\"valid\":false,\"issues\":"
+                + "[{\"type\":\"syntax\",\"message\":\"Bad\",\"line\":2,\"column\":7}]}", result.toJson());
+    }
+
+    @Test
+    void testAdditionalFormats() throws IOException {
+        StringBuilder jasc = new StringBuilder("JASC-PAL\n0100\n64\n");
+        for (int i = 0; i < 64; i++) {
+            jasc.append(i == 14 ? "1 2 3\n" : "0 0 0\n");
+        }
+        Path jascFile = tempDir.resolve("jasc.pal");
+        Files.writeString(jascFile, jasc.toString());
+        VerificationResult result = verifier.verify(jascFile);
+        assertEquals(1, result.issues().size());
+        assertEquals(VerificationResult.Type.BLACK_SLOT, result.issues().get(0).type());
+
+        Path gplFile = tempDir.resolve("broken.gpl");
+        Files.writeString(gplFile, "GIMP Palette\n0 0 x\n");
+        result = verifier.verify(gplFile);
+        assertEquals(VerificationResult.Type.SYNTAX, result.issues().get(0).type());
+        assertEquals(2, result.issues().get(0).line());
+    }
+}
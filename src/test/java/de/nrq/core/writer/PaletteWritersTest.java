@@ -0,0 +1,56 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.reader.PalReader;
+import de.nrq.core.reader.VhReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteWritersTest {
+    @TempDir
+    Path tempDir;
+
+    private static int[] createColors() {
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 0x030201;
+        }
+        return colors;
+    }
+
+    @Test
+    void testPalRoundTrip() throws IOException {
+        int[] colors = createColors();
+        Path palFile = tempDir.resolve("test.pal");
+        new PalWriter().writeColors(colors, palFile);
+
+        assertArrayEquals(colors, new PalReader().readColors(palFile.toString()));
+    }
+
+    @Test
+    void testVhRoundTrip() throws IOException {
+        int[] colors = createColors();
+        Path vhFile = tempDir.resolve("test.vh");
+        new VhWriter().writeColors(colors, vhFile);
+
+        assertArrayEquals(colors, new VhReader().readColors(vhFile.toString()));
+    }
+
+    @Test
+    void testInvalidColors() {
+        assertThrows(IllegalArgumentException.class, () -> new PalWriter().toBytes(new int[63]));
+        assertThrows(IllegalArgumentException.class, () -> new VhWriter().toBytes(null));
+    }
+
+    @Test
+    void testPaletteWriterFactory() {
+        assertInstanceOf(PalWriter.class, PaletteWriterFactory.createWriter("test.pal"));
+        assertInstanceOf(VhWriter.class, PaletteWriterFactory.createWriter("test.vh"));
+        assertInstanceOf(BmpWriter.class, PaletteWriterFactory.createWriter("test.bmp"));
+        assertThrows(IllegalArgumentException.class, () -> PaletteWriterFactory.createWriter("test.txt"));
+    }
+}
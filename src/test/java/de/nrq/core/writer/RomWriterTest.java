@@ -0,0 +1,118 @@
+package de.nrq.core.writer;
+
+import de.nrq.core.color.ColorArrangement;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RomWriterTest {
+    private static int[] createPalettes(int count) {
+        int[] colors = new int[count * 64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = (i * 0x030201 + i / 64 * 0x101010) & 0xFFFFFF;
+        }
+        return colors;
+    }
+
+    private static List<String> writeLines(RomFormat format, int[] palettes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new RomWriter(format).writeRom(palettes, out);
+        return out.toString(StandardCharsets.US_ASCII).lines().toList();
+    }
+
+    /**
+     * Expected words of the ROM: every palette in VH order.
+     */
+    private static int[] expectedWords(int[] palettes) {
+        int[] words = new int[palettes.length];
+        for (int p = 0; p < palettes.length / 64; p++) {
+            int[] vh = ColorArrangement.palToVhOrder(Arrays.copyOfRange(palettes, p * 64, p * 64 + 64));
+            System.arraycopy(vh, 0, words, p * 64, 64);
+        }
+        return words;
+    }
+
+    @Test
+    void testHex() throws IOException {
+        int[] palettes = createPalettes(3);
+        int[] words = writeLines(RomFormat.HEX, palettes).stream()
+                .filter(line -> !line.startsWith("//"))
+                .mapToInt(line -> Integer.parseInt(line, 16))
+                .toArray();
+
+        assertArrayEquals(expectedWords(palettes), words);
+    }
+
+    @Test
+    void testMif() throws IOException {
+        int[] palettes = createPalettes(5);
+        List<String> lines = writeLines(RomFormat.MIF, palettes);
+
+        assertTrue(lines.contains("DEPTH = 320;"));
+        assertTrue(lines.contains("WIDTH = 24;"));
+        assertEquals("END;", lines.get(lines.size() - 1));
+        int[] expected = expectedWords(palettes);
+        List<String> content = lines.stream().filter(line -> line.contains(" : ")).toList();
+        assertEquals(expected.length, content.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(String.format("%03X : %06X;", i, expected[i]), content.get(i));
+        }
+    }
+
+    @Test
+    void testCoe() throws IOException {
+        int[] palettes = createPalettes(2);
+        List<String> lines = writeLines(RomFormat.COE, palettes);
+
+        int start = lines.indexOf("memory_initialization_vector=") + 1;
+        List<String> vector = lines.subList(start, lines.size());
+        int[] expected = expectedWords(palettes);
+        assertEquals(expected.length, vector.size());
+        for (int i = 0; i < expected.length; i++) {
+            String separator = i == expected.length - 1 ? ";" : ",";
+            assertEquals(String.format("%06X", expected[i]) + separator, vector.get(i));
+        }
+    }
+
+    @Test
+    void testLargeRomSpansBuffer() throws IOException {
+        int[] palettes = createPalettes(1000);
+        List<String> lines = writeLines(RomFormat.HEX, palettes);
+
+        assertEquals(1 + 1000 * 65, lines.size());
+        assertEquals(String.format("%06X", expectedWords(palettes)[palettes.length - 1]),
+                lines.get(lines.size() - 1));
+    }
+
+    @Test
+    void testSinglePalette() throws IOException {
+        int[] colors = createPalettes(1);
+        ByteArrayOutputStream rom = new ByteArrayOutputStream();
+        new RomWriter(RomFormat.HEX).writeRom(colors, rom);
+
+        assertArrayEquals(rom.toByteArray(), new RomWriter(RomFormat.HEX).toBytes(colors));
+        assertThrows(IllegalArgumentException.class, () -> new RomWriter(RomFormat.MIF).toBytes(new int[63]));
+    }
+
+    @Test
+    void testInvalidRom() {
+        RomWriter writer = new RomWriter(RomFormat.COE);
+        assertThrows(IllegalArgumentException.class, () -> writer.writeRom(new int[0], new ByteArrayOutputStream()));
+        assertThrows(IllegalArgumentException.class, () -> writer.writeRom(new int[100], new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void testRomFormat() {
+        assertEquals(RomFormat.MIF, RomFormat.fromFileName("palettes.MIF"));
+        assertEquals(RomFormat.COE, RomFormat.fromFileName("palettes.coe"));
+        assertEquals(RomFormat.HEX, RomFormat.fromName("hex"));
+        assertThrows(IllegalArgumentException.class, () -> RomFormat.fromFileName("palettes.bin"));
+        assertThrows(IllegalArgumentException.class, () -> RomFormat.fromName("bin"));
+    }
+}
@@ -0,0 +1,91 @@
+package de.nrq.image;
+
+import de.nrq.core.color.ColorConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtlasRendererTest {
+    @TempDir
+    Path tempDir;
+
+    private List<Path> createPalettes(int count) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int p = 0; p < count; p++) {
+            int[] colors = new int[64];
+            for (int i = 0; i < 64; i++) {
+                colors[i] = (p << 16) | i;  // Palette number in red, entry in blue
+            }
+            Path file = tempDir.resolve(String.format("p%03d.pal", p));
+            Files.write(file, ColorConverter.intArrayToRgbBytes(colors));
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static int pixel(byte[] data, BmpHeader header, int x, int y) {
+        int pos = (int) header.getRowOffset(y) + x * 3;
+        return ((data[pos + 2] & 0xFF) << 16) | ((data[pos + 1] & 0xFF) << 8) | (data[pos] & 0xFF);
+    }
+
+    @Test
+    void testRender() throws IOException {
+        List<Path> files = createPalettes(7);
+        Path output = tempDir.resolve("atlas.bmp");
+        new AtlasRenderer(3, 3, 1).render(files, output);
+
+        byte[] data = Files.readAllBytes(output);
+        BmpHeader header = BmpHeader.read(ByteBuffer.wrap(data));
+        assertEquals(3 * (16 * 3 + 1) + 1, header.getWidth());
+        assertEquals(3 * (4 * 3 + 1) + 1, header.getHeight());  // 7 palettes in 3 rows
+        assertEquals(header.getFileSize(), data.length);
+
+        // Check the center of every square of every palette
+        for (int p = 0; p < 7; p++) {
+            int left = 1 + (p % 3) * 49;
+            int top = 1 + (p / 3) * 13;
+            for (int i = 0; i < 64; i++) {
+                int x = left + (i % 16) * 3 + 1;
+                int y = top + (i / 16) * 3 + 1;
+                assertEquals((p << 16) | i, pixel(data, header, x, y), "Palette " + p + " color " + i);
+            }
+        }
+        // Gaps and empty cells show the background
+        assertEquals(0x808080, pixel(data, header, 0, 0));
+        assertEquals(0x808080, pixel(data, header, header.getWidth() - 2, header.getHeight() - 2));
+    }
+
+    @Test
+    void testAutomaticColumns() {
+        AtlasRenderer renderer = new AtlasRenderer(1, 0, 0);
+        assertEquals(1, renderer.getColumns(1));
+        assertEquals(50, renderer.getColumns(10_000));
+        assertEquals(4, new AtlasRenderer(1, 4, 0).getColumns(100));
+    }
+
+    @Test
+    void testInvalidInput() {
+        assertThrows(IllegalArgumentException.class, () -> new AtlasRenderer(0, 0, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AtlasRenderer(1, 0, 0).render(List.of(), tempDir.resolve("empty.bmp")));
+
+        // Dimensions that overflow int are rejected before anything is read or written
+        List<Path> palettes = List.of(tempDir.resolve("missing.pal"));
+        Path output = tempDir.resolve("huge.bmp");
+        for (AtlasRenderer renderer : List.of(new AtlasRenderer(Integer.MAX_VALUE / 8, 0, 0),
+                new AtlasRenderer(1, 0, Integer.MAX_VALUE))) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> renderer.render(palettes, output));
+            assertEquals("Atlas is too large", e.getMessage());
+        }
+        assertFalse(Files.exists(output));
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -97,4 +98,32 @@ class BmpBuilderTest {
         assertEquals(480, builder.getImageWidth());  // 16 * 30
         assertEquals(120, builder.getImageHeight()); // 4 * 30
     }
-}
\ No newline at end of file
+
+    @Test
+    void testUpdateBmpFile() throws IOException {
+        builder.setSquareSize(6);
+        Path bmpFile = tempDir.resolve("update.bmp");
+        builder.createBmpFile(testColors, bmpFile.toString());
+
+        assertEquals(0, builder.updateBmpFile(testColors, bmpFile));
+
+        int[] changed = testColors.clone();
+        changed[1] = 0x123456;
+        changed[63] = 0xABCDEF;
+        assertEquals(2, builder.updateBmpFile(changed, bmpFile));
+
+        // The patched file is identical to a freshly written one
+        Path expectedFile = tempDir.resolve("expected.bmp");
+        builder.createBmpFile(changed, expectedFile.toString());
+        assertArrayEquals(Files.readAllBytes(expectedFile), Files.readAllBytes(bmpFile));
+    }
+
+    @Test
+    void testUpdateBmpFileWithOtherSize() throws IOException {
+        Path bmpFile = tempDir.resolve("other.bmp");
+        builder.createBmpFile(testColors, bmpFile.toString());
+
+        builder.setSquareSize(4);
+        assertThrows(IllegalArgumentException.class, () -> builder.updateBmpFile(testColors, bmpFile));
+    }
+}
@@ -0,0 +1,174 @@
+package de.nrq.image;
+
+import de.nrq.core.reader.BmpReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class BmpEncoderTest {
+    @TempDir
+    Path tempDir;
+
+    private static int[] colors(int seed) {
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = (i * 0x040404 + seed * 0x010203) & 0xFFFFFF;
+        }
+        return colors;
+    }
+
+    @Test
+    void testTargetsProduceSameBytes() throws IOException {
+        int[] colors = colors(1);
+        for (BmpConfig config : List.of(BmpConfig.DEFAULT, new BmpConfig(7, BmpConfig.Layout.GRID_8X8, 24),
+                new BmpConfig(3, BmpConfig.Layout.GRID_16X4, 32), new BmpConfig(90, BmpConfig.Layout.GRID_16X4, 24))) {
+            BmpEncoder encoder = new BmpEncoder(config);
+            byte[] expected = encoder.toBytes(colors);
+            assertEquals(encoder.getEncodedSize(), expected.length);
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            encoder.encode(colors, stream);
+            assertArrayEquals(expected, stream.toByteArray(), config + " stream");
+
+            ByteArrayOutputStream channel = new ByteArrayOutputStream();
+            encoder.encode(colors, Channels.newChannel(channel));
+            assertArrayEquals(expected, channel.toByteArray(), config + " channel");
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(expected.length + 10).position(10);
+            encoder.encode(colors, direct);
+            assertEquals(direct.capacity(), direct.position());
+            byte[] fromDirect = new byte[expected.length];
+            direct.get(10, fromDirect);
+            assertArrayEquals(expected, fromDirect, config + " direct buffer");
+
+            // Every layout and depth reads back as the same palette
+            assertArrayEquals(colors, new BmpReader().parse(ByteBuffer.wrap(expected)), config + " read back");
+        }
+    }
+
+    @Test
+    void testHeader() {
+        BmpEncoder encoder = new BmpEncoder(new BmpConfig(5, BmpConfig.Layout.GRID_8X8, 32));
+        BmpHeader header = BmpHeader.read(ByteBuffer.wrap(encoder.toBytes(colors(2))));
+        assertEquals(40, header.getWidth());
+        assertEquals(40, header.getHeight());
+        assertEquals(32, header.getBitsPerPixel());
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new BmpConfig(0, BmpConfig.Layout.GRID_16X4, 24));
+        assertThrows(IllegalArgumentException.class, () -> BmpConfig.DEFAULT.withBitsPerPixel(16));
+        assertThrows(IllegalArgumentException.class, () -> BmpConfig.Layout.fromName("4x16"));
+        assertEquals(BmpConfig.Layout.GRID_8X8, BmpConfig.Layout.fromName("8X8"));
+        assertThrows(IllegalArgumentException.class, () -> BmpEncoder.DEFAULT.toBytes(new int[63]));
+        assertThrows(IllegalArgumentException.class,
+                () -> BmpEncoder.DEFAULT.encode(colors(0), ByteBuffer.allocate(100)));
+    }
+
+    @Test
+    void testUpdate() throws IOException {
+        BmpEncoder encoder = new BmpEncoder(new BmpConfig(4, BmpConfig.Layout.GRID_8X8, 32));
+        Path file = tempDir.resolve("update.bmp");
+        int[] colors = colors(3);
+        encoder.encode(colors, file);
+
+        int[] changed = colors.clone();
+        changed[9] = 0xFEDCBA;
+        assertEquals(1, encoder.update(changed, file));
+        assertArrayEquals(encoder.toBytes(changed), Files.readAllBytes(file));
+
+        BmpEncoder other = new BmpEncoder(new BmpConfig(4, BmpConfig.Layout.GRID_8X8, 24));
+        assertThrows(IllegalArgumentException.class, () -> other.update(changed, file));
+    }
+
+    @Test
+    void testSharedEncoderUnderContention() throws Exception {
+        BmpEncoder encoder = new BmpEncoder(BmpConfig.DEFAULT.withSquareSize(12));
+        int threads = 8;
+        int iterations = 500;
+        byte[][] expected = new byte[threads][];
+        for (int t = 0; t < threads; t++) {
+            expected[t] = encoder.toBytes(colors(t));
+        }
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    for (int i = 0; i < iterations; i++) {
+                        out.reset();
+                        encoder.encode(colors(thread), out);
+                        if (!Arrays.equals(expected[thread], out.toByteArray())) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get(), "Concurrent encoding produced a wrong image");
+            }
+        }
+    }
+
+    @Test
+    void testThroughputScalesWithThreads() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        assumeTrue(cores >= 4, "Needs at least 4 cores");
+
+        BmpEncoder encoder = BmpEncoder.DEFAULT;
+        int[] colors = colors(4);
+        ByteBuffer[] targets = new ByteBuffer[4];
+        for (int t = 0; t < targets.length; t++) {
+            targets[t] = ByteBuffer.allocate(encoder.getEncodedSize());
+        }
+
+        // Warm up, then compare the time for the same work per thread on 1 and 4 threads
+        measure(encoder, colors, targets, 1, 2000);
+        long single = measure(encoder, colors, targets, 1, 2000);
+        long parallel = measure(encoder, colors, targets, 4, 2000);
+        // With linear scaling both take the same time; allow for noisy machines
+        assertTrue(parallel < single * 2, String.format("1 thread: %d ms, 4 threads: %d ms",
+                single / 1_000_000, parallel / 1_000_000));
+    }
+
+    private static long measure(BmpEncoder encoder, int[] colors, ByteBuffer[] targets, int threads, int iterations)
+            throws Exception {
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                ByteBuffer target = targets[t];
+                tasks.add(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        encoder.encode(colors, target.clear());
+                    }
+                    return null;
+                });
+            }
+            long start = System.nanoTime();
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+            return System.nanoTime() - start;
+        }
+    }
+}
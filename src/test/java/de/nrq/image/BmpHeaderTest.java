@@ -0,0 +1,34 @@
+package de.nrq.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BmpHeaderTest {
+    @Test
+    void testHeaderRoundTrip() {
+        BmpHeader header = BmpHeader.of(801, 200);
+        BmpHeader parsed = BmpHeader.read(ByteBuffer.wrap(header.toBytes()));
+
+        assertEquals(801, parsed.getWidth());
+        assertEquals(200, parsed.getHeight());
+        assertEquals(2404, parsed.getRowSize());  // 801 * 3 padded to a multiple of 4
+        assertEquals(BmpHeader.SIZE + 2404L * 199, parsed.getRowOffset(0));  // Bottom-up
+        assertThrows(IllegalArgumentException.class, () -> BmpHeader.read(ByteBuffer.wrap(new byte[54])));
+    }
+
+    @Test
+    void testTopDown() {
+        byte[] bytes = BmpHeader.of(16, 4).toBytes();
+        bytes[22] = (byte) 0xFC;  // Height -4 (little-endian), rows stored top-down
+        bytes[23] = (byte) 0xFF;
+        bytes[24] = (byte) 0xFF;
+        bytes[25] = (byte) 0xFF;
+        BmpHeader header = BmpHeader.read(ByteBuffer.wrap(bytes));
+
+        assertEquals(4, header.getHeight());
+        assertEquals(BmpHeader.SIZE, header.getRowOffset(0));
+    }
+}
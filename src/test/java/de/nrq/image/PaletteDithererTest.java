@@ -0,0 +1,134 @@
+package de.nrq.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteDithererTest {
+    private static final int[] BLACK_WHITE = {0x000000, 0xFFFFFF};
+
+    @TempDir
+    Path tempDir;
+
+    private static int[] randomImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+
+    private static int[] randomPalette(long seed) {
+        Random random = new Random(seed);
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt(0x1000000);
+        }
+        return colors;
+    }
+
+    @Test
+    void testPaletteColorsUnchanged() {
+        int[] palette = randomPalette(1);
+        int[] pixels = new int[50 * 20];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = palette[i % palette.length];
+        }
+        // Without quantization error there is nothing to diffuse
+        assertArrayEquals(pixels, new PaletteDitherer(palette, PaletteDitherer.Method.FLOYD_STEINBERG, 3)
+                .dither(pixels, 50, 20));
+    }
+
+    @Test
+    void testWavefrontMatchesSequential() {
+        int width = 301;  // Not a multiple of the block size
+        int height = 97;
+        int[] pixels = randomImage(width, height, 2);
+        int[] palette = randomPalette(3);
+
+        int[] sequential = new PaletteDitherer(palette, PaletteDitherer.Method.FLOYD_STEINBERG, 1)
+                .dither(pixels, width, height);
+        for (int threads : new int[]{2, 3, 8, 200}) {
+            assertArrayEquals(sequential, new PaletteDitherer(palette, PaletteDitherer.Method.FLOYD_STEINBERG, threads)
+                    .dither(pixels, width, height), threads + " threads");
+        }
+    }
+
+    @Test
+    void testGrayBecomesHalftone() {
+        int[] pixels = new int[64 * 64];
+        Arrays.fill(pixels, 0x808080);
+        for (PaletteDitherer.Method method : PaletteDitherer.Method.values()) {
+            int[] result = new PaletteDitherer(BLACK_WHITE, method, 4).dither(pixels, 64, 64);
+            long white = Arrays.stream(result).filter(color -> color == 0xFFFFFF).count();
+            assertEquals(0, Arrays.stream(result).filter(color -> color != 0xFFFFFF && color != 0).count());
+            // Mid gray is rendered as about half white pixels
+            assertTrue(Math.abs(white - pixels.length / 2) < pixels.length / 16, method + ": " + white);
+        }
+    }
+
+    @Test
+    void testOrderedIsDeterministic() {
+        int[] pixels = randomImage(40, 30, 4);
+        int[] palette = randomPalette(5);
+        int[] first = new PaletteDitherer(palette, PaletteDitherer.Method.ORDERED, 1).dither(pixels, 40, 30);
+        int[] second = new PaletteDitherer(palette, PaletteDitherer.Method.ORDERED, 8).dither(pixels, 40, 30);
+        assertArrayEquals(first, second);
+    }
+
+    @Test
+    void testDitherFile() throws IOException {
+        int width = 37;
+        int height = 11;
+        BmpHeader header = BmpHeader.of(width, height);
+        byte[] input = new byte[(int) header.getFileSize()];
+        ByteBuffer buffer = ByteBuffer.wrap(input);
+        header.write(buffer);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pos = (int) header.getRowOffset(y) + x * 3;
+                int value = x * 255 / (width - 1);  // Horizontal gray ramp
+                input[pos] = (byte) value;
+                input[pos + 1] = (byte) value;
+                input[pos + 2] = (byte) value;
+            }
+        }
+        Path inputFile = tempDir.resolve("ramp.bmp");
+        Path outputFile = tempDir.resolve("ramp-dithered.bmp");
+        Files.write(inputFile, input);
+
+        new PaletteDitherer(BLACK_WHITE, PaletteDitherer.Method.FLOYD_STEINBERG, 2).dither(inputFile, outputFile);
+
+        byte[] output = Files.readAllBytes(outputFile);
+        BmpHeader result = BmpHeader.read(ByteBuffer.wrap(output));
+        assertEquals(width, result.getWidth());
+        assertEquals(height, result.getHeight());
+        assertEquals(result.getFileSize(), output.length);
+        for (int y = 0; y < height; y++) {
+            int pos = (int) result.getRowOffset(y);
+            assertEquals(0, output[pos], "Left edge is black");
+            assertEquals((byte) 0xFF, output[pos + (width - 1) * 3], "Right edge is white");
+        }
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaletteDitherer(new int[0], PaletteDitherer.Method.ORDERED, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaletteDitherer(BLACK_WHITE, PaletteDitherer.Method.ORDERED, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PaletteDitherer(BLACK_WHITE, PaletteDitherer.Method.ORDERED, 1).dither(new int[5], 2, 2));
+        assertThrows(IllegalArgumentException.class, () -> PaletteDitherer.Method.fromName("atkinson"));
+        assertEquals(PaletteDitherer.Method.FLOYD_STEINBERG, PaletteDitherer.Method.fromName("FS"));
+    }
+}
@@ -0,0 +1,80 @@
+package de.nrq.image;
+
+import de.nrq.core.color.ColorArrangement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteExtractorTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Creates a palette with 55 well-separated colors plus black.
+     */
+    private static int[] testPalette() {
+        int[] colors = new int[64];
+        int next = 1;
+        for (int i = 0; i < 64; i++) {
+            if (!ColorArrangement.isBlackSlot(i) && i != 0) {
+                int r = (next % 4) * 80;
+                int g = ((next / 4) % 4) * 80;
+                int b = (next / 16) * 80;
+                colors[i] = (r << 16) | (g << 8) | b;
+                next++;
+            }
+        }
+        return colors;
+    }
+
+    private static int distance(int a, int b) {
+        int dr = ((a >> 16) & 0xFF) - ((b >> 16) & 0xFF);
+        int dg = ((a >> 8) & 0xFF) - ((b >> 8) & 0xFF);
+        int db = (a & 0xFF) - (b & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+
+    @Test
+    void testExtractFromPreview() throws IOException {
+        int[] original = testPalette();
+        Path bmpFile = tempDir.resolve("preview.bmp");
+        BmpBuilder builder = new BmpBuilder();
+        builder.setSquareSize(8);
+        builder.createBmpFile(original, bmpFile.toFile());
+
+        for (int bits : new int[]{15, 18}) {
+            int[] extracted = new PaletteExtractor(bits).extract(bmpFile);
+
+            assertEquals(64, extracted.length);
+            for (int i = 0; i < 64; i++) {
+                if (ColorArrangement.isBlackSlot(i)) {
+                    assertEquals(0, extracted[i], "Black slot " + i);
+                    continue;
+                }
+                // Every extracted color must be close to one of the source colors
+                int best = Integer.MAX_VALUE;
+                for (int color : original) {
+                    best = Math.min(best, distance(extracted[i], color));
+                }
+                assertTrue(best <= 3 * 8 * 8, "Color " + i + " is far from the source palette");
+            }
+        }
+    }
+
+    @Test
+    void testInvalidResolution() {
+        assertThrows(IllegalArgumentException.class, () -> new PaletteExtractor(24));
+    }
+
+    @Test
+    void testNotABmp() throws IOException {
+        Path file = tempDir.resolve("fake.bmp");
+        Files.write(file, new byte[100]);
+        assertThrows(IllegalArgumentException.class, () -> new PaletteExtractor(18).extract(file));
+    }
+}
@@ -0,0 +1,184 @@
+package de.nrq.service;
+
+import de.nrq.core.format.PaletteFormat;
+import de.nrq.core.reader.BmpReader;
+import de.nrq.core.reader.VhReader;
+import de.nrq.core.writer.PalWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaletteServiceTest {
+    @TempDir
+    Path tempDir;
+
+    private static int[] createColors() {
+        int[] colors = new int[64];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = i * 0x030201;
+        }
+        return colors;
+    }
+
+    @Test
+    void testReadConvertRender() throws Exception {
+        int[] colors = createColors();
+        byte[] pal = new PalWriter().toBytes(colors);
+        Path palFile = tempDir.resolve("test.pal");
+        Files.write(palFile, pal);
+
+        try (PaletteService service = PaletteService.create()) {
+            assertArrayEquals(colors, service.read(palFile).join());
+            assertArrayEquals(colors, service.read(pal, PaletteFormat.PAL).join());
+
+            byte[] vh = service.convert(ByteBuffer.wrap(pal), PaletteFormat.PAL, PaletteFormat.VH).join();
+            assertArrayEquals(colors, new VhReader().parse(ByteBuffer.wrap(vh)));
+
+            Path vhFile = tempDir.resolve("test.vh");
+            service.convert(palFile, vhFile).join();
+            assertArrayEquals(colors, new VhReader().readColors(vhFile.toString()));
+
+            byte[] bmp = service.render(palFile, 4).join();
+            assertArrayEquals(colors, new BmpReader().parse(ByteBuffer.wrap(bmp)));
+            assertArrayEquals(colors, service.read(bmp, PaletteFormat.BMP).join());
+            assertArrayEquals(bmp, service.render(colors, 4).join());
+        }
+    }
+
+    @Test
+    void testNonDefaultFileSystem() throws Exception {
+        int[] colors = createColors();
+        Path zipFile = tempDir.resolve("palettes.zip");
+        try (FileSystem zip = FileSystems.newFileSystem(zipFile, Map.of("create", "true"));
+             PaletteService service = PaletteService.create()) {
+            Path palFile = zip.getPath("/test.pal");
+            Files.write(palFile, new PalWriter().toBytes(colors));
+
+            assertArrayEquals(colors, service.read(palFile).join());
+            Path vhFile = zip.getPath("/test.vh");
+            service.convert(palFile, vhFile).join();
+            assertArrayEquals(colors, new VhReader().parse(ByteBuffer.wrap(Files.readAllBytes(vhFile))));
+        }
+    }
+
+    @Test
+    void testManyConcurrentRequests() throws Exception {
+        byte[] pal = new PalWriter().toBytes(createColors());
+        try (PaletteService service = PaletteService.create(4, 1000)) {
+            List<CompletableFuture<byte[]>> previews = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                previews.add(service.render(pal, PaletteFormat.PAL, 1 + i % 8));
+            }
+            for (int i = 0; i < previews.size(); i++) {
+                assertArrayEquals(createColors(), new BmpReader().parse(ByteBuffer.wrap(previews.get(i).join())));
+            }
+            assertEquals(0, service.getRunning());
+        }
+    }
+
+    @Test
+    void testBackpressure() {
+        // Executor that only collects the tasks, so the test controls when they run
+        List<Runnable> submitted = new ArrayList<>();
+        PaletteService service = new PaletteService(submitted::add, 2, 1);
+        byte[] pal = new PalWriter().toBytes(createColors());
+
+        CompletableFuture<int[]> first = service.read(pal, PaletteFormat.PAL);
+        CompletableFuture<int[]> second = service.read(pal, PaletteFormat.PAL);
+        CompletableFuture<int[]> queued = service.read(pal, PaletteFormat.PAL);
+        CompletableFuture<int[]> rejected = service.read(pal, PaletteFormat.PAL);
+
+        assertEquals(2, submitted.size());
+        assertEquals(2, service.getRunning());
+        assertEquals(1, service.getPending());
+        CompletionException e = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+
+        // A finished task hands its slot to the queued one
+        submitted.get(0).run();
+        assertTrue(first.isDone());
+        assertEquals(3, submitted.size());
+        assertEquals(0, service.getPending());
+
+        submitted.get(1).run();
+        submitted.get(2).run();
+        assertArrayEquals(first.join(), queued.join());
+        assertTrue(second.isDone());
+        assertEquals(0, service.getRunning());
+    }
+
+    @Test
+    void testCloseWaitsForQueuedTasks() {
+        byte[] pal = new PalWriter().toBytes(createColors());
+        List<CompletableFuture<int[]>> results = new ArrayList<>();
+        PaletteService service = PaletteService.create(2, 100);
+        try (service) {
+            for (int i = 0; i < 50; i++) {
+                results.add(service.read(pal, PaletteFormat.PAL));
+            }
+        }
+        for (CompletableFuture<int[]> result : results) {
+            assertTrue(result.isDone());
+            assertArrayEquals(createColors(), result.join());
+        }
+        CompletionException e = assertThrows(CompletionException.class, () -> service.read(pal, PaletteFormat.PAL).join());
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    @Test
+    void testShutDownExecutorFailsQueuedTasks() {
+        // Executor that accepts the first task and then behaves as if it was shut down
+        List<Runnable> submitted = new ArrayList<>();
+        Executor executor = task -> {
+            if (!submitted.isEmpty()) {
+                throw new RejectedExecutionException("shut down");
+            }
+            submitted.add(task);
+        };
+        PaletteService service = new PaletteService(executor, 1, 100_000);
+        byte[] pal = new PalWriter().toBytes(createColors());
+
+        CompletableFuture<int[]> first = service.read(pal, PaletteFormat.PAL);
+        List<CompletableFuture<int[]>> queued = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            queued.add(service.read(pal, PaletteFormat.PAL));
+        }
+        assertEquals(100_000, service.getPending());
+
+        submitted.get(0).run();
+        assertArrayEquals(createColors(), first.join());
+        for (CompletableFuture<int[]> result : queued) {
+            CompletionException e = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        }
+        assertEquals(0, service.getRunning());
+        assertEquals(0, service.getPending());
+    }
+
+    @Test
+    void testFailuresCompleteExceptionally() {
+        try (PaletteService service = PaletteService.create()) {
+            CompletableFuture<int[]> result = service.read(new byte[10], PaletteFormat.PAL);
+            CompletionException e = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+
+            assertThrows(CompletionException.class, () -> service.read(tempDir.resolve("missing.pal")).join());
+            assertEquals(0, service.getRunning());
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PaletteService(Runnable::run, 0, 0));
+    }
+}